@@ -0,0 +1,63 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Classes from <code>info.kgeorgiy.java.advanced.implementor</code> test artifact used as benchmark input.
+ *
+ * @author sem
+ * @version 1.0
+ */
+final class BenchmarkCorpus {
+
+    /**
+     * Package all corpus classes are in.
+     */
+    private static final String PREFIX = "info.kgeorgiy.java.advanced.implementor.";
+
+    /**
+     * Utility class, not instantiated.
+     */
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * Loads corpus class by its name relative to {@link #PREFIX}.
+     *
+     * @param name name of a class without common prefix, for example <code>basic.interfaces.standard.Accessible</code>.
+     * @return loaded {@link Class}.
+     * @throws ClassNotFoundException if there is no such class in corpus.
+     */
+    static Class<?> load(String name) throws ClassNotFoundException {
+        return Class.forName(PREFIX + name);
+    }
+
+    /**
+     * Creates scratch directory for benchmark output.
+     *
+     * @return {@link Path} of a new directory.
+     * @throws IOException if directory could not be created.
+     */
+    static Path scratch() throws IOException {
+        return Files.createTempDirectory("implementor-benchmark");
+    }
+
+    /**
+     * Deletes scratch directory created by {@link #scratch()}.
+     *
+     * @param directory directory to delete.
+     * @throws IOException if deletion fails.
+     */
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end benchmarks of {@link Implementor#implementJar(Class, Path)} for every {@link ImplementorBackend}.
+ * {@link Implementor#implement(Class, Path)} does not depend on backend and is measured by
+ * {@link PhaseBenchmark#implement()}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImplementorBenchmark {
+
+    /**
+     * Implemented class, relative to corpus package.
+     */
+    @Param({
+            "basic.interfaces.standard.Accessible",
+            "basic.interfaces.standard.Descriptor",
+            "basic.classes.standard.IIOImage",
+            "basic.classes.standard.RMIServerImpl",
+            "full.classes.standard.ImmutableDescriptor",
+            "full.classes.standard.FileCacheImageInputStream",
+            "full.interfaces.Interfaces$InheritedInterface"
+    })
+    public String className;
+
+    /**
+     * Name of {@link ImplementorBackend} used.
+     */
+    @Param({"file-system", "in-memory", "bytecode"})
+    public String backend;
+
+    /**
+     * Implemented class.
+     */
+    private Class<?> token;
+
+    /**
+     * {@link Implementor} with chosen backend.
+     */
+    private Implementor implementor;
+
+    /**
+     * Scratch directory for output.
+     */
+    private Path root;
+
+    /**
+     * Loads implemented class and creates scratch directory.
+     *
+     * @throws ClassNotFoundException if corpus class is missing.
+     * @throws IOException if scratch directory could not be created.
+     */
+    @Setup
+    public void setUp() throws ClassNotFoundException, IOException {
+        token = BenchmarkCorpus.load(className);
+        implementor = new Implementor(ImplementorBackend.forName(backend));
+        root = BenchmarkCorpus.scratch();
+    }
+
+    /**
+     * Deletes scratch directory.
+     *
+     * @throws IOException if deletion fails.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkCorpus.delete(root);
+    }
+
+    /**
+     * Generates, compiles and packs <code>.jar</code> file with chosen backend.
+     *
+     * @throws ImplerException if implementation fails.
+     */
+    @Benchmark
+    public void implementJar() throws ImplerException {
+        implementor.implementJar(token, root.resolve("implementation.jar"));
+    }
+}
@@ -0,0 +1,163 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of separate phases of {@link Implementor#implementJar(Class, Path)}: hierarchy scan, source
+ * emission, compilation and packing, and of {@link Implementor#implement(Class, Path)}, which does not depend
+ * on backend. Compilation and packing work on files prepared once per trial.
+ * Hierarchy scan goes through memoized {@link MethodIndex}, so it measures steady-state lookup.
+ *
+ * @author sem
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PhaseBenchmark {
+
+    /**
+     * Implemented class, relative to corpus package.
+     */
+    @Param({
+            "basic.interfaces.standard.Accessible",
+            "basic.interfaces.standard.Descriptor",
+            "basic.classes.standard.IIOImage",
+            "basic.classes.standard.RMIServerImpl",
+            "full.classes.standard.ImmutableDescriptor",
+            "full.classes.standard.FileCacheImageInputStream",
+            "full.interfaces.Interfaces$InheritedInterface"
+    })
+    public String className;
+
+    /**
+     * Implemented class as a singleton collection.
+     */
+    private List<Class<?>> tokens;
+
+    /**
+     * Implemented class.
+     */
+    private Class<?> token;
+
+    /**
+     * {@link Implementor} under test.
+     */
+    private final Implementor implementor = new Implementor();
+
+    /**
+     * Directory with generated source and compiled class.
+     */
+    private Path root;
+
+    /**
+     * Generates and compiles implementation once, so later phases have their input.
+     *
+     * @throws ClassNotFoundException if corpus class is missing.
+     * @throws IOException if scratch directory could not be created.
+     * @throws ImplerException if implementation fails.
+     */
+    @Setup
+    public void setUp() throws ClassNotFoundException, IOException, ImplerException {
+        token = BenchmarkCorpus.load(className);
+        tokens = List.of(token);
+        root = BenchmarkCorpus.scratch();
+        implementor.implement(token, root);
+        implementor.compileClasses(tokens, root);
+    }
+
+    /**
+     * Deletes scratch directory.
+     *
+     * @throws IOException if deletion fails.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        BenchmarkCorpus.delete(root);
+    }
+
+    /**
+     * Finds constructors and abstract methods to implement.
+     *
+     * @param blackhole sink for results.
+     * @throws ImplerException if class can not be implemented.
+     */
+    @Benchmark
+    public void scan(Blackhole blackhole) throws ImplerException {
+        blackhole.consume(implementor.getConstructors(token));
+        blackhole.consume(implementor.getAbstractMethods(token));
+    }
+
+    /**
+     * Generates source code into memory.
+     *
+     * @return generated code.
+     * @throws ImplerException if class can not be implemented.
+     */
+    @Benchmark
+    public CharSequence emit() throws ImplerException {
+        return implementor.generateSource(token).getCode();
+    }
+
+    /**
+     * Emits class file directly.
+     *
+     * @return class file bytes.
+     * @throws ImplerException if class can not be implemented.
+     */
+    @Benchmark
+    public byte[] emitBytecode() throws ImplerException {
+        return implementor.generateBytecode(token);
+    }
+
+    /**
+     * Generates and writes <code>.java</code> file, into a directory of its own so compiled source is kept.
+     *
+     * @throws ImplerException if implementation fails.
+     */
+    @Benchmark
+    public void implement() throws ImplerException {
+        implementor.implement(token, root.resolve("sources"));
+    }
+
+    /**
+     * Compiles generated source with javac.
+     *
+     * @throws ImplerException if compilation fails.
+     */
+    @Benchmark
+    public void compile() throws ImplerException {
+        implementor.compileClasses(tokens, root);
+    }
+
+    /**
+     * Packs compiled class into <code>.jar</code> file.
+     *
+     * @throws ImplerException if writing fails.
+     */
+    @Benchmark
+    public void buildJar() throws ImplerException {
+        implementor.buildJar(root.resolve("implementation.jar"), root, tokens);
+    }
+}
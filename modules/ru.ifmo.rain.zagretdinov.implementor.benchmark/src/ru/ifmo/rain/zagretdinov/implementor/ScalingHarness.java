@@ -0,0 +1,391 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Load test of {@link Implementor} on synthetic hierarchies of growing size, generated by {@link SyntheticCorpus}.
+ * Unlike JMH benchmarks on fixed classes, it shows how latency and memory scale with number of methods and
+ * depth of hierarchy. For every shape and mode it prints throughput, latency percentiles and peak heap usage.
+ * <p>
+ * Every operation loads and links corpus with a new {@link ClassLoader}, outside of measured time, so method
+ * enumeration memoized per class is measured on every operation instead of once. By default shapes have at most
+ * 10000 methods, so every shape fits class file limits of 65535 methods and constant pool entries. Larger shapes
+ * may be given with <code>--methods</code>: compiling modes fail for more than about 30000 methods, as the
+ * implementation is a single class file, and a corpus of depth 1 can not be generated for more than 65535, so
+ * such shapes exercise <code>source</code> mode only, or are reported as failed.
+ * <p>
+ * Usage: <code>ScalingHarness [--methods 10,100,...] [--depth 1,4,...] [--kind interface,class]
+ * [--mode source,jar,class-file] [--backend name] [--overloads n] [--generics] [--exceptions]
+ * [--warmup n] [--iterations n]</code>.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ScalingHarness {
+
+    /**
+     * Measured operations.
+     */
+    private enum Mode {
+        /**
+         * {@link Implementor#implement(Class, Path)}.
+         */
+        SOURCE("source"),
+
+        /**
+         * {@link Implementor#implementJar(Class, Path)}.
+         */
+        JAR("jar"),
+
+        /**
+         * {@link Implementor#implement(Path, String, Path)}, reading class files without loading them.
+         */
+        CLASS_FILE("class-file");
+
+        /**
+         * Command line name.
+         */
+        private final String name;
+
+        /**
+         * Creates mode.
+         *
+         * @param name command line name.
+         */
+        Mode(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Finds mode by its command line name.
+         *
+         * @param name command line name.
+         * @return {@link Mode} with given name.
+         * @throws IllegalArgumentException if there is no mode with such name.
+         */
+        static Mode forName(String name) {
+            for (Mode mode : values()) {
+                if (mode.name.equals(name)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("Unknown mode " + name);
+        }
+    }
+
+    /**
+     * Measured percentiles of latency.
+     */
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * Format of a result line.
+     */
+    private static final String ROW = "%-70s %-10s %8s %10s %10s %10s %10s %10s%n";
+
+    /**
+     * Numbers of methods of generated hierarchies, within class file limits for every mode and depth.
+     */
+    private int[] methods = {10, 100, 1000, 10000};
+
+    /**
+     * Depths of generated hierarchies.
+     */
+    private int[] depths = {1, 4};
+
+    /**
+     * Whether hierarchies of interfaces and of abstract classes are generated.
+     */
+    private boolean[] kinds = {true, false};
+
+    /**
+     * Measured operations.
+     */
+    private List<Mode> modes = List.of(Mode.SOURCE, Mode.JAR);
+
+    /**
+     * {@link ImplementorBackend} used by {@link Mode#JAR}.
+     */
+    private ImplementorBackend backend = ImplementorBackend.IN_MEMORY;
+
+    /**
+     * Number of methods sharing a name.
+     */
+    private int overloads = 1;
+
+    /**
+     * Whether hierarchies are generic.
+     */
+    private boolean generics;
+
+    /**
+     * Whether methods declare checked exceptions.
+     */
+    private boolean exceptions;
+
+    /**
+     * Number of unmeasured operations per shape and mode.
+     */
+    private int warmup = 3;
+
+    /**
+     * Number of measured operations per shape and mode.
+     */
+    private int iterations = 10;
+
+    /**
+     * Command line entry point, see {@link ScalingHarness} for arguments.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+        ScalingHarness harness = new ScalingHarness();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (option.equals("--generics")) {
+                    harness.generics = true;
+                    continue;
+                }
+                if (option.equals("--exceptions")) {
+                    harness.exceptions = true;
+                    continue;
+                }
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value of " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--methods":
+                        harness.methods = parseInts(value);
+                        break;
+                    case "--depth":
+                        harness.depths = parseInts(value);
+                        break;
+                    case "--kind":
+                        String[] kinds = value.split(",");
+                        harness.kinds = new boolean[kinds.length];
+                        for (int j = 0; j < kinds.length; j++) {
+                            if (!kinds[j].equals("interface") && !kinds[j].equals("class")) {
+                                throw new IllegalArgumentException("Unknown kind " + kinds[j]);
+                            }
+                            harness.kinds[j] = kinds[j].equals("interface");
+                        }
+                        break;
+                    case "--mode":
+                        harness.modes = Stream.of(value.split(",")).map(Mode::forName).collect(Collectors.toList());
+                        break;
+                    case "--backend":
+                        harness.backend = ImplementorBackend.forName(value);
+                        break;
+                    case "--overloads":
+                        harness.overloads = Integer.parseInt(value);
+                        break;
+                    case "--warmup":
+                        harness.warmup = Integer.parseInt(value);
+                        break;
+                    case "--iterations":
+                        harness.iterations = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+            if (harness.iterations < 1 || harness.warmup < 0) {
+                throw new IllegalArgumentException("Iterations should be positive");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        try {
+            harness.run();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Load test failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Parses comma separated integers.
+     *
+     * @param value list of integers.
+     * @return parsed integers.
+     * @throws NumberFormatException if some integer is invalid.
+     */
+    private static int[] parseInts(String value) {
+        return Stream.of(value.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    /**
+     * Generates every shape and measures every mode on it, printing a line per shape and mode.
+     *
+     * @throws IOException if scratch directories could not be created or deleted.
+     */
+    private void run() throws IOException {
+        System.out.printf(ROW, "shape", "mode", "ops", "ops/s", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (boolean interfaces : kinds) {
+            for (int depth : depths) {
+                for (int count : methods) {
+                    SyntheticCorpus.Shape shape = new SyntheticCorpus.Shape(interfaces, count, depth, generics,
+                            overloads, exceptions);
+                    Path scratch = BenchmarkCorpus.scratch();
+                    try {
+                        measure(shape, scratch);
+                    } finally {
+                        BenchmarkCorpus.delete(scratch);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a shape and measures every mode on it.
+     *
+     * @param shape {@link SyntheticCorpus.Shape} to generate.
+     * @param scratch scratch directory for corpus and output.
+     * @throws IOException if corpus could not be written.
+     */
+    private void measure(SyntheticCorpus.Shape shape, Path scratch) throws IOException {
+        Path classes = scratch.resolve("classes");
+        String className;
+        try {
+            className = SyntheticCorpus.generate(shape, scratch.resolve("corpus"), classes);
+        } catch (IOException e) {
+            System.out.printf(ROW, shape, "-", "failed", "", "", "", "", "");
+            System.out.println("    " + e.getMessage());
+            return;
+        }
+        for (Mode mode : modes) {
+            Implementor implementor = new Implementor(backend);
+            Path output = scratch.resolve(mode.name);
+            long[] latencies = new long[iterations];
+            try {
+                for (int i = 0; i < warmup; i++) {
+                    execute(implementor, mode, classes, className, output);
+                }
+                resetPeakHeap();
+                for (int i = 0; i < iterations; i++) {
+                    latencies[i] = execute(implementor, mode, classes, className, output);
+                }
+            } catch (ImplerException e) {
+                System.out.printf(ROW, shape, mode.name, "failed", "", "", "", "", "");
+                System.out.println("    " + e.getMessage().lines().findFirst().orElse(""));
+                continue;
+            }
+            report(shape, mode, latencies);
+        }
+    }
+
+    /**
+     * Executes one operation. Loading of a class is not measured; it is initialized, so linking, which is
+     * superlinear for long chains of abstract classes with many methods, is not measured either.
+     *
+     * @param implementor {@link Implementor} to use.
+     * @param mode {@link Mode} of operation.
+     * @param classes directory of compiled corpus.
+     * @param className binary name of implemented class.
+     * @param output root of sources or directory of a <code>.jar</code> file.
+     * @return latency in nanoseconds.
+     * @throws ImplerException if implementation fails.
+     * @throws IOException if corpus could not be loaded.
+     */
+    private long execute(Implementor implementor, Mode mode, Path classes, String className, Path output)
+            throws ImplerException, IOException {
+        if (mode == Mode.CLASS_FILE) {
+            long start = System.nanoTime();
+            implementor.implement(classes, className, output);
+            return System.nanoTime() - start;
+        }
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{classes.toUri().toURL()},
+                ScalingHarness.class.getClassLoader())) {
+            Class<?> token = Class.forName(className, true, loader);
+            long start = System.nanoTime();
+            if (mode == Mode.SOURCE) {
+                implementor.implement(token, output);
+            } else {
+                Files.createDirectories(output);
+                implementor.implementJar(token, output.resolve("impl.jar"));
+            }
+            return System.nanoTime() - start;
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Generated class is missing: " + className, e);
+        }
+    }
+
+    /**
+     * Prints throughput, latency percentiles and peak heap usage.
+     *
+     * @param shape measured {@link SyntheticCorpus.Shape}.
+     * @param mode measured {@link Mode}.
+     * @param latencies latencies of operations in nanoseconds.
+     */
+    private static void report(SyntheticCorpus.Shape shape, Mode mode, long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        double total = Arrays.stream(sorted).sum();
+        List<String> values = new ArrayList<>();
+        values.add(String.valueOf(sorted.length));
+        values.add(String.format("%.1f", sorted.length * (double) TimeUnit.SECONDS.toNanos(1) / total));
+        for (double percentile : PERCENTILES) {
+            values.add(toMillis(sorted[(int) Math.ceil(percentile * sorted.length) - 1]));
+        }
+        values.add(toMillis(sorted[sorted.length - 1]));
+        System.out.printf(ROW, shape, mode.name, values.get(0), values.get(1), values.get(2), values.get(3),
+                values.get(4), values.get(5));
+        System.out.printf("    peak heap %d MiB%n", getPeakHeap() >> 20);
+    }
+
+    /**
+     * Formats nanoseconds as milliseconds.
+     *
+     * @param nanos duration in nanoseconds.
+     * @return milliseconds with two decimal places.
+     */
+    private static String toMillis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    /**
+     * Resets peak usage of every heap memory pool.
+     */
+    private static void resetPeakHeap() {
+        System.gc();
+        heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+    }
+
+    /**
+     * Sums peak usage of heap memory pools since {@link #resetPeakHeap()}. Peaks of pools are not simultaneous,
+     * so the sum is an upper bound of heap usage.
+     *
+     * @return peak usage in bytes.
+     */
+    private static long getPeakHeap() {
+        return heapPools().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    }
+
+    /**
+     * Lists heap memory pools.
+     *
+     * @return {@link Stream} of heap {@link MemoryPoolMXBean}s.
+     */
+    private static Stream<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP);
+    }
+}
@@ -0,0 +1,231 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generator of synthetic hierarchies used by {@link ScalingHarness}. A hierarchy is a chain of interfaces or
+ * abstract classes, the most derived one is implemented. Methods are spread over levels of a hierarchy evenly,
+ * as a class file holds at most 65535 methods; every level also redeclares a few methods of its parent, so
+ * inherited methods are merged. Sources are written to a directory and compiled with the system compiler.
+ *
+ * @author sem
+ * @version 1.0
+ */
+final class SyntheticCorpus {
+
+    /**
+     * Parameter types cycled through by overloads; every overload of a name gets a distinct erasure.
+     */
+    private static final String[] PARAMETER_TYPES = {
+            "int", "java.lang.String", "long", "java.util.List<java.lang.String>", "double[]",
+            "java.lang.Object", "char", "java.util.Map<java.lang.String, java.lang.Integer>"
+    };
+
+    /**
+     * Return types cycled through by methods.
+     */
+    private static final String[] RETURN_TYPES = {"int", "java.lang.String", "void", "boolean", "long[]"};
+
+    /**
+     * Number of methods of a parent redeclared by every level.
+     */
+    private static final int REDECLARED = 10;
+
+    /**
+     * Shape of a generated hierarchy.
+     */
+    static final class Shape {
+        /**
+         * Whether hierarchy consists of interfaces, abstract classes otherwise.
+         */
+        final boolean interfaces;
+
+        /**
+         * Total number of abstract methods, not counting redeclarations.
+         */
+        final int methods;
+
+        /**
+         * Number of types in hierarchy.
+         */
+        final int depth;
+
+        /**
+         * Whether types have a type parameter and some methods are generic.
+         */
+        final boolean generics;
+
+        /**
+         * Number of methods sharing a name.
+         */
+        final int overloads;
+
+        /**
+         * Whether some methods declare checked exceptions.
+         */
+        final boolean exceptions;
+
+        /**
+         * Creates shape.
+         *
+         * @param interfaces <code>true</code> for interfaces, <code>false</code> for abstract classes.
+         * @param methods total number of abstract methods.
+         * @param depth number of types in hierarchy.
+         * @param generics whether types and some methods are generic.
+         * @param overloads number of methods sharing a name.
+         * @param exceptions whether some methods declare checked exceptions.
+         */
+        Shape(boolean interfaces, int methods, int depth, boolean generics, int overloads, boolean exceptions) {
+            if (methods < 1 || depth < 1 || overloads < 1) {
+                throw new IllegalArgumentException("Methods, depth and overloads should be positive");
+            }
+            this.interfaces = interfaces;
+            this.methods = methods;
+            this.depth = depth;
+            this.generics = generics;
+            this.overloads = overloads;
+            this.exceptions = exceptions;
+        }
+
+        /**
+         * Gets package of generated types, unique for a shape.
+         *
+         * @return name of a package.
+         */
+        String getPackageName() {
+            return "synthetic." + (interfaces ? "i" : "c") + methods + "d" + depth
+                    + (generics ? "g" : "") + "o" + overloads + (exceptions ? "e" : "");
+        }
+
+        /**
+         * Describes shape.
+         *
+         * @return kind, number of methods, depth and options.
+         */
+        @Override
+        public String toString() {
+            return (interfaces ? "interface" : "class") + " methods=" + methods + " depth=" + depth
+                    + " overloads=" + overloads + (generics ? " generics" : "") + (exceptions ? " exceptions" : "");
+        }
+    }
+
+    /**
+     * Utility class, not instantiated.
+     */
+    private SyntheticCorpus() {
+    }
+
+    /**
+     * Generates and compiles hierarchy of given shape.
+     *
+     * @param shape {@link Shape} of a hierarchy.
+     * @param sources directory to write sources to.
+     * @param classes directory to write class files to.
+     * @return binary name of the most derived type.
+     * @throws IOException if sources could not be written or compilation fails.
+     */
+    static String generate(Shape shape, Path sources, Path classes) throws IOException {
+        String packageName = shape.getPackageName();
+        Path directory = sources.resolve(packageName.replace('.', '/'));
+        Files.createDirectories(directory);
+        int perLevel = (shape.methods + shape.depth - 1) / shape.depth;
+        List<String> files = new ArrayList<>();
+        for (int level = 0; level < shape.depth; level++) {
+            Path file = directory.resolve(getTypeName(level) + ".java");
+            try (Writer writer = Files.newBufferedWriter(file)) {
+                writeType(writer, shape, level, Math.min(perLevel, shape.methods - level * perLevel));
+            }
+            files.add(file.toString());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IOException("No compiler provided");
+        }
+        List<String> arguments = new ArrayList<>(List.of("-d", classes.toString(), "-nowarn"));
+        arguments.addAll(files);
+        if (compiler.run(null, null, null, arguments.toArray(new String[0])) != 0) {
+            throw new IOException("Compilation of synthetic corpus failed for " + shape);
+        }
+        return packageName + "." + getTypeName(0);
+    }
+
+    /**
+     * Gets simple name of a type at a level of hierarchy, <code>0</code> being the most derived.
+     *
+     * @param level level of a type.
+     * @return name of a type.
+     */
+    private static String getTypeName(int level) {
+        return "Level" + level;
+    }
+
+    /**
+     * Writes source of one type of hierarchy.
+     *
+     * @param writer destination of source.
+     * @param shape {@link Shape} of a hierarchy.
+     * @param level level of a type, <code>0</code> being the most derived.
+     * @param methods number of methods declared by this level, not counting redeclarations.
+     * @throws IOException if writing fails.
+     */
+    private static void writeType(Writer writer, Shape shape, int level, int methods) throws IOException {
+        String typeParameter = shape.generics ? "<T extends java.lang.Comparable<T>>" : "";
+        String typeArgument = shape.generics ? "<T>" : "";
+        writer.write("package " + shape.getPackageName() + ";\n\npublic "
+                + (shape.interfaces ? "interface " : "abstract class ") + getTypeName(level) + typeParameter);
+        if (level + 1 < shape.depth) {
+            writer.write(" extends " + getTypeName(level + 1) + typeArgument);
+        }
+        writer.write(" {\n");
+        for (int i = 0; i < Math.max(methods, 0); i++) {
+            writeMethod(writer, shape, level, i);
+        }
+        if (level + 1 < shape.depth) {
+            for (int i = 0; i < REDECLARED; i++) {
+                writeMethod(writer, shape, level + 1, i);
+            }
+        }
+        writer.write("}\n");
+    }
+
+    /**
+     * Writes an abstract method. Its name, parameters and modifiers depend only on its level and index, so
+     * redeclaration in a subtype writes the same method.
+     *
+     * @param writer destination of source.
+     * @param shape {@link Shape} of a hierarchy.
+     * @param level level of a type declaring method first.
+     * @param index index of a method inside its level.
+     * @throws IOException if writing fails.
+     */
+    private static void writeMethod(Writer writer, Shape shape, int level, int index) throws IOException {
+        StringBuilder method = new StringBuilder("    ").append(shape.interfaces ? "" : "public abstract ");
+        if (shape.generics && index % 4 == 3) {
+            method.append("<E extends java.lang.Comparable<E>> E generic").append(level).append('_').append(index)
+                    .append("(java.util.List<? extends E> values, T bound)");
+        } else {
+            int variant = index % shape.overloads;
+            String returnType = shape.generics && index % 4 == 1 ? "T" : RETURN_TYPES[index % RETURN_TYPES.length];
+            method.append(returnType).append(" method").append(level).append('_').append(index / shape.overloads)
+                    .append('(');
+            for (int i = 0; i <= variant / PARAMETER_TYPES.length; i++) {
+                if (i > 0) {
+                    method.append(", ");
+                }
+                method.append(PARAMETER_TYPES[(variant + i) % PARAMETER_TYPES.length]).append(" p").append(i);
+            }
+            method.append(')');
+        }
+        if (shape.exceptions && index % 3 == 0) {
+            method.append(" throws java.io.IOException, java.util.concurrent.TimeoutException");
+        }
+        writer.write(method.append(";\n").toString());
+    }
+}
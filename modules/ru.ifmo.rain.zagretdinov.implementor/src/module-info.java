@@ -1,6 +1,9 @@
 module ru.ifmo.rain.zagretdinov.implementor {
     requires info.kgeorgiy.java.advanced.implementor;
     requires java.compiler;
+    requires jdk.jfr;
 
     exports ru.ifmo.rain.zagretdinov.implementor;
+
+    provides javax.annotation.processing.Processor with ru.ifmo.rain.zagretdinov.implementor.ImplementorProcessor;
 }
\ No newline at end of file
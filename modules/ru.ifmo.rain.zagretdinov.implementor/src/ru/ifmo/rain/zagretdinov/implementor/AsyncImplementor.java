@@ -0,0 +1,257 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous facade of an {@link Implementor}. Requests return {@link CompletableFuture}s at once and are
+ * serviced by a fixed number of threads; failures complete futures exceptionally with {@link ImplerException}.
+ * At most a given number of requests wait for a free thread; what happens to a request beyond that is chosen
+ * by {@link Overflow} policy.
+ * <p>
+ * {@link CompletableFuture#cancel(boolean) Cancelling} a returned future interrupts its request: a waiting one
+ * is never started, a running one stops at the next phase of {@link Implementor}. Temporary directories and
+ * files of a stopped request are deleted, and its output is left as it was before the request.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class AsyncImplementor implements AutoCloseable {
+
+    /**
+     * Policy applied to a request when the queue is full.
+     */
+    public enum Overflow {
+        /**
+         * Future of a request is completed at once with {@link RejectedExecutionException}.
+         */
+        REJECT,
+
+        /**
+         * Calling thread waits until there is room in the queue.
+         */
+        BLOCK,
+
+        /**
+         * Request is serviced by the calling thread, which slows the caller down.
+         */
+        CALLER_RUNS
+    }
+
+    /**
+     * {@link Implementor} servicing requests.
+     */
+    private final Implementor implementor;
+
+    /**
+     * Policy applied when the queue is full.
+     */
+    private final Overflow overflow;
+
+    /**
+     * Permits of requests running or waiting for a thread.
+     */
+    private final Semaphore permits;
+
+    /**
+     * Executor servicing requests. Its queue is bounded by {@link #permits}.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Creates facade of an implementor.
+     *
+     * @param implementor {@link Implementor} servicing requests, configured before.
+     * @param threads number of requests serviced concurrently.
+     * @param queue number of requests waiting for a free thread.
+     * @param overflow {@link Overflow} policy applied when the queue is full.
+     */
+    public AsyncImplementor(Implementor implementor, int threads, int queue, Overflow overflow) {
+        if (threads < 1 || queue < 0) {
+            throw new IllegalArgumentException("Number of threads should be positive and queue size non-negative");
+        }
+        this.implementor = implementor;
+        this.overflow = overflow;
+        this.permits = new Semaphore(threads + queue);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+    }
+
+    /**
+     * Implements class or interface with {@link Implementor#implement(Class, Path)} asynchronously.
+     *
+     * @param token type token to create implementation for.
+     * @param root root directory of generated sources.
+     * @return {@link CompletableFuture} completed when the file is written.
+     */
+    public CompletableFuture<Void> implementAsync(Class<?> token, Path root) {
+        return submit(() -> implementor.implement(token, root));
+    }
+
+    /**
+     * Implements class or interface with {@link Implementor#implementJar(Class, Path)} asynchronously.
+     *
+     * @param token type token to create implementation for.
+     * @param jarFile target <code>.jar</code> file.
+     * @return {@link CompletableFuture} completed when the file is written.
+     */
+    public CompletableFuture<Void> implementJarAsync(Class<?> token, Path jarFile) {
+        return implementJarAsync(List.of(token), jarFile);
+    }
+
+    /**
+     * Implements classes or interfaces with {@link Implementor#implementJar(Collection, Path)} asynchronously.
+     *
+     * @param tokens type tokens to create implementations for.
+     * @param jarFile target <code>.jar</code> file.
+     * @return {@link CompletableFuture} completed when the file is written.
+     */
+    public CompletableFuture<Void> implementJarAsync(Collection<Class<?>> tokens, Path jarFile) {
+        List<Class<?>> copy = List.copyOf(tokens);
+        return submit(() -> implementor.implementJar(copy, jarFile));
+    }
+
+    /**
+     * Submits request applying {@link #overflow} policy.
+     *
+     * @param action request to service.
+     * @return {@link CompletableFuture} of a request.
+     */
+    private CompletableFuture<Void> submit(OutputCoordinator.Action action) {
+        Request request = new Request(action);
+        if (!permits.tryAcquire()) {
+            switch (overflow) {
+                case REJECT:
+                    request.completeExceptionally(new RejectedExecutionException("Queue is full"));
+                    return request;
+                case CALLER_RUNS:
+                    request.execute(() -> { });
+                    return request;
+                default:
+                    try {
+                        permits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        request.completeExceptionally(new ImplerException("Interrupted while waiting for queue", e));
+                        return request;
+                    }
+            }
+        }
+        try {
+            workers.execute(() -> request.execute(permits::release));
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            request.completeExceptionally(e);
+        }
+        return request;
+    }
+
+    /**
+     * Stops accepting requests and waits for accepted ones to complete.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Future of a request which interrupts the thread servicing it when cancelled.
+     */
+    private static final class Request extends CompletableFuture<Void> {
+        /**
+         * Request to service.
+         */
+        private final OutputCoordinator.Action action;
+
+        /**
+         * Thread servicing request, <code>null</code> if it is not running. Guarded by <code>this</code>.
+         */
+        private Thread runner;
+
+        /**
+         * Whether {@link #runner} was interrupted by {@link #cancel(boolean)}. Guarded by <code>this</code>.
+         */
+        private boolean interrupted;
+
+        /**
+         * Creates request.
+         *
+         * @param action request to service.
+         */
+        Request(OutputCoordinator.Action action) {
+            this.action = action;
+        }
+
+        /**
+         * Services request in current thread, unless it is already cancelled. Any failure, {@link Error}s
+         * included, completes the future, so callers never wait for a request that died. Interrupt caused
+         * by cancellation is cleared afterwards, so the thread may service other requests.
+         *
+         * @param release action run once the request no longer occupies the thread, before the future
+         * is completed, so a caller woken by completion may submit another request at once.
+         */
+        void execute(Runnable release) {
+            synchronized (this) {
+                if (isDone()) {
+                    release.run();
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            Throwable failure = null;
+            try {
+                action.run();
+            } catch (ImplerException | RuntimeException | Error e) {
+                failure = e;
+            }
+            synchronized (this) {
+                runner = null;
+                if (interrupted) {
+                    Thread.interrupted();
+                }
+            }
+            release.run();
+            if (failure == null) {
+                complete(null);
+            } else {
+                completeExceptionally(failure);
+            }
+        }
+
+        /**
+         * Cancels request, interrupting thread servicing it.
+         *
+         * @param mayInterruptIfRunning ignored, running request is always interrupted.
+         * @return <code>true</code> if request was cancelled by this call.
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                synchronized (this) {
+                    if (runner != null) {
+                        runner.interrupt();
+                        interrupted = true;
+                    }
+                }
+            }
+            return cancelled;
+        }
+    }
+}
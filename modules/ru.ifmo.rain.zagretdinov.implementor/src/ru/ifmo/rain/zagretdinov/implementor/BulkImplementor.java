@@ -0,0 +1,343 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implements many classes at once in parallel. Classes are taken from a file with class names, from
+ * a package prefix on classpath or from an input <code>.jar</code> file. Every class is implemented by
+ * a shared {@link Implementor} on a {@link ForkJoinPool} of configurable parallelism; failures are reported
+ * per class and do not stop the run.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class BulkImplementor {
+
+    /**
+     * Suffix of class file names.
+     */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * Usage message printed on invalid arguments.
+     */
+    private static final String USAGE = "Expected [--backend name] [--threads n] [--jar] [--stats] "
+            + "(--list file | --package prefix | --input-jar file) <output.path>";
+
+    /**
+     * {@link Implementor} shared by all tasks.
+     */
+    private final Implementor implementor;
+
+    /**
+     * Number of classes implemented concurrently.
+     */
+    private final int parallelism;
+
+    /**
+     * Whether to create a <code>.jar</code> file per class instead of <code>.java</code> files.
+     */
+    private final boolean jar;
+
+    /**
+     * Creates bulk implementor.
+     *
+     * @param implementor {@link Implementor} used for every class.
+     * @param parallelism number of classes implemented concurrently.
+     * @param jar <code>true</code> to create a <code>.jar</code> file per class in output directory,
+     *            <code>false</code> to write <code>.java</code> files under output root.
+     */
+    public BulkImplementor(Implementor implementor, int parallelism, boolean jar) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be positive: " + parallelism);
+        }
+        this.implementor = implementor;
+        this.parallelism = parallelism;
+        this.jar = jar;
+    }
+
+    /**
+     * Command line entry point.
+     * Arguments are <code>[--backend name] [--threads n] [--jar] [--stats] (--list file | --package prefix |
+     * --input-jar file) outputPath</code>:
+     * <ul>
+     * <li><code>--list</code>: file with one class name per line, empty lines and <code>#</code> comments
+     * are skipped. Every listed class is implemented, unsupported ones are reported as failures.</li>
+     * <li><code>--package</code>: every eligible class on classpath whose name starts with given prefix.</li>
+     * <li><code>--input-jar</code>: every eligible class in given <code>.jar</code> file.</li>
+     * </ul>
+     * Failures are printed per class, summary is printed at the end, followed by
+     * {@link ImplementorStatistics} if <code>--stats</code> is given.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args == null || Stream.of(args).anyMatch(arg -> arg == null)) {
+            System.err.println("All arguments should be not null");
+            return;
+        }
+        ImplementorBackend backend = ImplementorBackend.FILE_SYSTEM;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean jar = false;
+        boolean stats = false;
+        String mode = null;
+        String source = null;
+        int i = 0;
+        try {
+            for (; i < args.length - 1; i++) {
+                switch (args[i]) {
+                    case "--backend":
+                        backend = ImplementorBackend.forName(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--jar":
+                    case "-jar":
+                        jar = true;
+                        break;
+                    case "--stats":
+                        stats = true;
+                        break;
+                    case "--list":
+                    case "--package":
+                    case "--input-jar":
+                        mode = args[i];
+                        source = args[++i];
+                        break;
+                    default:
+                        System.err.println("Unknown option " + args[i] + ". " + USAGE);
+                        return;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println(USAGE);
+            return;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        if (mode == null || i != args.length - 1) {
+            System.err.println(USAGE);
+            return;
+        }
+        try {
+            Path output = Path.of(args[i]);
+            Implementor implementor = new Implementor(backend);
+            BulkImplementor bulk = new BulkImplementor(implementor, threads, jar);
+            Map<String, Exception> failures;
+            int total;
+            if (mode.equals("--list")) {
+                List<String> names = readList(Path.of(source));
+                total = names.size();
+                failures = bulk.implementAll(names, BulkImplementor.class.getClassLoader(), false, output);
+            } else if (mode.equals("--package")) {
+                List<String> names = scanClasspath(source);
+                total = names.size();
+                failures = bulk.implementAll(names, BulkImplementor.class.getClassLoader(), true, output);
+            } else {
+                Path input = Path.of(source);
+                List<String> names = scanJar(input, "");
+                total = names.size();
+                try (URLClassLoader loader = new URLClassLoader(new URL[]{input.toUri().toURL()},
+                        BulkImplementor.class.getClassLoader())) {
+                    failures = bulk.implementAll(names, loader, true, output);
+                }
+            }
+            failures.forEach((name, e) -> System.err.println("Failed " + name + ": " + e.getMessage()));
+            System.out.println(String.format("Processed %d classes, %d failed", total, failures.size()));
+            if (stats) {
+                System.out.println(implementor.getStatistics());
+            }
+        } catch (InvalidPathException e) {
+            System.err.println("Invalid path given: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Can not read input: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Implements given classes in parallel.
+     *
+     * @param names binary names of classes.
+     * @param loader {@link ClassLoader} to load classes with; classes are not initialized.
+     * @param eligibleOnly <code>true</code> to silently skip classes {@link #isEligible(Class) not eligible}
+     *                     for implementation, <code>false</code> to report them as failures.
+     * @param output output root for <code>.java</code> files or directory for <code>.jar</code> files.
+     * @return failures by class names, sorted by name; empty if all classes were implemented.
+     */
+    public Map<String, Exception> implementAll(Collection<String> names, ClassLoader loader,
+                                               boolean eligibleOnly, Path output) {
+        Map<String, Exception> failures = new ConcurrentSkipListMap<>();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (String name : names) {
+            tasks.add(() -> {
+                try {
+                    Class<?> token = Class.forName(name, false, loader);
+                    if (eligibleOnly && !isEligible(token)) {
+                        return null;
+                    }
+                    implement(token, output);
+                } catch (ImplerException | RuntimeException e) {
+                    failures.put(name, e);
+                } catch (ClassNotFoundException e) {
+                    failures.put(name, new ImplerException("Class not found", e));
+                } catch (LinkageError e) {
+                    failures.put(name, new ImplerException("Can not load class: " + e, e));
+                }
+                return null;
+            });
+        }
+        ExecutorService pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+        }
+        return failures;
+    }
+
+    /**
+     * Implements one class according to output mode.
+     *
+     * @param token type token to create implementation for.
+     * @param output output root or directory for <code>.jar</code> files.
+     * @throws ImplerException if implementation fails.
+     */
+    private void implement(Class<?> token, Path output) throws ImplerException {
+        if (jar) {
+            implementor.implementJar(token, output.resolve(
+                    token.getPackageName() + (token.getPackageName().isEmpty() ? "" : ".")
+                            + token.getSimpleName() + "Impl.jar"));
+        } else {
+            implementor.implement(token, output);
+        }
+    }
+
+    /**
+     * Checks whether class found by scanning should be implemented: a top-level or static nested abstract
+     * class or interface which is not private, not an annotation and not an enum.
+     *
+     * @param token {@link Class} to check.
+     * @return <code>true</code> if {@code token} should be implemented.
+     */
+    static boolean isEligible(Class<?> token) {
+        int modifiers = token.getModifiers();
+        if (!Modifier.isAbstract(modifiers) || Modifier.isFinal(modifiers) || Modifier.isPrivate(modifiers)
+                || token.isAnnotation() || token.isEnum() || token.isArray() || token.isPrimitive()
+                || token.isSynthetic() || token.isAnonymousClass() || token.isLocalClass()) {
+            return false;
+        }
+        return !token.isMemberClass() || token.isInterface() || Modifier.isStatic(modifiers);
+    }
+
+    /**
+     * Reads class names from a file: one per line, empty lines and lines starting with <code>#</code> skipped.
+     *
+     * @param file {@link Path} to a file with class names.
+     * @return {@link List} of class names.
+     * @throws IOException if file could not be read.
+     */
+    static List<String> readList(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file)) {
+            return lines.map(String::trim)
+                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Finds classes with given name prefix in directories and <code>.jar</code> files on classpath.
+     *
+     * @param prefix prefix of binary class names, usually a package name.
+     * @return {@link List} of binary class names.
+     * @throws IOException if some classpath entry could not be read.
+     */
+    static List<String> scanClasspath(String prefix) throws IOException {
+        List<String> result = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.isEmpty()) {
+                continue;
+            }
+            Path path = Path.of(entry);
+            if (Files.isDirectory(path)) {
+                result.addAll(scanDirectory(path, prefix));
+            } else if (Files.isRegularFile(path)) {
+                result.addAll(scanJar(path, prefix));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds classes with given name prefix in a directory of class files.
+     *
+     * @param root root directory of classes.
+     * @param prefix prefix of binary class names.
+     * @return {@link List} of binary class names.
+     * @throws IOException if directory could not be walked.
+     */
+    private static List<String> scanDirectory(Path root, String prefix) throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(file -> file.toString().endsWith(CLASS_SUFFIX))
+                    .map(file -> toClassName(root.relativize(file).toString().replace(File.separatorChar, '/')))
+                    .filter(name -> name != null && name.startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Finds classes with given name prefix in a <code>.jar</code> file.
+     *
+     * @param jarFile <code>.jar</code> file to scan.
+     * @param prefix prefix of binary class names.
+     * @return {@link List} of binary class names.
+     * @throws IOException if file could not be read.
+     */
+    static List<String> scanJar(Path jarFile, String prefix) throws IOException {
+        try (JarFile jar = new JarFile(jarFile.toFile())) {
+            return jar.stream()
+                    .map(entry -> toClassName(entry.getName()))
+                    .filter(name -> name != null && name.startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Converts class file path to binary class name.
+     *
+     * @param path path of a class file with <code>'/'</code> separators.
+     * @return binary class name, <code>null</code> if {@code path} is not a class or is a module or package info.
+     */
+    private static String toClassName(String path) {
+        if (!path.endsWith(CLASS_SUFFIX) || path.endsWith("module-info.class")
+                || path.endsWith("package-info.class") || path.startsWith("META-INF/")) {
+            return null;
+        }
+        return path.substring(0, path.length() - CLASS_SUFFIX.length()).replace('/', '.');
+    }
+}
@@ -0,0 +1,466 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Emits class files of implementations directly, without generating and compiling sources.
+ * Generated classes have the same members as the ones produced from sources by {@link Implementor}:
+ * constructors passing their arguments to <code>super</code> and methods returning default values.
+ * As compiler does, a bridge method is added for every inherited method a generated method overrides with
+ * narrower return type, so calls through any supertype reach it.
+ * Such bodies contain no branches, so no <code>StackMapTable</code> attributes are needed.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class BytecodeGenerator {
+
+    /**
+     * Class file version of generated classes, Java 11.
+     */
+    private static final int VERSION = 55;
+
+    /**
+     * Access flag set for every generated class.
+     */
+    private static final int ACC_SUPER = 0x0020;
+
+    /**
+     * Access flags set for every bridge method: <code>ACC_BRIDGE</code> and <code>ACC_SYNTHETIC</code>.
+     */
+    private static final int ACC_BRIDGE = 0x0040 | 0x1000;
+
+    /**
+     * <code>Utf8</code> constant pool tag.
+     */
+    private static final int CONSTANT_UTF8 = 1;
+
+    /**
+     * <code>Class</code> constant pool tag.
+     */
+    private static final int CONSTANT_CLASS = 7;
+
+    /**
+     * <code>Methodref</code> constant pool tag.
+     */
+    private static final int CONSTANT_METHODREF = 10;
+
+    /**
+     * <code>NameAndType</code> constant pool tag.
+     */
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    /**
+     * Opcodes used in generated code.
+     */
+    private static final int ACONST_NULL = 0x01, ICONST_0 = 0x03, LCONST_0 = 0x09, FCONST_0 = 0x0b,
+            DCONST_0 = 0x0e, ILOAD = 0x15, LLOAD = 0x16, FLOAD = 0x17, DLOAD = 0x18, ALOAD = 0x19,
+            ALOAD_0 = 0x2a, IRETURN = 0xac, LRETURN = 0xad, FRETURN = 0xae, DRETURN = 0xaf,
+            ARETURN = 0xb0, RETURN = 0xb1, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7;
+
+    /**
+     * Serialized constant pool entries.
+     */
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+
+    /**
+     * {@link DataOutputStream} over {@link #pool}.
+     */
+    private final DataOutputStream poolData = new DataOutputStream(pool);
+
+    /**
+     * Indices of already added constant pool entries by their keys.
+     */
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    /**
+     * Next free constant pool index.
+     */
+    private int poolSize = 1;
+
+    /**
+     * Generates class file implementing given class or interface.
+     *
+     * @param token type token to create implementation for.
+     * @param className binary name of generated class.
+     * @param constructors constructors of {@code token} generated class should declare.
+     * @param methods methods of {@code token} generated class should implement.
+     * @return bytes of generated class file.
+     */
+    static byte[] generate(Class<?> token, String className,
+                           List<Constructor<?>> constructors, List<Method> methods) {
+        try {
+            return new BytecodeGenerator().generateClass(token, className, constructors, methods);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Converts binary name to internal form used in class files.
+     *
+     * @param name binary name of a class.
+     * @return {@link String} with <code>'.'</code> replaced by <code>'/'</code>.
+     */
+    private static String internalName(String name) {
+        return name.replace('.', '/');
+    }
+
+    /**
+     * Gets field descriptor of a type.
+     *
+     * @param type {@link Class} to get descriptor of.
+     * @return descriptor of {@code type}.
+     */
+    static String descriptor(Class<?> type) {
+        if (type.isArray()) {
+            return internalName(type.getName());
+        } else if (!type.isPrimitive()) {
+            return "L" + internalName(type.getName()) + ";";
+        } else if (type == void.class) {
+            return "V";
+        } else if (type == boolean.class) {
+            return "Z";
+        } else if (type == long.class) {
+            return "J";
+        } else {
+            return String.valueOf(Character.toUpperCase(type.getName().charAt(0)));
+        }
+    }
+
+    /**
+     * Gets method descriptor.
+     *
+     * @param parameters parameter types of a method.
+     * @param returnType return type of a method.
+     * @return descriptor of a method.
+     */
+    static String descriptor(Class<?>[] parameters, Class<?> returnType) {
+        StringBuilder builder = new StringBuilder("(");
+        for (Class<?> parameter : parameters) {
+            builder.append(descriptor(parameter));
+        }
+        return builder.append(')').append(descriptor(returnType)).toString();
+    }
+
+    /**
+     * Gets number of local variable slots taken by a value of given type.
+     *
+     * @param type {@link Class} of a value.
+     * @return 2 for <code>long</code> and <code>double</code>, 1 otherwise.
+     */
+    private static int slots(Class<?> type) {
+        return type == long.class || type == double.class ? 2 : 1;
+    }
+
+    /**
+     * Gets number of local variable slots taken by parameters.
+     *
+     * @param parameters parameter types of a method.
+     * @return total number of slots.
+     */
+    private static int slots(Class<?>[] parameters) {
+        int result = 0;
+        for (Class<?> parameter : parameters) {
+            result += slots(parameter);
+        }
+        return result;
+    }
+
+    /**
+     * Gets load instruction for a local variable of given type.
+     *
+     * @param type {@link Class} of a local variable.
+     * @return opcode loading a variable of {@code type}.
+     */
+    private static int loadOpcode(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return ALOAD;
+        } else if (type == long.class) {
+            return LLOAD;
+        } else if (type == float.class) {
+            return FLOAD;
+        } else if (type == double.class) {
+            return DLOAD;
+        } else {
+            return ILOAD;
+        }
+    }
+
+    /**
+     * Gets code pushing default value of given type and returning it.
+     *
+     * @param type return type of a method.
+     * @return opcodes of method body.
+     */
+    private static byte[] returnDefault(Class<?> type) {
+        if (type == void.class) {
+            return new byte[]{(byte) RETURN};
+        } else if (!type.isPrimitive()) {
+            return new byte[]{ACONST_NULL, (byte) ARETURN};
+        } else if (type == long.class) {
+            return new byte[]{LCONST_0, (byte) LRETURN};
+        } else if (type == float.class) {
+            return new byte[]{FCONST_0, (byte) FRETURN};
+        } else if (type == double.class) {
+            return new byte[]{DCONST_0, (byte) DRETURN};
+        } else {
+            return new byte[]{ICONST_0, (byte) IRETURN};
+        }
+    }
+
+    /**
+     * Adds constant pool entry unless the same one was added before.
+     *
+     * @param key unique key of an entry.
+     * @param tag tag of an entry.
+     * @param first first component of an entry: index or <code>Utf8</code> text.
+     * @param second second index of an entry, negative if entry has only one component.
+     * @return index of an entry.
+     * @throws IOException never, {@link #pool} is in memory.
+     */
+    private int constant(String key, int tag, Object first, int second) throws IOException {
+        Integer index = indices.get(key);
+        if (index != null) {
+            return index;
+        }
+        poolData.writeByte(tag);
+        if (tag == CONSTANT_UTF8) {
+            poolData.writeUTF((String) first);
+        } else {
+            poolData.writeShort((Integer) first);
+        }
+        if (second >= 0) {
+            poolData.writeShort(second);
+        }
+        indices.put(key, poolSize);
+        return poolSize++;
+    }
+
+    /**
+     * Adds <code>Utf8</code> constant.
+     *
+     * @param text value of a constant.
+     * @return index of a constant.
+     * @throws IOException never, {@link #pool} is in memory.
+     */
+    private int utf8(String text) throws IOException {
+        return constant("U" + text, CONSTANT_UTF8, text, -1);
+    }
+
+    /**
+     * Adds <code>Class</code> constant.
+     *
+     * @param name internal name of a class.
+     * @return index of a constant.
+     * @throws IOException never, {@link #pool} is in memory.
+     */
+    private int classConstant(String name) throws IOException {
+        return constant("C" + name, CONSTANT_CLASS, utf8(name), -1);
+    }
+
+    /**
+     * Adds <code>Methodref</code> constant.
+     *
+     * @param owner internal name of a class declaring method.
+     * @param name name of a method.
+     * @param descriptor descriptor of a method.
+     * @return index of a constant.
+     * @throws IOException never, {@link #pool} is in memory.
+     */
+    private int methodConstant(String owner, String name, String descriptor) throws IOException {
+        int nameAndType = constant("N" + name + descriptor, CONSTANT_NAME_AND_TYPE,
+                utf8(name), utf8(descriptor));
+        return constant("M" + owner + "." + name + descriptor, CONSTANT_METHODREF,
+                classConstant(owner), nameAndType);
+    }
+
+    /**
+     * Serializes a method with <code>Code</code> and <code>Exceptions</code> attributes.
+     *
+     * @param out stream to write method to.
+     * @param access access flags of a method.
+     * @param name name of a method.
+     * @param descriptor descriptor of a method.
+     * @param maxStack maximum operand stack depth.
+     * @param maxLocals number of local variable slots.
+     * @param code bytecode of a method.
+     * @param exceptions exceptions declared by a method.
+     * @throws IOException never, method is written to memory.
+     */
+    private void writeMethod(DataOutputStream out, int access, String name, String descriptor,
+                             int maxStack, int maxLocals, byte[] code, Class<?>[] exceptions) throws IOException {
+        out.writeShort(access);
+        out.writeShort(utf8(name));
+        out.writeShort(utf8(descriptor));
+        out.writeShort(exceptions.length == 0 ? 1 : 2);
+        out.writeShort(utf8("Code"));
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+        if (exceptions.length != 0) {
+            out.writeShort(utf8("Exceptions"));
+            out.writeInt(2 + 2 * exceptions.length);
+            out.writeShort(exceptions.length);
+            for (Class<?> exception : exceptions) {
+                out.writeShort(classConstant(internalName(exception.getName())));
+            }
+        }
+    }
+
+    /**
+     * Writes constructor passing all its arguments to a constructor of superclass.
+     *
+     * @param out stream to write constructor to.
+     * @param superName internal name of superclass.
+     * @param constructor constructor of superclass, <code>null</code> for default constructor of {@link Object}.
+     * @throws IOException never, constructor is written to memory.
+     */
+    private void writeConstructor(DataOutputStream out, String superName,
+                                  Constructor<?> constructor) throws IOException {
+        Class<?>[] parameters = constructor == null ? new Class<?>[0] : constructor.getParameterTypes();
+        String descriptor = descriptor(parameters, void.class);
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        code.write(ALOAD_0);
+        int slot = 1;
+        for (Class<?> parameter : parameters) {
+            code.write(loadOpcode(parameter));
+            code.write(slot);
+            slot += slots(parameter);
+        }
+        int method = methodConstant(superName, "<init>", descriptor);
+        code.write(INVOKESPECIAL);
+        code.write(method >> 8);
+        code.write(method);
+        code.write(RETURN);
+        int access = constructor == null ? Modifier.PUBLIC : accessFlags(constructor);
+        writeMethod(out, access, "<init>", descriptor, slot, slot, code.toByteArray(),
+                constructor == null ? new Class<?>[0] : constructor.getExceptionTypes());
+    }
+
+    /**
+     * Writes bridge method with another return type passing all its arguments to a generated method.
+     *
+     * @param out stream to write bridge to.
+     * @param thisName internal name of generated class.
+     * @param method method implemented by generated class.
+     * @param returnType erased return type of an overridden method, a supertype of return type of {@code method}.
+     * @throws IOException never, bridge is written to memory.
+     */
+    private void writeBridge(DataOutputStream out, String thisName, Method method,
+                             Class<?> returnType) throws IOException {
+        Class<?>[] parameters = method.getParameterTypes();
+        ByteArrayOutputStream code = new ByteArrayOutputStream();
+        code.write(ALOAD_0);
+        int slot = 1;
+        for (Class<?> parameter : parameters) {
+            code.write(loadOpcode(parameter));
+            code.write(slot);
+            slot += slots(parameter);
+        }
+        int target = methodConstant(thisName, method.getName(), descriptor(parameters, method.getReturnType()));
+        code.write(INVOKEVIRTUAL);
+        code.write(target >> 8);
+        code.write(target);
+        code.write(ARETURN);
+        writeMethod(out, accessFlags(method) | ACC_BRIDGE, method.getName(), descriptor(parameters, returnType),
+                slot, slot, code.toByteArray(), method.getExceptionTypes());
+    }
+
+    /**
+     * Gets access flags of generated member overriding given one.
+     *
+     * @param executable overridden method or constructor.
+     * @return access flags with only visibility kept.
+     */
+    private static int accessFlags(Executable executable) {
+        return executable.getModifiers() & (Modifier.PUBLIC | Modifier.PROTECTED);
+    }
+
+    /**
+     * Generates class file implementing given class or interface.
+     *
+     * @param token type token to create implementation for.
+     * @param className binary name of generated class.
+     * @param constructors constructors of {@code token} generated class should declare.
+     * @param methods methods of {@code token} generated class should implement.
+     * @return bytes of generated class file.
+     * @throws IOException never, class is generated in memory.
+     */
+    private byte[] generateClass(Class<?> token, String className,
+                                 List<Constructor<?>> constructors, List<Method> methods) throws IOException {
+        String superName = internalName(token.isInterface() ? Object.class.getName() : token.getName());
+        int thisClass = classConstant(internalName(className));
+        int superClass = classConstant(superName);
+        int[] interfaces = token.isInterface()
+                ? new int[]{classConstant(internalName(token.getName()))} : new int[0];
+
+        Map<String, Method> unique = new LinkedHashMap<>();
+        for (Method method : methods) {
+            unique.putIfAbsent(method.getName() + descriptor(method.getParameterTypes(), method.getReturnType()),
+                    method);
+        }
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        DataOutputStream membersData = new DataOutputStream(members);
+        List<Constructor<?>> superConstructors = new ArrayList<>(constructors);
+        if (token.isInterface()) {
+            superConstructors.add(null);
+        }
+        for (Constructor<?> constructor : superConstructors) {
+            writeConstructor(membersData, superName, constructor);
+        }
+        Map<MethodIndex.Signature, Set<Class<?>>> returnTypes = MethodIndex.getReturnTypes(token);
+        int bridges = 0;
+        for (Method method : unique.values()) {
+            Class<?>[] parameters = method.getParameterTypes();
+            int locals = 1 + slots(parameters);
+            writeMethod(membersData, accessFlags(method), method.getName(),
+                    descriptor(parameters, method.getReturnType()),
+                    slots(method.getReturnType()), locals, returnDefault(method.getReturnType()),
+                    method.getExceptionTypes());
+            for (Class<?> returnType : returnTypes.getOrDefault(new MethodIndex.Signature(method), Set.of())) {
+                if (returnType != method.getReturnType() && returnType.isAssignableFrom(method.getReturnType())) {
+                    writeBridge(membersData, internalName(className), method, returnType);
+                    bridges++;
+                }
+            }
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(result);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(VERSION);
+        out.writeShort(poolSize);
+        pool.writeTo(out);
+        out.writeShort((token.getModifiers() & Modifier.PUBLIC) | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(interfaces.length);
+        for (int index : interfaces) {
+            out.writeShort(index);
+        }
+        out.writeShort(0);
+        out.writeShort(superConstructors.size() + unique.size() + bridges);
+        members.writeTo(out);
+        out.writeShort(0);
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,156 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Dumps class data sharing archives of generated <code>.jar</code> files. Archive is dumped by a separate JVM
+ * loading every class from a class list: the default class list of the running JDK, so startup classes of
+ * the platform stay shared, followed by implementations from the <code>.jar</code> file. No main class is run,
+ * so the archive records exactly the <code>.jar</code> file and locations of implemented classes as its
+ * classpath.
+ * <p>
+ * Consumers use the archive with <code>-XX:SharedArchiveFile=file.jsa</code> on the same JDK build, with
+ * a classpath starting with the same entries as {@link #getClasspath(Path, Collection)}; otherwise the JVM
+ * ignores the archive and loads classes as usual.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class ClassDataArchiver {
+
+    /**
+     * Number of last lines of dumping JVM output reported on failure.
+     */
+    private static final int OUTPUT_LINES = 10;
+
+    /**
+     * Dumps archive of a <code>.jar</code> file. Archive is dumped next to the target and moved in place,
+     * so JVMs starting meanwhile never map a partial archive.
+     *
+     * @param jarFile <code>.jar</code> file with implementations.
+     * @param tokens implemented classes.
+     * @param classNames binary names of implementations in {@code jarFile}.
+     * @param archive target <code>.jsa</code> file.
+     * @return size of written archive in bytes.
+     * @throws ImplerException if class list could not be written or dumping JVM fails.
+     */
+    static long archive(Path jarFile, Collection<Class<?>> tokens, Collection<String> classNames,
+                        Path archive) throws ImplerException {
+        Path classList = null;
+        try {
+            Path directory = archive.toAbsolutePath().getParent();
+            classList = Files.createTempFile(directory, "classlist", ".txt");
+            List<String> lines = new ArrayList<>();
+            Path defaultList = Path.of(System.getProperty("java.home"), "lib", "classlist");
+            if (Files.isRegularFile(defaultList)) {
+                lines.addAll(Files.readAllLines(defaultList, StandardCharsets.UTF_8));
+            }
+            for (String name : classNames) {
+                lines.add(name.replace('.', '/'));
+            }
+            Files.write(classList, lines, StandardCharsets.UTF_8);
+            Path list = classList;
+            return ImplementorFileUtils.writeAtomically(archive, temporary -> dump(jarFile, tokens, list, temporary));
+        } catch (IOException e) {
+            throw new ImplerException("Can not dump class data archive: " + e.getMessage(), e);
+        } finally {
+            if (classList != null) {
+                try {
+                    Files.deleteIfExists(classList);
+                } catch (IOException ignored) {
+                    // temporary file is left behind
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs JVM dumping archive.
+     *
+     * @param jarFile <code>.jar</code> file with implementations.
+     * @param tokens implemented classes.
+     * @param classList class list to dump.
+     * @param archive <code>.jsa</code> file to write.
+     * @return size of written archive in bytes.
+     * @throws IOException if JVM could not be started.
+     * @throws ImplerException if dumping JVM fails or is interrupted.
+     */
+    private static long dump(Path jarFile, Collection<Class<?>> tokens, Path classList, Path archive)
+            throws IOException, ImplerException {
+        Files.deleteIfExists(archive);
+        Process process = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xshare:dump",
+                "-XX:SharedClassListFile=" + classList,
+                "-XX:SharedArchiveFile=" + archive.toAbsolutePath(),
+                "-cp", String.join(File.pathSeparator, getClasspath(jarFile, tokens))
+        ).redirectErrorStream(true).start();
+        List<String> output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8)
+                .lines().collect(Collectors.toList());
+        int status;
+        try {
+            status = process.waitFor();
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new ImplerException("Interrupted while dumping class data archive", e);
+        }
+        if (status != 0 || !Files.isRegularFile(archive)) {
+            throw new ImplerException("Dumping class data archive failed with status " + status + ": "
+                    + String.join(System.lineSeparator(),
+                    output.subList(Math.max(0, output.size() - OUTPUT_LINES), output.size())));
+        }
+        return Files.size(archive);
+    }
+
+    /**
+     * Gets classpath recorded in archive: the <code>.jar</code> file followed by locations of implemented classes
+     * and their supertypes, except platform ones.
+     *
+     * @param jarFile <code>.jar</code> file with implementations.
+     * @param tokens implemented classes.
+     * @return classpath entries in order.
+     * @throws ImplerException if some location could not be converted to a path or is a directory,
+     * as archives can not refer to classes in directories.
+     */
+    static Set<String> getClasspath(Path jarFile, Collection<Class<?>> tokens) throws ImplerException {
+        Set<String> classpath = new LinkedHashSet<>();
+        classpath.add(jarFile.toAbsolutePath().toString());
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>(tokens);
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            if (!visited.add(type)) {
+                continue;
+            }
+            Path location = Implementor.getClassLocation(type);
+            if (!location.toString().isEmpty()) {
+                if (Files.isDirectory(location)) {
+                    throw new ImplerException("Class data archive needs " + type.getName()
+                            + " packed into a .jar file, found directory " + location);
+                }
+                classpath.add(location.toAbsolutePath().toString());
+            }
+            if (type.getSuperclass() != null) {
+                queue.add(type.getSuperclass());
+            }
+            queue.addAll(List.of(type.getInterfaces()));
+        }
+        return classpath;
+    }
+}
@@ -0,0 +1,480 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Implements classes and interfaces read from class files of a directory or a <code>.jar</code> file, without
+ * loading them. Classes are parsed into {@link ClassFileModel}s on demand: an implemented class first, then its
+ * supertypes as they are needed, looked up in the same input and then among platform classes of the running JDK.
+ * Abstract methods are found by the rules of {@link MethodIndex} applied to parsed classes, and source code is
+ * written by {@link CodeWriter} the same way {@link Implementor} writes it.
+ * <p>
+ * Instances are not thread-safe and should be {@link #close() closed} to release an opened <code>.jar</code> file.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class ClassFileImplementor implements AutoCloseable {
+
+    /**
+     * Input directory or <code>.jar</code> file.
+     */
+    private final Path input;
+
+    /**
+     * File system of an input <code>.jar</code> file, <code>null</code> for a directory.
+     */
+    private final FileSystem archive;
+
+    /**
+     * Directory class files are resolved against.
+     */
+    private final Path root;
+
+    /**
+     * Parsed classes by binary names.
+     */
+    private final Map<String, ClassFileModel> classes = new HashMap<>();
+
+    /**
+     * Methods visible in a class by binary names of classes, see {@link #index(ClassFileModel)}.
+     */
+    private final Map<String, Map<String, ClassFileModel.MethodModel>> indices = new HashMap<>();
+
+    /**
+     * Opens input.
+     *
+     * @param input directory or <code>.jar</code> file with class files.
+     * @throws ImplerException if input does not exist or <code>.jar</code> file could not be opened.
+     */
+    ClassFileImplementor(Path input) throws ImplerException {
+        this.input = input.toAbsolutePath();
+        if (Files.isDirectory(input)) {
+            this.archive = null;
+            this.root = this.input;
+        } else if (Files.isRegularFile(input)) {
+            try {
+                this.archive = FileSystems.newFileSystem(input, (ClassLoader) null);
+            } catch (IOException e) {
+                throw new ImplerException("Can not open " + input + ": " + e.getMessage(), e);
+            }
+            this.root = archive.getPath("/");
+        } else {
+            throw new ImplerException("Input " + input + " is neither a directory nor a file");
+        }
+    }
+
+    /**
+     * Gets input as a classpath entry for compilation of implementations.
+     *
+     * @return absolute path of input.
+     */
+    Path getInput() {
+        return input;
+    }
+
+    /**
+     * Gets parsed class. Class file is looked up in the input, then among platform classes.
+     *
+     * @param name binary name of a class.
+     * @return {@link ClassFileModel} of a class.
+     * @throws ImplerException if class file is not found or is malformed.
+     */
+    ClassFileModel getClass(String name) throws ImplerException {
+        ClassFileModel model = classes.get(name);
+        if (model == null) {
+            String path = name.replace('.', '/') + ".class";
+            try {
+                Path file = root.resolve(path);
+                byte[] bytes = Files.isRegularFile(file) ? Files.readAllBytes(file) : readPlatformClass(name, path);
+                if (bytes == null) {
+                    throw new ImplerException("Class " + name + " is not found in " + input);
+                }
+                model = new ClassFileModel(bytes);
+            } catch (IOException e) {
+                throw new ImplerException("Can not read class " + name + ": " + e.getMessage(), e);
+            }
+            if (!model.name.equals(name)) {
+                throw new ImplerException("Class file of " + name + " declares " + model.name);
+            }
+            classes.put(name, model);
+        }
+        return model;
+    }
+
+    /**
+     * Reads class file of a platform class from <code>jrt:/</code> file system of the running JDK.
+     *
+     * @param name binary name of a class.
+     * @param path path of a class file inside a module.
+     * @return class file, <code>null</code> if there is no such platform class.
+     * @throws IOException if class file could not be read.
+     */
+    private static byte[] readPlatformClass(String name, String path) throws IOException {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+        FileSystem jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+        Path modules = jrt.getPath("/packages", name.substring(0, dot));
+        if (!Files.isDirectory(modules)) {
+            return null;
+        }
+        try (Stream<Path> list = Files.list(modules)) {
+            Optional<Path> file = list
+                    .map(module -> jrt.getPath("/modules", module.getFileName().toString(), path))
+                    .filter(Files::isRegularFile)
+                    .findFirst();
+            return file.isPresent() ? Files.readAllBytes(file.get()) : null;
+        }
+    }
+
+    /**
+     * Gets a class with all its supertypes.
+     *
+     * @param token parsed class.
+     * @return binary names of {@code token}, its superclasses and superinterfaces.
+     * @throws ImplerException if some supertype could not be read.
+     */
+    Set<String> getHierarchy(ClassFileModel token) throws ImplerException {
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(token.name);
+        while (!queue.isEmpty()) {
+            String name = queue.poll();
+            if (visited.add(name)) {
+                ClassFileModel model = getClass(name);
+                if (model.superName != null) {
+                    queue.add(model.superName);
+                }
+                queue.addAll(model.interfaces);
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Gets binary name of an implementation of a class.
+     *
+     * @param token implemented class.
+     * @return name of a package of {@code token} with its simple name and <code>Impl</code> suffix.
+     */
+    static String getImplementationName(ClassFileModel token) {
+        return token.getPackageName().isEmpty() ? token.getSimpleName() + "Impl"
+                : token.getPackageName() + "." + token.getSimpleName() + "Impl";
+    }
+
+    /**
+     * Checks whether given class could be implemented.
+     *
+     * @param token implemented class.
+     * @throws ImplerException if {@code token} is final, {@link Enum}, local, synthetic, an annotation,
+     * <code>package-info</code> or <code>module-info</code>, or there is a private class in its hierarchy.
+     */
+    void checkToken(ClassFileModel token) throws ImplerException {
+        if (Modifier.isFinal(token.access) || token.local || token.name.equals(Enum.class.getName())) {
+            throw new ImplerException("Unsupported token given");
+        }
+        if ((token.access & (ClassFileModel.SYNTHETIC | ClassFileModel.ANNOTATION | ClassFileModel.MODULE)) != 0
+                || token.name.endsWith("package-info") || token.name.endsWith("module-info")) {
+            throw new ImplerException("Synthetic classes, annotations, package-info and module-info "
+                    + "can not be implemented");
+        }
+        for (ClassFileModel cur = token; ; cur = getClass(cur.superName)) {
+            if (Modifier.isPrivate(cur.access)) {
+                throw new ImplerException("Private class in hierarchy");
+            }
+            if (cur.superName == null) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Finds constructors generated class should declare, as {@link Implementor#getConstructors(Class)} does.
+     *
+     * @param token implemented class.
+     * @return {@link List} of non-private constructors, empty for an interface.
+     * @throws ImplerException if class has no non-private constructors.
+     */
+    List<ClassFileModel.MethodModel> getConstructors(ClassFileModel token) throws ImplerException {
+        if (token.isInterface()) {
+            return List.of();
+        }
+        List<ClassFileModel.MethodModel> constructors = token.methods.stream()
+                .filter(method -> method.isConstructor() && !Modifier.isPrivate(method.access))
+                .collect(Collectors.toList());
+        if (constructors.isEmpty()) {
+            throw new ImplerException("Class with no non-private constructors can not be extended");
+        }
+        return constructors;
+    }
+
+    /**
+     * Finds abstract methods generated class should implement, one per signature, as
+     * {@link MethodIndex#getAbstractMethods(Class)} does.
+     *
+     * @param token implemented class.
+     * @return {@link List} of methods to be implemented.
+     * @throws ImplerException if some supertype could not be read.
+     */
+    List<ClassFileModel.MethodModel> getAbstractMethods(ClassFileModel token) throws ImplerException {
+        Map<String, ClassFileModel.MethodModel> methods = index(token);
+        if (token.isInterface()) {
+            methods = new LinkedHashMap<>(index(getClass(Object.class.getName())));
+            merge(methods, index(token));
+        }
+        List<ClassFileModel.MethodModel> result = new ArrayList<>();
+        for (ClassFileModel.MethodModel method : methods.values()) {
+            if (Modifier.isAbstract(method.access) && (Modifier.isPublic(method.access)
+                    || Modifier.isProtected(method.access)
+                    || method.declaringClass.getPackageName().equals(token.getPackageName()))) {
+                result.add(method);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Generates source code implementing given class.
+     *
+     * @param token implemented class.
+     * @param constructors constructors found by {@link #getConstructors(ClassFileModel)}.
+     * @param methods methods found by {@link #getAbstractMethods(ClassFileModel)}.
+     * @return {@link CodeWriter} holding generated code.
+     */
+    CodeWriter generateSource(ClassFileModel token, List<ClassFileModel.MethodModel> constructors,
+                              List<ClassFileModel.MethodModel> methods) {
+        String className = token.getSimpleName() + "Impl";
+        CodeWriter code = new CodeWriter();
+        code.packageDeclaration(token.getPackageName()).endLine()
+                .visibility(token.access & Modifier.PUBLIC)
+                .word("class").word(className)
+                .word(token.isInterface() ? "implements" : "extends").append(token.getCanonicalName(token.name))
+                .beginBlock();
+        for (ClassFileModel.MethodModel constructor : constructors) {
+            code.endLine().line().visibility(constructor.access).append(className)
+                    .parameters(getParameters(constructor)).throwsClause(getExceptions(constructor))
+                    .beginBlock().line().append("super").arguments(constructor.parameters.size())
+                    .statementEnd().endLine().endBlock();
+        }
+        for (ClassFileModel.MethodModel method : methods) {
+            code.endLine().line().visibility(method.access)
+                    .word(method.declaringClass.getSourceName(method.returnType)).append(method.name)
+                    .parameters(getParameters(method)).throwsClause(getExceptions(method))
+                    .beginBlock().line().append("return");
+            if (!method.returnType.equals("V")) {
+                code.append(" ").append(getDefaultValue(method.returnType));
+            }
+            code.statementEnd().endLine().endBlock();
+        }
+        return code.endBlock();
+    }
+
+    /**
+     * Gets names of parameter types of a method.
+     *
+     * @param method method read from a class file.
+     * @return canonical names of parameter types.
+     */
+    private static List<String> getParameters(ClassFileModel.MethodModel method) {
+        return method.parameters.stream()
+                .map(method.declaringClass::getSourceName)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Gets names of exceptions declared by a method.
+     *
+     * @param method method read from a class file.
+     * @return canonical names of exception types.
+     */
+    private static List<String> getExceptions(ClassFileModel.MethodModel method) {
+        return method.exceptions.stream()
+                .map(method.declaringClass::getCanonicalName)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns default value of a type.
+     *
+     * @param type field descriptor of a type, not <code>V</code>.
+     * @return {@link String} containing default value for a given type.
+     */
+    private static String getDefaultValue(String type) {
+        switch (type.charAt(0)) {
+            case 'L':
+            case '[':
+                return "null";
+            case 'Z':
+                return "false";
+            default:
+                return "0";
+        }
+    }
+
+    /**
+     * Computes methods visible in a class by their signatures, as {@link MethodIndex} does for loaded classes.
+     * Superclass of interfaces, recorded as {@link Object} in class files, is skipped as reflection does.
+     * Bridges are indexed for signatures no other declared method has, so they shadow erased abstract methods.
+     * Indices are memoized, so shared supertypes are read and indexed only once.
+     *
+     * @param type parsed class.
+     * @return unmodifiable map of most specific methods by their signatures.
+     * @throws ImplerException if some supertype could not be read.
+     */
+    private Map<String, ClassFileModel.MethodModel> index(ClassFileModel type) throws ImplerException {
+        Map<String, ClassFileModel.MethodModel> cached = indices.get(type.name);
+        if (cached != null) {
+            return cached;
+        }
+        Map<String, ClassFileModel.MethodModel> result = new LinkedHashMap<>();
+        for (ClassFileModel.MethodModel method : type.methods) {
+            if (Modifier.isStatic(method.access) || Modifier.isPrivate(method.access) || method.isConstructor()) {
+                continue;
+            }
+            if ((method.access & ClassFileModel.BRIDGE) != 0) {
+                result.putIfAbsent(method.signature, method);
+            } else {
+                result.put(method.signature, method);
+            }
+        }
+        if (type.superName != null && !type.isInterface()) {
+            merge(result, index(getClass(type.superName)));
+        }
+        for (String superInterface : type.interfaces) {
+            merge(result, index(getClass(superInterface)));
+        }
+        result = Collections.unmodifiableMap(result);
+        indices.put(type.name, result);
+        return result;
+    }
+
+    /**
+     * Merges methods inherited from a supertype into methods of a subtype.
+     *
+     * @param target methods collected so far, updated in place.
+     * @param inherited methods of a supertype.
+     * @throws ImplerException if some supertype could not be read.
+     */
+    private void merge(Map<String, ClassFileModel.MethodModel> target,
+                       Map<String, ClassFileModel.MethodModel> inherited) throws ImplerException {
+        for (Map.Entry<String, ClassFileModel.MethodModel> entry : inherited.entrySet()) {
+            ClassFileModel.MethodModel current = target.get(entry.getKey());
+            target.put(entry.getKey(), current == null ? entry.getValue() : moreSpecific(current, entry.getValue()));
+        }
+    }
+
+    /**
+     * Chooses which of two methods with the same signature is inherited, by the rules of {@link MethodIndex}.
+     *
+     * @param current method found so far.
+     * @param candidate method of another supertype.
+     * @return method to keep.
+     * @throws ImplerException if some supertype could not be read.
+     */
+    private ClassFileModel.MethodModel moreSpecific(ClassFileModel.MethodModel current,
+                                                    ClassFileModel.MethodModel candidate) throws ImplerException {
+        ClassFileModel currentClass = current.declaringClass;
+        ClassFileModel candidateClass = candidate.declaringClass;
+        if (!currentClass.isInterface() || !candidateClass.isInterface()) {
+            if (currentClass.isInterface() != candidateClass.isInterface()) {
+                ClassFileModel.MethodModel classMethod = currentClass.isInterface() ? candidate : current;
+                ClassFileModel.MethodModel interfaceMethod = currentClass.isInterface() ? current : candidate;
+                return Modifier.isPublic(classMethod.access) ? classMethod : interfaceMethod;
+            }
+            return current;
+        }
+        if (isSubclass(candidateClass, currentClass.name)) {
+            return candidate;
+        } else if (isSubclass(currentClass, candidateClass.name)) {
+            return current;
+        }
+        boolean currentAbstract = Modifier.isAbstract(current.access);
+        if (currentAbstract != Modifier.isAbstract(candidate.access)) {
+            return currentAbstract ? current : candidate;
+        }
+        return isAssignable(current.returnType, candidate.returnType) ? candidate : current;
+    }
+
+    /**
+     * Checks whether a class is a subtype of another one.
+     *
+     * @param type parsed class.
+     * @param superName binary name of a supposed supertype.
+     * @return <code>true</code> if {@code type} is {@code superName} or extends or implements it.
+     * @throws ImplerException if some supertype could not be read.
+     */
+    private boolean isSubclass(ClassFileModel type, String superName) throws ImplerException {
+        return getHierarchy(type).contains(superName);
+    }
+
+    /**
+     * Checks whether a value of one type is assignable to another type, as {@link Class#isAssignableFrom(Class)}.
+     *
+     * @param target field descriptor of a type assigned to.
+     * @param source field descriptor of a type of a value.
+     * @return <code>true</code> if {@code source} is {@code target} or its subtype.
+     * @throws ImplerException if some supertype could not be read.
+     */
+    private boolean isAssignable(String target, String source) throws ImplerException {
+        if (target.equals(source)) {
+            return true;
+        } else if (target.length() == 1 || source.length() == 1) {
+            return false;
+        } else if (target.equals("Ljava/lang/Object;")) {
+            return true;
+        } else if (source.charAt(0) == '[') {
+            return target.charAt(0) == '[' ? isAssignable(target.substring(1), source.substring(1))
+                    : target.equals("Ljava/lang/Cloneable;") || target.equals("Ljava/io/Serializable;");
+        } else if (target.charAt(0) == '[') {
+            return false;
+        }
+        return isSubclass(getClass(toBinaryName(source)), toBinaryName(target));
+    }
+
+    /**
+     * Converts descriptor of a class to its binary name.
+     *
+     * @param descriptor field descriptor of a class, like <code>Ljava/lang/String;</code>.
+     * @return binary name of a class.
+     */
+    private static String toBinaryName(String descriptor) {
+        return descriptor.substring(1, descriptor.length() - 1).replace('/', '.');
+    }
+
+    /**
+     * Closes input <code>.jar</code> file, ignoring errors.
+     */
+    @Override
+    public void close() {
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException ignored) {
+                // nothing to do with it anyway
+            }
+        }
+    }
+}
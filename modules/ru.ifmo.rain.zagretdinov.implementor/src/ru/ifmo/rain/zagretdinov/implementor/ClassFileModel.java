@@ -0,0 +1,418 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class or interface read from a class file. Only the parts needed to implement it are kept: access flags,
+ * supertypes, methods with their descriptors and declared exceptions, and nesting taken from
+ * <code>InnerClasses</code> attribute. Class is neither loaded nor initialized.
+ * <p>
+ * Types are kept as field descriptors, like <code>I</code>, <code>[Ljava/lang/String;</code>, and converted to
+ * canonical names with {@link #getSourceName(String)}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class ClassFileModel {
+
+    /**
+     * Magic number of class files.
+     */
+    private static final int MAGIC = 0xCAFEBABE;
+
+    /**
+     * Class file flag of interfaces, absent in {@link Modifier}.
+     */
+    static final int INTERFACE = 0x0200;
+
+    /**
+     * Class file flag of bridge methods.
+     */
+    static final int BRIDGE = 0x0040;
+
+    /**
+     * Class file flag of classes and methods not present in sources.
+     */
+    static final int SYNTHETIC = 0x1000;
+
+    /**
+     * Class file flag of annotation interfaces.
+     */
+    static final int ANNOTATION = 0x2000;
+
+    /**
+     * Class file flag of <code>module-info</code> classes.
+     */
+    static final int MODULE = 0x8000;
+
+    /**
+     * Method read from a class file.
+     */
+    static final class MethodModel {
+        /**
+         * Class declaring this method.
+         */
+        final ClassFileModel declaringClass;
+
+        /**
+         * Access flags.
+         */
+        final int access;
+
+        /**
+         * Name of a method, <code>&lt;init&gt;</code> for constructors.
+         */
+        final String name;
+
+        /**
+         * Parameter types as field descriptors.
+         */
+        final List<String> parameters;
+
+        /**
+         * Return type as a field descriptor, <code>V</code> for <code>void</code>.
+         */
+        final String returnType;
+
+        /**
+         * Binary names of declared exceptions.
+         */
+        final List<String> exceptions;
+
+        /**
+         * Signature of a method: name with erased parameter types.
+         */
+        final String signature;
+
+        /**
+         * Creates method.
+         *
+         * @param declaringClass class declaring this method.
+         * @param access access flags.
+         * @param name name of a method.
+         * @param descriptor method descriptor.
+         * @param exceptions binary names of declared exceptions.
+         * @throws ImplerException if descriptor is malformed.
+         */
+        private MethodModel(ClassFileModel declaringClass, int access, String name, String descriptor,
+                            List<String> exceptions) throws ImplerException {
+            this.declaringClass = declaringClass;
+            this.access = access;
+            this.name = name;
+            this.exceptions = exceptions;
+            int end = descriptor.indexOf(')');
+            if (!descriptor.startsWith("(") || end < 0) {
+                throw new ImplerException("Malformed descriptor of " + declaringClass.name + "." + name);
+            }
+            this.parameters = splitDescriptors(descriptor.substring(1, end));
+            this.returnType = descriptor.substring(end + 1);
+            this.signature = name + descriptor.substring(0, end + 1);
+        }
+
+        /**
+         * Checks whether method is a constructor.
+         *
+         * @return <code>true</code> for <code>&lt;init&gt;</code>.
+         */
+        boolean isConstructor() {
+            return name.equals("<init>");
+        }
+    }
+
+    /**
+     * Binary name of a class.
+     */
+    final String name;
+
+    /**
+     * Access flags, taken from <code>InnerClasses</code> attribute for nested classes.
+     */
+    final int access;
+
+    /**
+     * Binary name of a superclass, <code>null</code> for {@link Object}.
+     */
+    final String superName;
+
+    /**
+     * Binary names of direct superinterfaces.
+     */
+    final List<String> interfaces = new ArrayList<>();
+
+    /**
+     * Declared methods and constructors.
+     */
+    final List<MethodModel> methods = new ArrayList<>();
+
+    /**
+     * Whether class is nested, but neither a member nor top-level class.
+     */
+    final boolean local;
+
+    /**
+     * Canonical names of nested classes mentioned in this class file by their binary names.
+     */
+    private final Map<String, String> canonicalNames = new HashMap<>();
+
+    /**
+     * Parses class file.
+     *
+     * @param bytes contents of a class file.
+     * @throws ImplerException if class file is malformed.
+     */
+    ClassFileModel(byte[] bytes) throws ImplerException {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (input.readInt() != MAGIC) {
+                throw new ImplerException("Not a class file");
+            }
+            input.readUnsignedShort();
+            input.readUnsignedShort();
+            Object[] pool = readConstantPool(input);
+            int classAccess = input.readUnsignedShort();
+            this.name = className(pool, input.readUnsignedShort());
+            int superIndex = input.readUnsignedShort();
+            this.superName = superIndex == 0 ? null : className(pool, superIndex);
+            int interfaceCount = input.readUnsignedShort();
+            for (int i = 0; i < interfaceCount; i++) {
+                interfaces.add(className(pool, input.readUnsignedShort()));
+            }
+            int fieldCount = input.readUnsignedShort();
+            for (int i = 0; i < fieldCount; i++) {
+                input.skipBytes(6);
+                skipAttributes(input);
+            }
+            int methodCount = input.readUnsignedShort();
+            for (int i = 0; i < methodCount; i++) {
+                int methodAccess = input.readUnsignedShort();
+                String methodName = (String) pool[input.readUnsignedShort()];
+                String descriptor = (String) pool[input.readUnsignedShort()];
+                List<String> exceptions = new ArrayList<>();
+                int attributeCount = input.readUnsignedShort();
+                for (int j = 0; j < attributeCount; j++) {
+                    String attribute = (String) pool[input.readUnsignedShort()];
+                    int length = input.readInt();
+                    if (attribute.equals("Exceptions")) {
+                        int exceptionCount = input.readUnsignedShort();
+                        for (int k = 0; k < exceptionCount; k++) {
+                            exceptions.add(className(pool, input.readUnsignedShort()));
+                        }
+                    } else {
+                        input.skipBytes(length);
+                    }
+                }
+                methods.add(new MethodModel(this, methodAccess, methodName, descriptor, exceptions));
+            }
+            boolean nested = false;
+            boolean member = false;
+            int attributeCount = input.readUnsignedShort();
+            for (int i = 0; i < attributeCount; i++) {
+                String attribute = (String) pool[input.readUnsignedShort()];
+                int length = input.readInt();
+                if (!attribute.equals("InnerClasses")) {
+                    input.skipBytes(length);
+                    continue;
+                }
+                Map<String, String[]> outers = new HashMap<>();
+                int classCount = input.readUnsignedShort();
+                for (int j = 0; j < classCount; j++) {
+                    String inner = className(pool, input.readUnsignedShort());
+                    int outerIndex = input.readUnsignedShort();
+                    int innerNameIndex = input.readUnsignedShort();
+                    int innerAccess = input.readUnsignedShort();
+                    if (inner.equals(name)) {
+                        nested = true;
+                        member = outerIndex != 0 && innerNameIndex != 0;
+                        classAccess = innerAccess;
+                    }
+                    if (outerIndex != 0 && innerNameIndex != 0) {
+                        outers.put(inner, new String[]{className(pool, outerIndex), (String) pool[innerNameIndex]});
+                    }
+                }
+                for (String inner : outers.keySet()) {
+                    canonicalNames.put(inner, canonicalName(inner, outers));
+                }
+            }
+            this.access = classAccess;
+            this.local = nested && !member;
+        } catch (IOException | ClassCastException | ArrayIndexOutOfBoundsException e) {
+            throw new ImplerException("Malformed class file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks whether this is an interface.
+     *
+     * @return <code>true</code> for interfaces and annotation types.
+     */
+    boolean isInterface() {
+        return (access & INTERFACE) != 0;
+    }
+
+    /**
+     * Gets name of a package.
+     *
+     * @return package of this class, empty {@link String} for unnamed package.
+     */
+    String getPackageName() {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(0, dot);
+    }
+
+    /**
+     * Gets simple name of this class, as written in source.
+     *
+     * @return simple name.
+     */
+    String getSimpleName() {
+        String canonical = getCanonicalName(name);
+        return canonical.substring(canonical.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Converts binary name of a class to its canonical name. Names of nested classes are resolved with
+     * <code>InnerClasses</code> attribute of this class, which lists every nested class mentioned in it;
+     * <code>$</code> is treated as a separator otherwise.
+     *
+     * @param binaryName binary name of a class.
+     * @return canonical name of a class.
+     */
+    String getCanonicalName(String binaryName) {
+        return canonicalNames.getOrDefault(binaryName, binaryName.replace('$', '.'));
+    }
+
+    /**
+     * Converts field descriptor to a name of a type usable in source code, see {@link #getCanonicalName(String)}.
+     *
+     * @param type field descriptor, or <code>V</code>.
+     * @return name of a type, with <code>[]</code> for arrays.
+     */
+    String getSourceName(String type) {
+        switch (type.charAt(0)) {
+            case 'Z': return "boolean";
+            case 'B': return "byte";
+            case 'C': return "char";
+            case 'S': return "short";
+            case 'I': return "int";
+            case 'J': return "long";
+            case 'F': return "float";
+            case 'D': return "double";
+            case 'V': return "void";
+            case '[': return getSourceName(type.substring(1)) + "[]";
+            default: return getCanonicalName(type.substring(1, type.length() - 1).replace('/', '.'));
+        }
+    }
+
+    /**
+     * Splits concatenated field descriptors, as in parameters of a method descriptor.
+     *
+     * @param descriptors concatenated descriptors.
+     * @return {@link List} of descriptors.
+     * @throws ImplerException if descriptors are malformed.
+     */
+    private static List<String> splitDescriptors(String descriptors) throws ImplerException {
+        List<String> result = new ArrayList<>();
+        int start = 0;
+        while (start < descriptors.length()) {
+            int end = start;
+            while (end < descriptors.length() && descriptors.charAt(end) == '[') {
+                end++;
+            }
+            if (end < descriptors.length() && descriptors.charAt(end) == 'L') {
+                end = descriptors.indexOf(';', end);
+                if (end < 0) {
+                    throw new ImplerException("Malformed descriptor " + descriptors);
+                }
+            }
+            result.add(descriptors.substring(start, end + 1));
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Builds canonical name of a member class from its outer classes.
+     *
+     * @param binaryName binary name of a class.
+     * @param outers outer class and simple name by binary names of member classes.
+     * @return canonical name.
+     */
+    private static String canonicalName(String binaryName, Map<String, String[]> outers) {
+        String[] outer = outers.get(binaryName);
+        return outer == null ? binaryName : canonicalName(outer[0], outers) + "." + outer[1];
+    }
+
+    /**
+     * Reads constant pool. Names of classes and UTF-8 strings are kept as {@link String}s, indices of
+     * class names as {@link Integer}s, other constants are skipped.
+     *
+     * @param input class file positioned at constant pool count.
+     * @return constant pool indexed from <code>1</code>.
+     * @throws IOException if class file is truncated.
+     * @throws ImplerException if constant pool has unknown tag.
+     */
+    private static Object[] readConstantPool(DataInputStream input) throws IOException, ImplerException {
+        Object[] pool = new Object[input.readUnsignedShort()];
+        for (int i = 1; i < pool.length; i++) {
+            int tag = input.readUnsignedByte();
+            switch (tag) {
+                case 1:
+                    pool[i] = input.readUTF();
+                    break;
+                case 7:
+                    pool[i] = input.readUnsignedShort();
+                    break;
+                case 8: case 16: case 19: case 20:
+                    input.skipBytes(2);
+                    break;
+                case 15:
+                    input.skipBytes(3);
+                    break;
+                case 3: case 4: case 9: case 10: case 11: case 12: case 17: case 18:
+                    input.skipBytes(4);
+                    break;
+                case 5: case 6:
+                    input.skipBytes(8);
+                    i++;
+                    break;
+                default:
+                    throw new ImplerException("Unknown constant pool tag " + tag);
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Gets binary name of a class from constant pool.
+     *
+     * @param pool constant pool.
+     * @param index index of a <code>CONSTANT_Class</code> entry.
+     * @return binary name with <code>'.'</code> separators.
+     */
+    private static String className(Object[] pool, int index) {
+        return ((String) pool[(Integer) pool[index]]).replace('/', '.');
+    }
+
+    /**
+     * Skips attributes of a field or method.
+     *
+     * @param input class file positioned at attribute count.
+     * @throws IOException if class file is truncated.
+     */
+    private static void skipAttributes(DataInputStream input) throws IOException {
+        int count = input.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            input.skipBytes(2);
+            input.skipBytes(input.readInt());
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.GenericSignatureFormatError;
+import java.lang.reflect.MalformedParameterizedTypeException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Index of packages of an explicit classpath, used to pass the compiler only entries which implementations of
+ * given classes need. Entries are scanned once, when the index is created; then the classpath of a token
+ * consists of locations of its supertypes and of types referenced by signatures of their members, so the
+ * compiler neither misses types from other <code>.jar</code> files nor scans unrelated ones.
+ * <p>
+ * Types are located by their packages; a split package contributes every entry containing it. Types of
+ * packages missing from the index are located by their {@link java.security.CodeSource}, and platform types
+ * need no location. Modular <code>.jar</code> files are indexed as plain ones, as implementations are compiled
+ * on the classpath.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ClasspathIndex {
+
+    /**
+     * Index without entries, locating every type by its {@link java.security.CodeSource}.
+     */
+    static final ClasspathIndex EMPTY = new ClasspathIndex();
+
+    /**
+     * Suffix of class file names.
+     */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * Prefix of versioned entries of multi-release <code>.jar</code> files.
+     */
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+
+    /**
+     * Memoized non-platform types needed to compile an implementation of a class: its supertypes and types
+     * referenced by signatures of their members, with supertypes of those.
+     */
+    private static final ClassValue<Set<Class<?>>> REFERENCES = new ClassValue<>() {
+        @Override
+        protected Set<Class<?>> computeValue(Class<?> token) {
+            return Collections.unmodifiableSet(collectReferences(token));
+        }
+    };
+
+    /**
+     * Classpath entries by package names.
+     */
+    private final Map<String, List<Path>> packages;
+
+    /**
+     * Creates empty index.
+     */
+    private ClasspathIndex() {
+        this.packages = Map.of();
+    }
+
+    /**
+     * Creates index of given classpath entries. Entries are <code>.jar</code> files and directories of classes;
+     * entries ending with <code>*</code> stand for every <code>.jar</code> file of a directory, as for
+     * <code>java</code>. Missing entries are skipped.
+     *
+     * @param entries classpath entries in order.
+     * @throws ImplerException if some entry could not be read.
+     */
+    public ClasspathIndex(Collection<Path> entries) throws ImplerException {
+        List<Path> expanded = new ArrayList<>();
+        for (Path entry : entries) {
+            expand(entry, expanded);
+        }
+        try {
+            List<Set<String>> scanned = expanded.parallelStream()
+                    .map(ClasspathIndex::scan)
+                    .collect(Collectors.toList());
+            Map<String, List<Path>> packages = new HashMap<>();
+            for (int i = 0; i < expanded.size(); i++) {
+                Path entry = expanded.get(i);
+                scanned.get(i).forEach(name -> packages.computeIfAbsent(name, key -> new ArrayList<>()).add(entry));
+            }
+            this.packages = packages;
+        } catch (UncheckedIOException e) {
+            throw new ImplerException("Can not index classpath: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Creates index of a classpath string, entries separated by {@link File#pathSeparator}.
+     *
+     * @param classpath classpath string.
+     * @return {@link ClasspathIndex} of its entries.
+     * @throws ImplerException if some entry is invalid or could not be read.
+     */
+    public static ClasspathIndex parse(String classpath) throws ImplerException {
+        try {
+            return new ClasspathIndex(Stream.of(classpath.split(File.pathSeparator))
+                    .filter(entry -> !entry.isEmpty())
+                    .map(Path::of)
+                    .collect(Collectors.toList()));
+        } catch (InvalidPathException e) {
+            throw new ImplerException("Invalid classpath entry: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets number of indexed packages.
+     *
+     * @return number of packages.
+     */
+    public int size() {
+        return packages.size();
+    }
+
+    /**
+     * Gets classpath needed to compile implementations of given classes.
+     *
+     * @param tokens implemented classes.
+     * @return absolute classpath entries in order of first use.
+     * @throws ImplerException if location of some type could not be converted to a path.
+     */
+    Set<String> getClasspath(Collection<Class<?>> tokens) throws ImplerException {
+        Set<String> classpath = new LinkedHashSet<>();
+        for (Class<?> token : tokens) {
+            for (Class<?> type : REFERENCES.get(token)) {
+                List<Path> locations = packages.get(type.getPackageName());
+                if (locations != null) {
+                    locations.forEach(location -> classpath.add(location.toString()));
+                    continue;
+                }
+                Path location = Implementor.getClassLocation(type);
+                if (!location.toString().isEmpty()) {
+                    classpath.add(location.toAbsolutePath().toString());
+                }
+            }
+        }
+        return classpath;
+    }
+
+    /**
+     * Adds classpath entry, or every <code>.jar</code> file of a directory for entries ending with
+     * <code>*</code>.
+     *
+     * @param entry classpath entry.
+     * @param expanded expanded entries, updated in place.
+     * @throws ImplerException if directory could not be listed.
+     */
+    private static void expand(Path entry, List<Path> expanded) throws ImplerException {
+        if (!entry.getFileName().toString().equals("*")) {
+            expanded.add(entry.toAbsolutePath().normalize());
+            return;
+        }
+        Path directory = entry.toAbsolutePath().getParent();
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> jars = Files.newDirectoryStream(directory, "*.{jar,JAR}")) {
+            List<Path> sorted = new ArrayList<>();
+            jars.forEach(jar -> sorted.add(jar.normalize()));
+            Collections.sort(sorted);
+            expanded.addAll(sorted);
+        } catch (IOException e) {
+            throw new ImplerException("Can not list " + directory + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finds packages of classes in a classpath entry.
+     *
+     * @param entry <code>.jar</code> file or directory of classes.
+     * @return package names, empty if entry is missing.
+     * @throws UncheckedIOException if entry could not be read.
+     */
+    private static Set<String> scan(Path entry) {
+        try {
+            if (Files.isDirectory(entry)) {
+                try (Stream<Path> files = Files.walk(entry)) {
+                    return files.filter(file -> file.toString().endsWith(CLASS_SUFFIX))
+                            .map(file -> getPackageName(entry.relativize(file).toString()
+                                    .replace(File.separatorChar, '/')))
+                            .filter(name -> name != null)
+                            .collect(Collectors.toSet());
+                }
+            } else if (Files.isRegularFile(entry)) {
+                try (ZipFile zip = new ZipFile(entry.toFile())) {
+                    return zip.stream()
+                            .map(ZipEntry::getName)
+                            .filter(name -> name.endsWith(CLASS_SUFFIX))
+                            .map(ClasspathIndex::getPackageName)
+                            .filter(name -> name != null)
+                            .collect(Collectors.toSet());
+                }
+            }
+            return Set.of();
+        } catch (IOException e) {
+            throw new UncheckedIOException(new IOException(entry + ": " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Gets package of a class file.
+     *
+     * @param path path of a class file with <code>'/'</code> separators, relative to its entry.
+     * @return package name, empty for the unnamed package, <code>null</code> for module descriptors and
+     * entries outside of packages.
+     */
+    private static String getPackageName(String path) {
+        if (path.startsWith(VERSIONS_PREFIX)) {
+            int end = path.indexOf('/', VERSIONS_PREFIX.length());
+            path = end < 0 ? "" : path.substring(end + 1);
+        }
+        if (path.isEmpty() || path.startsWith("META-INF/") || path.endsWith("module-info" + CLASS_SUFFIX)) {
+            return null;
+        }
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash).replace('/', '.');
+    }
+
+    /**
+     * Collects non-platform types needed to compile an implementation of a class: the class and its
+     * supertypes, types in signatures of their non-private members and type parameters, and supertypes of those.
+     *
+     * @param token implemented class.
+     * @return types in order of discovery.
+     */
+    private static Set<Class<?>> collectReferences(Class<?> token) {
+        Set<Class<?>> hierarchy = new LinkedHashSet<>();
+        addSupertypes(token, hierarchy);
+        Set<Class<?>> referenced = new LinkedHashSet<>();
+        for (Class<?> type : hierarchy) {
+            try {
+                addTypes(type.getTypeParameters(), referenced);
+                addTypes(type.getGenericInterfaces(), referenced);
+                addTypes(new Type[]{type.getGenericSuperclass()}, referenced);
+            } catch (TypeNotPresentException | MalformedParameterizedTypeException | GenericSignatureFormatError e) {
+                // erased supertypes are in the hierarchy already
+            }
+            try {
+                for (Method method : type.getDeclaredMethods()) {
+                    addSignature(method, method.getReturnType(), referenced);
+                }
+                for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+                    addSignature(constructor, void.class, referenced);
+                }
+            } catch (LinkageError e) {
+                // compiler reports missing types itself
+            }
+        }
+        Set<Class<?>> result = new LinkedHashSet<>(hierarchy);
+        for (Class<?> type : referenced) {
+            addSupertypes(type, result);
+        }
+        return result;
+    }
+
+    /**
+     * Adds types of a signature of a non-private method or constructor, generic ones if signature is valid.
+     *
+     * @param executable method or constructor.
+     * @param returnType erased return type.
+     * @param referenced referenced types, updated in place.
+     */
+    private static void addSignature(Executable executable, Class<?> returnType, Set<Class<?>> referenced) {
+        if (Modifier.isPrivate(executable.getModifiers())) {
+            return;
+        }
+        addTypes(new Type[]{returnType}, referenced);
+        addTypes(executable.getParameterTypes(), referenced);
+        addTypes(executable.getExceptionTypes(), referenced);
+        try {
+            addTypes(executable.getTypeParameters(), referenced);
+            addTypes(executable.getGenericParameterTypes(), referenced);
+            addTypes(executable.getGenericExceptionTypes(), referenced);
+            if (executable instanceof Method) {
+                addTypes(new Type[]{((Method) executable).getGenericReturnType()}, referenced);
+            }
+        } catch (TypeNotPresentException | MalformedParameterizedTypeException | GenericSignatureFormatError e) {
+            // erased types are added already
+        }
+    }
+
+    /**
+     * Adds classes mentioned by types: erasures, type arguments, bounds and array components.
+     *
+     * @param types reflected types, <code>null</code> elements are skipped.
+     * @param referenced referenced types, updated in place.
+     */
+    private static void addTypes(Type[] types, Set<Class<?>> referenced) {
+        Deque<Type> queue = new ArrayDeque<>();
+        Set<TypeVariable<?>> visited = new LinkedHashSet<>();
+        for (Type type : types) {
+            if (type != null) {
+                queue.add(type);
+            }
+        }
+        while (!queue.isEmpty()) {
+            Type type = queue.poll();
+            if (type instanceof Class) {
+                Class<?> clazz = (Class<?>) type;
+                while (clazz.isArray()) {
+                    clazz = clazz.getComponentType();
+                }
+                if (!isPlatform(clazz)) {
+                    referenced.add(clazz);
+                }
+            } else if (type instanceof ParameterizedType) {
+                ParameterizedType parameterized = (ParameterizedType) type;
+                queue.add(parameterized.getRawType());
+                if (parameterized.getOwnerType() != null) {
+                    queue.add(parameterized.getOwnerType());
+                }
+                queue.addAll(List.of(parameterized.getActualTypeArguments()));
+            } else if (type instanceof GenericArrayType) {
+                queue.add(((GenericArrayType) type).getGenericComponentType());
+            } else if (type instanceof WildcardType) {
+                queue.addAll(List.of(((WildcardType) type).getUpperBounds()));
+                queue.addAll(List.of(((WildcardType) type).getLowerBounds()));
+            } else if (type instanceof TypeVariable && visited.add((TypeVariable<?>) type)) {
+                queue.addAll(List.of(((TypeVariable<?>) type).getBounds()));
+            }
+        }
+    }
+
+    /**
+     * Adds a class and all its non-platform supertypes.
+     *
+     * @param type class to start from.
+     * @param result collected types, updated in place.
+     */
+    private static void addSupertypes(Class<?> type, Set<Class<?>> result) {
+        Deque<Class<?>> queue = new ArrayDeque<>(List.of(type));
+        while (!queue.isEmpty()) {
+            Class<?> current = queue.poll();
+            if (current.isPrimitive() || isPlatform(current) || !result.add(current)) {
+                continue;
+            }
+            if (current.getSuperclass() != null) {
+                queue.add(current.getSuperclass());
+            }
+            queue.addAll(List.of(current.getInterfaces()));
+            if (current.getEnclosingClass() != null) {
+                queue.add(current.getEnclosingClass());
+            }
+        }
+    }
+
+    /**
+     * Checks whether a class belongs to the Java platform, so compiler finds it without classpath. Platform
+     * classes only refer to other platform classes.
+     *
+     * @param type class to check.
+     * @return <code>true</code> if it is loaded by bootstrap or platform class loader.
+     */
+    private static boolean isPlatform(Class<?> type) {
+        ClassLoader loader = type.getClassLoader();
+        return type.isPrimitive() || loader == null || loader == ClassLoader.getPlatformClassLoader();
+    }
+}
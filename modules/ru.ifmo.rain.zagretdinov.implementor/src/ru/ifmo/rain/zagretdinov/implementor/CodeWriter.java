@@ -0,0 +1,301 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * Writer of generated source code. Tokens, indentation and parameter lists are appended directly
+ * into one buffer, which is reused while a class is generated and then written out at once.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class CodeWriter {
+
+    /**
+     * Tabulation for generated class.
+     */
+    private static final char TAB = '\t';
+
+    /**
+     * Space for generated class.
+     */
+    private static final char SPACE = ' ';
+
+    /**
+     * Line-separator for generated class.
+     */
+    private static final String LINE_SEP = System.lineSeparator();
+
+    /**
+     * Separator for tokens in generated class.
+     */
+    private static final String COLLECTION_SEPARATOR = ", ";
+
+    /**
+     * Separator for operations in generated class.
+     */
+    private static final char OPER_SEP = ';';
+
+    /**
+     * Opening brace in generated class.
+     */
+    private static final char BLOCK_BEGIN = '{';
+
+    /**
+     * Closing brace in generated class.
+     */
+    private static final char BLOCK_END = '}';
+
+    /**
+     * Opening bracket in generated class.
+     */
+    private static final char BRACKET_OPEN = '(';
+
+    /**
+     * Closing bracket in generated class.
+     */
+    private static final char BRACKET_END = ')';
+
+    /**
+     * Prefix of generated parameter names.
+     */
+    private static final char PARAMETER_PREFIX = '_';
+
+    /**
+     * Size of a chunk copied to {@link Writer} at once.
+     */
+    private static final int CHUNK = 8192;
+
+    /**
+     * Buffer holding generated code.
+     */
+    private final StringBuilder buffer = new StringBuilder(CHUNK);
+
+    /**
+     * Current indentation level.
+     */
+    private int indent;
+
+    /**
+     * Appends text.
+     *
+     * @param text {@link String} to append.
+     * @return this writer.
+     */
+    CodeWriter append(String text) {
+        buffer.append(text);
+        return this;
+    }
+
+    /**
+     * Appends text followed by {@link #SPACE}.
+     *
+     * @param text {@link String} to append.
+     * @return this writer.
+     */
+    CodeWriter word(String text) {
+        buffer.append(text).append(SPACE);
+        return this;
+    }
+
+    /**
+     * Starts new line with current indentation.
+     *
+     * @return this writer.
+     */
+    CodeWriter line() {
+        for (int i = 0; i < indent; i++) {
+            buffer.append(TAB);
+        }
+        return this;
+    }
+
+    /**
+     * Ends current line.
+     *
+     * @return this writer.
+     */
+    CodeWriter endLine() {
+        buffer.append(LINE_SEP);
+        return this;
+    }
+
+    /**
+     * Writes <code>package</code> declaration unless package is unnamed.
+     *
+     * @param packageName name of a package.
+     * @return this writer.
+     */
+    CodeWriter packageDeclaration(String packageName) {
+        if (!packageName.isEmpty()) {
+            word("package").append(packageName).statementEnd().endLine();
+        }
+        return this;
+    }
+
+    /**
+     * Writes visibility modifier, the only one kept by generated members.
+     *
+     * @param modifiers modifiers of overridden member.
+     * @return this writer.
+     */
+    CodeWriter visibility(int modifiers) {
+        if (Modifier.isPublic(modifiers)) {
+            word("public");
+        } else if (Modifier.isProtected(modifiers)) {
+            word("protected");
+        }
+        return this;
+    }
+
+    /**
+     * Writes parameter list in brackets: types with unique identifiers separated by {@link #COLLECTION_SEPARATOR}.
+     *
+     * @param types parameter types.
+     * @return this writer.
+     */
+    CodeWriter parameters(Class<?>[] types) {
+        buffer.append(BRACKET_OPEN);
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                buffer.append(COLLECTION_SEPARATOR);
+            }
+            buffer.append(types[i].getCanonicalName()).append(SPACE).append(PARAMETER_PREFIX).append(i + 1);
+        }
+        buffer.append(BRACKET_END);
+        return this;
+    }
+
+    /**
+     * Writes parameter list in brackets given names of parameter types, as {@link #parameters(Class[])} does.
+     *
+     * @param types canonical names of parameter types.
+     * @return this writer.
+     */
+    CodeWriter parameters(List<String> types) {
+        buffer.append(BRACKET_OPEN);
+        for (int i = 0; i < types.size(); i++) {
+            if (i > 0) {
+                buffer.append(COLLECTION_SEPARATOR);
+            }
+            buffer.append(types.get(i)).append(SPACE).append(PARAMETER_PREFIX).append(i + 1);
+        }
+        buffer.append(BRACKET_END);
+        return this;
+    }
+
+    /**
+     * Writes argument list in brackets: identifiers written by {@link #parameters(Class[])}.
+     *
+     * @param count number of arguments.
+     * @return this writer.
+     */
+    CodeWriter arguments(int count) {
+        buffer.append(BRACKET_OPEN);
+        for (int i = 1; i <= count; i++) {
+            if (i > 1) {
+                buffer.append(COLLECTION_SEPARATOR);
+            }
+            buffer.append(PARAMETER_PREFIX).append(i);
+        }
+        buffer.append(BRACKET_END);
+        return this;
+    }
+
+    /**
+     * Writes <code>throws</code> clause if at least one exception is given.
+     *
+     * @param exceptions exception types.
+     * @return this writer.
+     */
+    CodeWriter throwsClause(Class<?>[] exceptions) {
+        for (int i = 0; i < exceptions.length; i++) {
+            buffer.append(i == 0 ? " throws " : COLLECTION_SEPARATOR).append(exceptions[i].getCanonicalName());
+        }
+        return this;
+    }
+
+    /**
+     * Writes <code>throws</code> clause given names of exception types, as {@link #throwsClause(Class[])} does.
+     *
+     * @param exceptions canonical names of exception types.
+     * @return this writer.
+     */
+    CodeWriter throwsClause(List<String> exceptions) {
+        for (int i = 0; i < exceptions.size(); i++) {
+            buffer.append(i == 0 ? " throws " : COLLECTION_SEPARATOR).append(exceptions.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Writes {@link #OPER_SEP}.
+     *
+     * @return this writer.
+     */
+    CodeWriter statementEnd() {
+        buffer.append(OPER_SEP);
+        return this;
+    }
+
+    /**
+     * Opens a block and increases indentation.
+     *
+     * @return this writer.
+     */
+    CodeWriter beginBlock() {
+        buffer.append(SPACE).append(BLOCK_BEGIN);
+        indent++;
+        return endLine();
+    }
+
+    /**
+     * Decreases indentation and closes a block on its own line.
+     *
+     * @return this writer.
+     */
+    CodeWriter endBlock() {
+        indent--;
+        line().buffer.append(BLOCK_END);
+        return endLine();
+    }
+
+    /**
+     * Closes a block and opens the next one after a keyword on the same line, as in <code>} finally {</code>.
+     *
+     * @param keyword keyword between blocks.
+     * @return this writer.
+     */
+    CodeWriter continueBlock(String keyword) {
+        indent--;
+        line().buffer.append(BLOCK_END).append(SPACE).append(keyword);
+        return beginBlock();
+    }
+
+    /**
+     * Gets generated code. Returned sequence is backed by the buffer of this writer.
+     *
+     * @return {@link CharSequence} with generated code.
+     */
+    CharSequence getCode() {
+        return buffer;
+    }
+
+    /**
+     * Writes generated code to {@link Writer} in chunks without copying it into a {@link String}.
+     *
+     * @param writer {@link Writer} receiving generated code.
+     * @throws IOException if {@code writer} fails.
+     */
+    void writeTo(Writer writer) throws IOException {
+        char[] chunk = new char[Math.min(CHUNK, buffer.length())];
+        for (int start = 0; start < buffer.length(); start += chunk.length) {
+            int end = Math.min(buffer.length(), start + chunk.length);
+            buffer.getChars(start, end, chunk, 0);
+            writer.write(chunk, 0, end - start);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Pool of reusable compilation contexts. The system {@link JavaCompiler} is looked up once, and
+ * {@link StandardJavaFileManager}s, which keep opened archives and indices of the platform classes, are
+ * reused by subsequent compilations instead of being created for every one. A context is used by one
+ * compilation at a time; concurrent callers get separate contexts, idle ones are kept up to the number
+ * of processors.
+ * <p>
+ * A file manager caches every classpath entry it has seen, so it is retired after {@link #MAX_USES}
+ * compilations to bound memory and staleness of cached archives in long-running processes.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class CompilerPool {
+
+    /**
+     * Number of compilations after which a file manager is closed instead of being returned to the pool.
+     */
+    private static final int MAX_USES = 256;
+
+    /**
+     * System compiler, <code>null</code> if running without one.
+     */
+    private static final JavaCompiler COMPILER = ToolProvider.getSystemJavaCompiler();
+
+    /**
+     * Idle contexts.
+     */
+    private static final BlockingQueue<Context> IDLE =
+            new ArrayBlockingQueue<>(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Compilation run with a borrowed context.
+     *
+     * @param <T> type of a result.
+     */
+    @FunctionalInterface
+    interface Compilation<T> {
+        /**
+         * Runs compilation.
+         *
+         * @param compiler system {@link JavaCompiler}.
+         * @param fileManager {@link StandardJavaFileManager} with classpath already set.
+         * @return result of compilation.
+         * @throws ImplerException if compilation fails.
+         * @throws IOException if file manager fails.
+         */
+        T run(JavaCompiler compiler, StandardJavaFileManager fileManager) throws ImplerException, IOException;
+    }
+
+    /**
+     * File manager with a number of compilations it was used for.
+     */
+    private static class Context {
+        /**
+         * Reused file manager.
+         */
+        private final StandardJavaFileManager fileManager = COMPILER.getStandardFileManager(null, null, null);
+
+        /**
+         * Number of compilations done with {@link #fileManager}.
+         */
+        private int uses;
+    }
+
+    /**
+     * Runs compilation with a context borrowed from the pool. Context is returned to the pool if compilation
+     * completes normally and it has not reached {@link #MAX_USES}, closed otherwise. It is closed as well if
+     * the thread is interrupted, as interrupted channel I/O closes archives cached by the file manager.
+     *
+     * @param classpath classpath entries set to file manager.
+     * @param compilation {@link Compilation} to run.
+     * @param <T> type of a result.
+     * @return result of {@code compilation}.
+     * @throws ImplerException if compiler is not available, classpath is invalid or compilation fails.
+     */
+    static <T> T compile(Collection<String> classpath, Compilation<T> compilation) throws ImplerException {
+        if (COMPILER == null) {
+            throw new ImplerException("No compiler provided");
+        }
+        Context context = IDLE.poll();
+        if (context == null) {
+            context = new Context();
+        }
+        boolean reusable = false;
+        try {
+            List<Path> paths = classpath.stream().map(Path::of).collect(Collectors.toList());
+            context.fileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, paths);
+            T result = compilation.run(COMPILER, context.fileManager);
+            reusable = ++context.uses < MAX_USES && !Thread.currentThread().isInterrupted();
+            return result;
+        } catch (IOException e) {
+            throw new ImplerException("Error while compiling: " + e.getMessage(), e);
+        } finally {
+            if (!reusable || !IDLE.offer(context)) {
+                close(context);
+            }
+        }
+    }
+
+    /**
+     * Closes file manager of a context, ignoring errors.
+     *
+     * @param context {@link Context} to close.
+     */
+    private static void close(Context context) {
+        try {
+            context.fileManager.close();
+        } catch (IOException ignored) {
+            // nothing to do with it anyway
+        }
+    }
+}
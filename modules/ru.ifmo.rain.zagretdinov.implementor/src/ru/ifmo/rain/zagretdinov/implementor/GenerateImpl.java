@@ -0,0 +1,21 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class or interface to be implemented by {@link ImplementorProcessor} at compile time. Generated
+ * <code>Impl</code> class is the same one {@link Implementor#implement(Class, java.nio.file.Path)} writes, and
+ * is compiled in the same compiler run as the annotated type.
+ *
+ * @author sem
+ * @version 1.0
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateImpl {
+}
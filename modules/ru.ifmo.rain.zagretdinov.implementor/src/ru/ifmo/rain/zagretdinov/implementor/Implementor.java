@@ -4,26 +4,30 @@ import info.kgeorgiy.java.advanced.implementor.Impler;
 import info.kgeorgiy.java.advanced.implementor.ImplerException;
 import info.kgeorgiy.java.advanced.implementor.JarImpler;
 import javax.tools.JavaCompiler;
-import javax.tools.ToolProvider;
 import java.io.File;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
 import java.nio.file.*;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.security.CodeSource;
 import java.util.*;
-import java.util.function.Function;
-import java.util.jar.Attributes;
-import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
+import java.util.zip.Deflater;
 
 /**
  * Class implements {@link JarImpler}. Provides methods to implement <code>.java/.jar</code> files
  * from given class or interface.
+ * <p>
+ * Once configured, an implementor is thread-safe and may be shared by any number of threads, including ones
+ * writing to the same output root. Every file is written next to its target and atomically renamed over it, so
+ * readers never see a partially written <code>.java</code>, <code>.jar</code> or <code>.jsa</code> file. Identical
+ * requests running at the same time are coalesced into one generation, and requests writing the same file are
+ * serialized, see {@link OutputCoordinator}. Setters are not synchronized and should be called before sharing.
  *
  * @author sem
  * @version 1.0
@@ -31,49 +35,168 @@ import java.util.zip.ZipEntry;
 public class Implementor implements Impler, JarImpler {
 
     /**
-     * Tabulation for generated class.
+     * Backend used to compile generated classes.
      */
-    private final String TAB = "\t";
+    private final ImplementorBackend backend;
 
     /**
-     * Space for generated class.
+     * Compression level writing <code>.jar</code> entries uncompressed, see {@link #setCompression(int)}.
      */
-    private final String SPACE = " ";
+    public static final int STORED = JarWriter.STORED;
 
     /**
-     * Line-separator for generated class.
+     * Type of counter arrays of profiling delegates, see {@link #generateDelegate(Class, String, List, boolean)}.
      */
-    private final String LINE_SEP = System.lineSeparator();
+    private static final String COUNTERS = LongAdder.class.getCanonicalName() + "[]";
 
     /**
-     * Separator for tokens in generated class.
+     * Compression level of <code>.jar</code> entries.
      */
-    private final String COLLECTION_SEPARATOR = ", ";
+    private int compression = Deflater.DEFAULT_COMPRESSION;
 
     /**
-     * Separator for operations in generated class.
+     * Whether class data sharing archive is dumped next to every <code>.jar</code> file.
      */
-    private final String OPER_SEP = ";";
+    private boolean classDataArchive;
 
     /**
-     * Opening brace in generated class.
+     * Root of temporary directories used to compile generated sources, see {@link #setScratchRoot(Path)}.
      */
-    private final String BLOCK_BEGIN = "{";
+    private Path scratchRoot = WorkspacePool.DEFAULT_ROOT;
 
     /**
-     * Closing brace in generated class.
+     * Index of classpath entries implementations are compiled against, see {@link #setClasspath(ClasspathIndex)}.
      */
-    private final String BLOCK_END = "}";
+    private ClasspathIndex classpath = ClasspathIndex.EMPTY;
 
     /**
-     * Opening bracket in generated class.
+     * Cache of generated files, <code>null</code> if caching is disabled.
      */
-    private final String BRACKET_OPEN = "(";
+    private ImplementorCache cache;
 
     /**
-     * Closing bracket in generated class.
+     * Instrumentation of phases.
      */
-    private final String BRACKET_END = ")";
+    private final ImplementorMonitor monitor = new ImplementorMonitor();
+
+    /**
+     * Coordinator of concurrent requests.
+     */
+    private final OutputCoordinator outputs = new OutputCoordinator();
+
+    /**
+     * Default constructor. Creates {@link Implementor} compiling through {@link ImplementorBackend#FILE_SYSTEM}.
+     */
+    public Implementor() {
+        this(ImplementorBackend.FILE_SYSTEM);
+    }
+
+    /**
+     * Creates {@link Implementor} compiling generated classes with given backend.
+     * @param backend {@link ImplementorBackend} to use in {@link #implementJar(Collection, Path)}.
+     */
+    public Implementor(ImplementorBackend backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Sets cache of generated files used by {@link #implement(Class, Path)} and
+     * {@link #implementJar(Collection, Path)}. Should be called before the implementor is shared between threads.
+     * @param cache {@link ImplementorCache} to use, <code>null</code> to disable caching.
+     * @return this implementor.
+     */
+    public Implementor setCache(ImplementorCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Sets listener notified about every completed {@link ImplementorPhase} and cache lookup.
+     * Phases are also recorded as JDK Flight Recorder events regardless of listener.
+     * @param listener {@link ImplementorListener} to notify, <code>null</code> to remove.
+     * @return this implementor.
+     */
+    public Implementor setListener(ImplementorListener listener) {
+        monitor.setListener(listener);
+        return this;
+    }
+
+    /**
+     * Gets aggregate counters of work done by this implementor.
+     * @return {@link ImplementorStatistics} updated as implementor works.
+     */
+    public ImplementorStatistics getStatistics() {
+        return monitor.getStatistics();
+    }
+
+    /**
+     * Sets compression of <code>.jar</code> entries. Uncompressed entries make larger files which are faster
+     * to load. Should be called before the implementor is shared between threads.
+     * @param level {@link #STORED}, {@link Deflater#DEFAULT_COMPRESSION} or level from
+     * {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+     * @return this implementor.
+     * @throws IllegalArgumentException if level is invalid.
+     */
+    public Implementor setCompression(int level) {
+        this.compression = JarWriter.checkLevel(level);
+        return this;
+    }
+
+    /**
+     * Enables dumping of a class data sharing archive next to every <code>.jar</code> file built by
+     * {@link #implementJar(Collection, Path)}, see {@link #getArchiveFile(Path)}. JVMs started with
+     * <code>-XX:SharedArchiveFile</code> pointing to it map implementations already parsed and verified
+     * instead of loading them from the <code>.jar</code> file. Archive is valid only for the JDK build which
+     * dumped it and a classpath starting with the <code>.jar</code> file followed by locations of implemented
+     * classes. Should be called before the implementor is shared between threads.
+     * @param enabled <code>true</code> to dump archives.
+     * @return this implementor.
+     */
+    public Implementor setClassDataArchive(boolean enabled) {
+        this.classDataArchive = enabled;
+        return this;
+    }
+
+    /**
+     * Sets explicit classpath generated implementations are compiled against. Every compilation gets only
+     * entries containing supertypes of implemented classes and types in signatures of their members, see
+     * {@link ClasspathIndex}. Without it, or for types outside of it, locations of loaded classes are used.
+     * Should be called before the implementor is shared between threads.
+     * @param index {@link ClasspathIndex} of classpath entries, <code>null</code> to use locations of loaded
+     * classes only.
+     * @return this implementor.
+     */
+    public Implementor setClasspath(ClasspathIndex index) {
+        this.classpath = index == null ? ClasspathIndex.EMPTY : index;
+        return this;
+    }
+
+    /**
+     * Sets root of temporary directories in which {@link ImplementorBackend#FILE_SYSTEM} compiles generated
+     * sources, the system temporary directory by default. A memory file system such as <code>/dev/shm</code>
+     * avoids disk writes. Directories are pooled by {@link WorkspacePool}: they are reused by later calls and
+     * cleared in background. Should be called before the implementor is shared between threads.
+     * @param root scratch root, created on first use.
+     * @return this implementor.
+     */
+    public Implementor setScratchRoot(Path root) {
+        this.scratchRoot = root;
+        return this;
+    }
+
+    /**
+     * Gets class data sharing archive dumped for a <code>.jar</code> file: the same name with <code>.jsa</code>
+     * extension instead of <code>.jar</code>.
+     * @param jarFile <code>.jar</code> file built by {@link #implementJar(Collection, Path)}.
+     * @return {@link Path} of an archive.
+     */
+    public static Path getArchiveFile(Path jarFile) {
+        String name = jarFile.getFileName().toString();
+        if (name.endsWith(".jar")) {
+            name = name.substring(0, name.length() - ".jar".length());
+        }
+        return jarFile.resolveSibling(name + ".jsa");
+    }
 
     /**
      * Function used to determine whether generate <code>.jar</code> or <code>.java</code> file.
@@ -81,16 +204,39 @@ public class Implementor implements Impler, JarImpler {
      * <ul>
      * <li> 2 arguments <code>className outputPath</code>: creates <code>.java</code> file executing
      * method {@link #implement(Class, Path)} provided by interface {@link Impler} </li>
-     * <li> 3 arguments <code>-jar className outputPath</code>: creates <code>.jar</code> file executing
-     *      * method {@link #implementJar(Class, Path)} provided by interface {@link JarImpler} </li>
+     * <li> 3 or more arguments <code>-jar className... outputPath</code>: creates <code>.jar</code> file
+     * executing method {@link #implementJar(Class, Path)} provided by interface {@link JarImpler}
+     * if one class is given, or {@link #implementJar(Collection, Path)} to pack all of them
+     * into one <code>.jar</code> otherwise </li>
      * </ul>
+     * Both forms may be prefixed with <code>--backend name</code> choosing {@link ImplementorBackend}
+     * and <code>--cache directory</code> enabling {@link ImplementorCache},
+     * <code>--compression level</code> with <code>stored</code> or a deflate level sets {@link #setCompression(int)},
+     * <code>--cds</code> enables {@link #setClassDataArchive(boolean) class data archives},
+     * <code>--scratch directory</code> sets {@link #setScratchRoot(Path) root of temporary directories},
+     * <code>--classpath entries</code> sets {@link #setClasspath(ClasspathIndex) explicit classpath},
+     * <code>--input path</code> reads classes from class files of a directory or a <code>.jar</code> file
+     * with {@link #implement(Path, String, Path)} and {@link #implementJar(Path, Collection, Path)} instead of
+     * loading them; it can not be combined with <code>--cache</code>, <code>--cds</code> and
+     * <code>--classpath</code>, which need loaded classes.
+     * If the first argument is <code>--bulk</code>, the rest are passed to {@link BulkImplementor#main(String[])},
+     * if it is <code>--daemon</code>, <code>--client</code> or <code>--watch</code>, to
+     * {@link ImplementorDaemon#main(String[])}, {@link ImplementorClient#main(String[])} or
+     * {@link ImplementorWatcher#main(String[])} respectively.
      * Arguments should not be null. If input is incorrect or an error happens during executing
      * message is printed and execution is aborted.
-     * @param args console line arguments: <code>[-jar] className outputPath</code>
+     * @param args console line arguments:
+     *             <code>[--backend name] [--cache directory] [--compression level] [--cds] [--input path]
+     *             [--scratch directory] [--classpath entries] [-jar] className...
+     *             outputPath</code>
      */
     public static void main(String[] args) {
-        if (args == null || args.length < 2 || args.length > 3) {
-            System.err.println("Invalid arguments number, expected [-jar] <class.name> <output.path>");
+        if (args != null && args.length > 0 && "--daemon".equals(args[0])) {
+            ImplementorDaemon.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args == null || args.length < 2) {
+            System.err.println("Invalid arguments number, expected [-jar] <class.name>... <output.path>");
         } else {
             for (String arg : args) {
                 if (arg == null) {
@@ -98,11 +244,82 @@ public class Implementor implements Impler, JarImpler {
                     return;
                 }
             }
+            if (args[0].equals("--bulk")) {
+                BulkImplementor.main(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            } else if (args[0].equals("--client")) {
+                ImplementorClient.main(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            } else if (args[0].equals("--watch")) {
+                ImplementorWatcher.main(Arrays.copyOfRange(args, 1, args.length));
+                return;
+            }
+            ImplementorBackend backend = ImplementorBackend.FILE_SYSTEM;
+            Path cacheDirectory = null;
+            int compression = Deflater.DEFAULT_COMPRESSION;
+            boolean classDataArchive = false;
+            Path input = null;
+            Path scratchRoot = WorkspacePool.DEFAULT_ROOT;
+            String classpath = null;
+            while (args[0].equals("--backend") || args[0].equals("--cache") || args[0].equals("--compression")
+                    || args[0].equals("--cds") || args[0].equals("--input") || args[0].equals("--scratch")
+                    || args[0].equals("--classpath")) {
+                int consumed = 2;
+                try {
+                    if (args[0].equals("--cds")) {
+                        classDataArchive = true;
+                        consumed = 1;
+                    } else if (args[0].equals("--backend")) {
+                        backend = ImplementorBackend.forName(args[1]);
+                    } else if (args[0].equals("--cache")) {
+                        cacheDirectory = Path.of(args[1]);
+                    } else if (args[0].equals("--input")) {
+                        input = Path.of(args[1]);
+                    } else if (args[0].equals("--scratch")) {
+                        scratchRoot = Path.of(args[1]);
+                    } else if (args[0].equals("--classpath")) {
+                        classpath = args[1];
+                    } else {
+                        compression = JarWriter.checkLevel(
+                                args[1].equals("stored") ? STORED : Integer.parseInt(args[1]));
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.err.println(e.getMessage());
+                    return;
+                }
+                args = Arrays.copyOfRange(args, consumed, args.length);
+                if (args.length < 2) {
+                    System.err.println("Invalid arguments number, expected [-jar] <class.name>... <output.path>");
+                    return;
+                }
+            }
+            if (input != null && (cacheDirectory != null || classDataArchive || classpath != null)) {
+                System.err.println("--cache, --cds and --classpath need loaded classes and can not be used"
+                        + " with --input");
+                return;
+            }
+            Implementor implementor = new Implementor(backend).setCompression(compression)
+                    .setClassDataArchive(classDataArchive).setScratchRoot(scratchRoot);
             try {
-                if (args.length == 2) {
-                    new Implementor().implement(Class.forName(args[0]), Path.of(args[1]));
+                if (cacheDirectory != null) {
+                    implementor.setCache(new ImplementorCache(cacheDirectory));
+                }
+                if (classpath != null) {
+                    implementor.setClasspath(ClasspathIndex.parse(classpath));
+                }
+                if (input != null && args.length == 2) {
+                    implementor.implement(input, args[0], Path.of(args[1]));
+                } else if (input != null && (args[0].equals("-jar") || args[0].equals("--jar"))) {
+                    implementor.implementJar(input, List.of(args).subList(1, args.length - 1),
+                            Path.of(args[args.length - 1]));
+                } else if (args.length == 2) {
+                    implementor.implement(Class.forName(args[0]), Path.of(args[1]));
                 } else if (args[0].equals("-jar") || args[0].equals("--jar")) {
-                    new Implementor().implementJar(Class.forName(args[1]), Path.of(args[2]));
+                    List<Class<?>> tokens = new ArrayList<>();
+                    for (int i = 1; i < args.length - 1; i++) {
+                        tokens.add(Class.forName(args[i]));
+                    }
+                    implementor.implementJar(tokens, Path.of(args[args.length - 1]));
                 } else {
                     System.err.println("expected -jar or --jar");
                 }
@@ -118,121 +335,381 @@ public class Implementor implements Impler, JarImpler {
     }
 
     /**
-     * Joins mapped elements with given delimiter. Maps each element to {@link String}
-     * and concatenates them with delimiter.
-     *
-     * @param delimiter {@link String} separating given elements.
-     * @param elements array of values to be mapped to {@link String}s and joined together.
-     * @param function transforming to {@link String} function.
-     * @param <T> type of elements given
-     * @return a {@link String} containing concatenated with {@code delimiter} mapped {@code elements}.
+     * Changes every <code>'.'</code> symbol to {@code File.separatorChar}
+     * @param token {@link Class} which name of a package is to be changed.
+     * @return {@link String} which has every '.' symbol replaced with {@code File.separatorChar}
      */
-    private <T> String elementsToString(String delimiter, T[] elements, Function<T, String> function) {
-        return Arrays.stream(elements).map(function).collect(Collectors.joining(delimiter));
+    private String getFilePath(Class<?> token) {
+        return token.getPackageName().replace('.', File.separatorChar);
     }
 
-    /**
-     *  Joins mapped elements. Maps each element to {@link String}
-     *  and concatenates them with delimiter {@link #COLLECTION_SEPARATOR}.
-     * @param items array of values to be mapped to {@link String}s and joined together.
-     * @param transform transforming to {@link String} function.
-     * @param <T> type of elements given
-     * @return a {@link String} containing concatenated with
-     * {@link #COLLECTION_SEPARATOR} mapped {@code elements}.
+    /** Name for a generated class. methods gets a name for a given class or interface
+     * and appends it with "Impl" suffix.
+     * @param token given classname
+     * @return {@link String} for a generated class extending or implemented given one.
      */
-    private <T> String elementsInCollectionToString(T[] items, Function<T, String> transform) {
-        return elementsToString(COLLECTION_SEPARATOR, items, transform);
+    private static String getClassName(Class<?> token) {
+        return token.getSimpleName() + "Impl";
     }
 
     /**
-     * Joins elements with {@link #SPACE} with braces around.
-     * @param parts array of values to be joined together.
-     * @return a string containing {@link #BRACKET_OPEN}, {@link #LINE_SEP}, elements joined together
-     * with {@link #SPACE}, {@link #LINE_SEP}, {@link #BRACKET_END}.
+     * Function used to create a compiled <code>.jar</code> file implementing methods in given class or interface.
+     * Delegates to {@link #implementJar(Collection, Path)} with a single token.
+     * @param token {@link Class} to create implementation for.
+     * @param jarFile target future <tt>.jar</tt> file.
+     * @throws ImplerException if {@link Class} or {@link Path} is null.
      */
-    private String elementsInBrackets(String... parts) {
-        return elementsLineSeparated(BRACKET_OPEN, String.join(SPACE, parts), BRACKET_END);
+    @Override
+    public void implementJar(Class<?> token, Path jarFile) throws ImplerException {
+        implementJar(List.of(token), jarFile);
     }
 
     /**
-     * Joins elements with {@link #SPACE}.
-     * @param parts array of values to be joined together.
-     * @return a string containing elements joined together
-     *      * with {@link #SPACE}.
+     * Function used to create one compiled <code>.jar</code> file implementing every given class or interface.
+     * With {@link ImplementorBackend#FILE_SYSTEM} generates all sources with
+     * {@link #writeWorkspaceSource(Class, Path)}, compiles them with a single
+     * {@link #compileClasses(Collection, Path)} run and packs every class with
+     * {@link #buildJar(Path, Path, Collection)}. With {@link ImplementorBackend#IN_MEMORY} the same is done by
+     * {@link #implementJarInMemory(Collection, Path)} without temporary files, and with
+     * {@link ImplementorBackend#BYTECODE} classes are emitted by {@link #implementJarBytecode(Collection, Path)}.
+     * If a cache is {@link #setCache(ImplementorCache) set}, a <code>.jar</code> built earlier for the same
+     * classes and backend is copied instead. If {@link #setClassDataArchive(boolean) enabled}, class data sharing
+     * archive is dumped afterwards with {@link ClassDataArchiver}; archives are not cached, as they depend on
+     * the JDK build.
+     * @param tokens {@link Class}es to create implementations for.
+     * @param jarFile target future <tt>.jar</tt> file.
+     * @throws ImplerException if no tokens are given, two implementations share a name
+     * or any of the phases fails.
      */
-    private String elementsSpaced(String... parts) {
-        return String.join(SPACE, parts);
+    public void implementJar(Collection<Class<?>> tokens, Path jarFile) throws ImplerException {
+        Set<Class<?>> unique = new LinkedHashSet<>(tokens);
+        if (unique.isEmpty()) {
+            throw new ImplerException("No classes to implement given");
+        }
+        Set<String> implementations = new HashSet<>();
+        for (Class<?> token : unique) {
+            if (!implementations.add(getImplementationPath(token))) {
+                throw new ImplerException("Implementation name clash for " + token.getCanonicalName());
+            }
+        }
+        ImplementorFileUtils.createDirectoriesTo(jarFile.normalize());
+        outputs.run(List.of("jar", List.copyOf(unique), jarFile.toAbsolutePath().normalize()), jarFile,
+                () -> publishJar(unique, jarFile));
     }
 
     /**
-     * Joins elements with {@link #LINE_SEP}.
-     * @param blocks array of values to be joined together.
-     * @return a string containing elements joined together
-     * with {@link #LINE_SEP}, string ends with additional {@link #LINE_SEP}.
+     * Creates a compiled <code>.jar</code> file or restores it from cache, then dumps its class data archive
+     * if enabled. Called holding lock of {@code jarFile}.
+     * @param unique distinct {@link Class}es to create implementations for.
+     * @param jarFile target future <tt>.jar</tt> file.
+     * @throws ImplerException if any of the phases fails.
      */
-    private String elementsLineSeparated(String... blocks) {
-        return String.join(LINE_SEP, blocks) + LINE_SEP;
+    private void publishJar(Set<Class<?>> unique, Path jarFile) throws ImplerException {
+        String fingerprint = null;
+        boolean hit = false;
+        if (cache != null) {
+            ImplementorMonitor.Measurement lookup = monitor.start(ImplementorPhase.CACHE, unique);
+            fingerprint = cache.fingerprint(unique, "jar " + backend + " " + compression);
+            hit = fingerprint != null && cache.restore(fingerprint, ".jar", jarFile);
+            lookup.end(0, 0);
+            monitor.cacheLookup(unique, hit);
+        }
+        if (!hit) {
+            createJar(unique, jarFile);
+            if (fingerprint != null) {
+                cache.store(fingerprint, ".jar", jarFile);
+            }
+        }
+        if (classDataArchive) {
+            checkInterrupted();
+            List<String> classNames = unique.stream()
+                    .map(Implementor::getImplementationName)
+                    .collect(Collectors.toList());
+            ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.ARCHIVE, unique);
+            measurement.end(0, ClassDataArchiver.archive(jarFile, unique, classNames, getArchiveFile(jarFile)));
+        }
     }
 
     /**
-     * Joins elements with {@link #LINE_SEP}.
-     * @param cnt amount of {@link #TAB} to be written.
-     * @return a string containing {@link #TAB} given {@link Integer} times.
+     * Fails if current thread is interrupted, so a cancelled request stops between phases. Interrupt status
+     * is kept; temporary files are deleted by the phases themselves.
+     * @throws ImplerException if current thread is interrupted.
      */
-    private String Tabs(int cnt) {
-        return TAB.repeat(Math.max(0, cnt));
+    private static void checkInterrupted() throws ImplerException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new ImplerException("Interrupted");
+        }
     }
 
     /**
-     * Writes a package info in generated class.
-     * @param items {@link String} package info.
-     * @return <code>""</code> if there is no package otherwise <code>package</code> with package name
-     * ending with {@link #OPER_SEP}
+     * Creates a compiled <code>.jar</code> file with configured backend. Batches of more than
+     * {@link JarPipeline#CHUNK} classes are built by {@link #implementJarPipelined(Collection, Path)} when
+     * there are processors to overlap its stages on, see {@link JarPipeline#isWorthwhile(int)}.
+     * @param tokens distinct {@link Class}es to create implementations for.
+     * @param jarFile target future <tt>.jar</tt> file.
+     * @throws ImplerException if any of the phases fails.
      */
-    private String emptyOrPrefix(String items) {
-        if (!"".equals(items)) {
-            return elementsSpaced("package", items) + OPER_SEP;
+    private void createJar(Collection<Class<?>> tokens, Path jarFile) throws ImplerException {
+        if (JarPipeline.isWorthwhile(tokens.size())) {
+            implementJarPipelined(tokens, jarFile);
+            return;
+        }
+        if (backend == ImplementorBackend.IN_MEMORY) {
+            implementJarInMemory(tokens, jarFile);
+            return;
+        } else if (backend == ImplementorBackend.BYTECODE) {
+            implementJarBytecode(tokens, jarFile);
+            return;
+        }
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.TEMP_DIRECTORY, tokens);
+        WorkspacePool workspaces = WorkspacePool.get(scratchRoot);
+        Path directory = workspaces.acquire();
+        measurement.end(0, 0);
+        try {
+            for (Class<?> token : tokens) {
+                checkInterrupted();
+                writeWorkspaceSource(token, directory);
+            }
+            checkInterrupted();
+            measurement = monitor.start(ImplementorPhase.COMPILE, tokens);
+            compileClasses(tokens, directory);
+            measurement.end(0, 0);
+            checkInterrupted();
+            measurement = monitor.start(ImplementorPhase.BUILD_JAR, tokens);
+            measurement.end(0, buildJar(jarFile, directory, tokens));
+        } finally {
+            measurement = monitor.start(ImplementorPhase.CLEANUP, tokens);
+            workspaces.release(directory);
+            measurement.end(0, 0);
         }
-        return "";
     }
 
     /**
-     * Changes every <code>'.'</code> symbol to {@code File.separatorChar}
-     * @param token {@link Class} which name of a package is to be changed.
-     * @return {@link String} which has every '.' symbol replaced with {@code File.separatorChar}
+     * Creates a compiled <code>.jar</code> file without temporary directory. Sources are generated into
+     * {@link String}s, compiled by {@link InMemoryCompiler} and class bytes are written straight to the
+     * <code>.jar</code> file.
+     * @param tokens {@link Class}es to create implementations for.
+     * @param jarFile target future <tt>.jar</tt> file.
+     * @throws ImplerException if generation, compilation or writing fails.
      */
-    private String getFilePath(Class<?> token) {
-        return token.getPackageName().replace('.', File.separatorChar);
+    private void implementJarInMemory(Collection<Class<?>> tokens, Path jarFile) throws ImplerException {
+        Map<String, CharSequence> sources = new LinkedHashMap<>();
+        for (Class<?> token : tokens) {
+            checkInterrupted();
+            sources.put(getImplementationName(token), generateSource(token).getCode());
+        }
+        checkInterrupted();
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.COMPILE, tokens);
+        Map<String, byte[]> classes = InMemoryCompiler.compile(sources, classpath.getClasspath(tokens));
+        measurement.end(0, classes.values().stream().mapToLong(bytes -> bytes.length).sum());
+        checkInterrupted();
+        measurement = monitor.start(ImplementorPhase.BUILD_JAR, tokens);
+        measurement.end(0, writeJar(jarFile, classes));
     }
 
-    /** Name for a generated class. methods gets a name for a given class or interface
-     * and appends it with "Impl" suffix.
-     * @param token given classname
-     * @return {@link String} for a generated class extending or implemented given one.
+    /**
+     * Creates a <code>.jar</code> file with class files emitted by {@link BytecodeGenerator}.
+     * Neither sources nor compiler are involved.
+     * @param tokens {@link Class}es to create implementations for.
+     * @param jarFile target future <tt>.jar</tt> file.
+     * @throws ImplerException if some token can not be implemented or writing fails.
      */
-    private static String getClassName(Class<?> token) {
-        return token.getSimpleName() + "Impl";
+    private void implementJarBytecode(Collection<Class<?>> tokens, Path jarFile) throws ImplerException {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (Class<?> token : tokens) {
+            checkInterrupted();
+            classes.put(getClassFileName(token), generateBytecode(token));
+        }
+        checkInterrupted();
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.BUILD_JAR, tokens);
+        measurement.end(0, writeJar(jarFile, classes));
     }
 
     /**
-     * Function used to create a compiled <code>.jar</code> file implementing methods in given class or interface.
-     *  Uses {@link #compileClass(Class, Path)} to compile a file, {@link #implement(Class, Path)}
-     *  to implement {@code token} class in location specified by {@code jarFile}.
-     * @param token {@link Class} to create implementation for.
+     * Creates a compiled <code>.jar</code> file of a large batch with {@link JarPipeline}: scanning and generation
+     * of upcoming chunks overlap compilation of earlier ones, and compiled classes are written as soon as they are
+     * ready, so memory does not grow with the batch. Tokens are sorted by names of class files, so the file is
+     * the same as the one built in sequential phases. Every backend is kept: {@link ImplementorBackend#FILE_SYSTEM}
+     * compiles every chunk in a shared workspace and deletes its files once read,
+     * {@link ImplementorBackend#IN_MEMORY} compiles chunks with {@link InMemoryCompiler} and
+     * {@link ImplementorBackend#BYTECODE} has nothing to compile.
+     * @param tokens distinct {@link Class}es to create implementations for.
      * @param jarFile target future <tt>.jar</tt> file.
-     * @throws ImplerException if {@link Class} or {@link Path} is null.
+     * @throws ImplerException if generation, compilation or writing fails.
      */
-    @Override
-    public void implementJar(Class<?> token, Path jarFile) throws ImplerException {
-        ImplementorFileUtils.createDirectoriesTo(jarFile.normalize());
-        ImplementorFileUtils utils = new ImplementorFileUtils(jarFile.toAbsolutePath().getParent());
+    private void implementJarPipelined(Collection<Class<?>> tokens, Path jarFile) throws ImplerException {
+        List<Class<?>> sorted = tokens.stream()
+                .sorted(Comparator.comparing(Implementor::getClassFileName))
+                .collect(Collectors.toList());
+        if (backend == ImplementorBackend.BYTECODE) {
+            new JarPipeline<byte[]>(monitor, this::generateBytecode, (chunk, classes) -> {
+                Map<String, byte[]> result = new LinkedHashMap<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    result.put(getClassFileName(chunk.get(i)), classes.get(i));
+                }
+                return result;
+            }, compression).run(sorted, jarFile);
+        } else if (backend == ImplementorBackend.IN_MEMORY) {
+            new JarPipeline<CharSequence>(monitor, token -> generateSource(token).getCode(), (chunk, code) -> {
+                Map<String, CharSequence> sources = new LinkedHashMap<>();
+                for (int i = 0; i < chunk.size(); i++) {
+                    sources.put(getImplementationName(chunk.get(i)), code.get(i));
+                }
+                ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.COMPILE, chunk);
+                Map<String, byte[]> classes = InMemoryCompiler.compile(sources, classpath.getClasspath(chunk));
+                measurement.end(0, classes.values().stream().mapToLong(bytes -> bytes.length).sum());
+                return classes;
+            }, compression).run(sorted, jarFile);
+        } else {
+            ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.TEMP_DIRECTORY, tokens);
+            WorkspacePool workspaces = WorkspacePool.get(scratchRoot);
+            Path directory = workspaces.acquire();
+            measurement.end(0, 0);
+            try {
+                new JarPipeline<Void>(monitor, token -> {
+                    writeWorkspaceSource(token, directory);
+                    return null;
+                }, (chunk, ignored) -> compileChunk(chunk, directory), compression).run(sorted, jarFile);
+            } finally {
+                measurement = monitor.start(ImplementorPhase.CLEANUP, tokens);
+                workspaces.release(directory);
+                measurement.end(0, 0);
+            }
+        }
+    }
+
+    /**
+     * Compiles sources of a chunk written by {@link #writeWorkspaceSource(Class, Path)} and reads compiled classes.
+     * Sources and class files are deleted once read, so the temporary directory does not grow with the batch.
+     * @param chunk tokens of a chunk.
+     * @param directory temporary directory holding sources.
+     * @return class bytes by paths of class files inside <code>.jar</code> file, in order of {@code chunk}.
+     * @throws ImplerException if compilation fails or class files could not be read.
+     */
+    private Map<String, byte[]> compileChunk(List<Class<?>> chunk, Path directory) throws ImplerException {
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.COMPILE, chunk);
+        compileClasses(chunk, directory);
+        Map<String, byte[]> classes = new LinkedHashMap<>();
         try {
-            implement(token, utils.getTempDirectory());
-            compileClass(token, utils.getTempDirectory());
-            buildJar(jarFile, utils.getTempDirectory(), token);
-        } finally {
-            utils.cleanTempDirectory();
+            for (Class<?> token : chunk) {
+                String name = getClassFileName(token);
+                Path classFile = directory.resolve(name);
+                classes.put(name, Files.readAllBytes(classFile));
+                Files.delete(classFile);
+                Files.delete(directory.resolve(getImplementationPath(token) + "Impl.java"));
+            }
+        } catch (IOException e) {
+            throw new ImplerException("Could not read compiled class: " + e.getMessage(), e);
         }
+        measurement.end(0, classes.values().stream().mapToLong(bytes -> bytes.length).sum());
+        return classes;
+    }
+
+    /**
+     * Emits class file implementing given class or interface with {@link BytecodeGenerator}.
+     * @param token type token to create implementation for.
+     * @return bytes of generated class file.
+     * @throws ImplerException if {@code token} can not be implemented.
+     */
+    byte[] generateBytecode(Class<?> token) throws ImplerException {
+        return generateBytecode(token, getImplementationName(token));
+    }
+
+    /**
+     * Emits class file with given name implementing given class or interface with {@link BytecodeGenerator}.
+     * @param token type token to create implementation for.
+     * @param className binary name of generated class.
+     * @return bytes of generated class file.
+     * @throws ImplerException if {@code token} can not be implemented.
+     */
+    byte[] generateBytecode(Class<?> token, String className) throws ImplerException {
+        checkToken(token);
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.SCAN, token);
+        List<Constructor<?>> constructors = getConstructors(token);
+        List<Method> methods = getAbstractMethods(token);
+        measurement.end(methods.size(), 0);
+        measurement = monitor.start(ImplementorPhase.GENERATE, token);
+        byte[] bytes = BytecodeGenerator.generate(token, className, constructors, methods);
+        measurement.end(methods.size(), bytes.length);
+        return bytes;
+    }
+
+    /**
+     * Creates an instance of implementation of given class or interface in the running JVM, without writing
+     * any files. Implementation is emitted with {@link ImplementorBackend#BYTECODE} and defined on the first
+     * call for a {@code token}; later calls reuse it and only invoke its constructor. Constructor with the least
+     * number of parameters is used, default values are passed as arguments. Public functional interfaces are
+     * instantiated through {@link java.lang.invoke.LambdaMetafactory}, as lambda expressions are, without
+     * generating bytecode.
+     * @param token type token to create implementation for.
+     * @param <T> type of a token.
+     * @return new instance implementing {@code token}.
+     * @throws ImplerException if {@code token} can not be implemented, implementation could not be defined
+     * or its constructor failed.
+     */
+    public static <T> T instantiate(Class<T> token) throws ImplerException {
+        return RuntimeImplementor.instantiate(token);
+    }
+
+    /**
+     * Creates a proxy implementing given interface by delegating every call to {@code target}. Unlike
+     * {@link java.lang.reflect.Proxy}, the proxy is a compiled class calling {@code target} directly, so arguments
+     * are neither boxed nor dispatched through {@link Method}. Proxy class is generated with
+     * {@link #generateDelegate(Class, String, List, boolean)} and defined on the first call for a {@code token};
+     * later calls reuse it and only invoke its constructor.
+     * @param token interface to implement.
+     * @param target instance receiving calls.
+     * @param <T> type of a token.
+     * @return new proxy delegating to {@code target}.
+     * @throws ImplerException if {@code token} is not an interface, {@code target} does not implement it
+     * or proxy class could not be defined.
+     */
+    public static <T> T delegate(Class<T> token, T target) throws ImplerException {
+        return ProxyImplementor.delegate(token, target);
+    }
+
+    /**
+     * Creates a proxy implementing given interface by delegating every call to {@code target}, as
+     * {@link #delegate(Class, Object)} does, and counting calls and their time per method.
+     * @param token interface to implement.
+     * @param target instance receiving calls.
+     * @param <T> type of a token.
+     * @return {@link ProfilingProxy} holding the proxy and its counters.
+     * @throws ImplerException if {@code token} is not an interface, {@code target} does not implement it
+     * or proxy class could not be defined.
+     */
+    public static <T> ProfilingProxy<T> profile(Class<T> token, T target) throws ImplerException {
+        return ProxyImplementor.profile(token, target);
+    }
+
+    /**
+     * Writes class files to a <code>.jar</code> file with {@link JarWriter} using configured compression.
+     * @param jarFile target <tt>.jar</tt> file.
+     * @param classes class bytes by paths of class files inside <code>.jar</code> file.
+     * @return size of written file in bytes.
+     * @throws ImplerException if {@code jarFile} could not be written.
+     */
+    long writeJar(Path jarFile, Map<String, byte[]> classes) throws ImplerException {
+        return new JarWriter(compression).addAll(classes).write(jarFile);
+    }
+
+    /**
+     * Gets binary name of an implementation of a given class.
+     * @param token {@link Class} to get name of its implementation.
+     * @return {@link String} containing package of a {@code token} and name of its implementation.
+     */
+    private static String getImplementationName(Class<?> token) {
+        return token.getPackageName().isEmpty() ? getClassName(token)
+                : token.getPackageName() + "." + getClassName(token);
+    }
+
+    /**
+     * Gets path of a class file of an implementation inside <code>.jar</code> file.
+     * @param token {@link Class} to get class file of its implementation.
+     * @return path with <code>'/'</code> separators.
+     */
+    private static String getClassFileName(Class<?> token) {
+        return getImplementationName(token).replace('.', '/') + ".class";
     }
 
     /**
@@ -243,66 +720,78 @@ public class Implementor implements Impler, JarImpler {
      * is replaced by <code>File.separator</code>
      */
     private static String getImplementationPath(Class<?> token) {
+        if (token.getPackageName().isEmpty()) {
+            return token.getSimpleName();
+        }
         return String.join(File.separator, token.getPackageName().split("\\.")) +
                 File.separator +
                 token.getSimpleName();
     }
 
     /**
-     * Method for compiling created <code>.jar</code> file. Finds a {@link JavaCompiler},
-     * runs it with a command to compile generated class.
-     * @param token type token to create implementation for.
-     * @param tmpDir {@link Path} for a temporary directory used for creating a compiled
-     * <code>.jar</code> class.
-     * @throws ImplerException if {@link JavaCompiler} could not be find or it could not be run.
+     * Gets a classpath entry containing given class. Uses {@link CodeSource} of a {@code token}.
+     * @param token {@link Class} to find location of.
+     * @return {@link Path} of location containing {@code token}, empty {@link Path} if it is unknown.
+     * @throws ImplerException if location could not be converted to {@link Path}.
      */
-    private void compileClass(Class<?> token, Path tmpDir) throws ImplerException {
-        Path superPath;
+    static Path getClassLocation(Class<?> token) throws ImplerException {
         try {
             CodeSource superCodeSource = token.getProtectionDomain().getCodeSource();
-            superPath = Path.of((superCodeSource == null) ? "" : superCodeSource.getLocation().getPath());
+            return Path.of((superCodeSource == null) ? "" : superCodeSource.getLocation().getPath());
         } catch (InvalidPathException e) {
             throw new ImplerException("Failed to generate valid classpath", e);
         }
-        JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
-        if (javaCompiler == null) {
-            throw new ImplerException("No compiler provided");
+    }
+
+    /**
+     * Method for compiling generated <code>.java</code> files. Borrows a {@link JavaCompiler} with a file manager
+     * from {@link CompilerPool} and runs one compilation task for every generated class, against classpath
+     * found by {@link ClasspathIndex}. Class files are written next to sources.
+     * @param tokens type tokens implementations were generated for.
+     * @param tmpDir {@link Path} for a temporary directory used for creating a compiled
+     * <code>.jar</code> class.
+     * @throws ImplerException if {@link JavaCompiler} could not be find or compilation fails.
+     */
+    void compileClasses(Collection<Class<?>> tokens, Path tmpDir) throws ImplerException {
+        List<Path> sources = new ArrayList<>();
+        for (Class<?> token : tokens) {
+            sources.add(Path.of(tmpDir.toString(), getImplementationPath(token) + "Impl.java"));
         }
-        String[] compilerArgs = {
-                "-cp",
-                tmpDir.toString() + File.pathSeparator + superPath.toString(),
-                Path.of(tmpDir.toString(), getImplementationPath(token) + "Impl.java").toString(),
-        };
-        int returnCode = javaCompiler.run(null, null, null, compilerArgs);
-        if (returnCode != 0) {
-            throw new ImplerException("Implementation compilation returned non-zero code " + returnCode);
+        boolean compiled = CompilerPool.compile(classpath.getClasspath(tokens), (compiler, fileManager) ->
+                compiler.getTask(null, fileManager, null, null, null,
+                        fileManager.getJavaFileObjectsFromPaths(sources)).call());
+        if (!compiled) {
+            throw new ImplerException("Implementation compilation failed");
         }
     }
 
     /**
-     * Creates a <code>.jar</code> file containing implementation for a given class or interface.
-     * Creates a {@link Manifest} for an <code>.jar</code> file.
+     * Creates a <code>.jar</code> file containing implementations for given classes or interfaces.
+     * Uses {@link JarWriter} with configured compression to create it.
      * @param jarFile target <tt>.jar</tt> file.
      * @param tempDirectory {@link Path} for a temporary directory used for building a compiled
      * <code>.jar</code> class.
-     * @param token {@link Class} token to create implementation for.
-     * @throws ImplerException if {@link JarOutputStream} could not be created.
-     */
-    private void buildJar(Path jarFile, Path tempDirectory, Class<?> token) throws ImplerException {
-        Manifest manifest = new Manifest();
-        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
-        try (JarOutputStream stream = new JarOutputStream(Files.newOutputStream(jarFile), manifest)) {
-            String pathSuffix = token.getName().replace('.', '/') + "Impl.class";
-            stream.putNextEntry(new ZipEntry(pathSuffix));
-            Files.copy(Paths.get(tempDirectory.toString(), pathSuffix), stream);
+     * @param tokens {@link Class} tokens to create implementations for.
+     * @return size of written file in bytes.
+     * @throws ImplerException if class files could not be read or <code>.jar</code> file could not be written.
+     */
+    long buildJar(Path jarFile, Path tempDirectory, Collection<Class<?>> tokens) throws ImplerException {
+        JarWriter writer = new JarWriter(compression);
+        try {
+            for (Class<?> token : tokens) {
+                String pathSuffix = getImplementationPath(token).replace(File.separatorChar, '/') + "Impl.class";
+                writer.add(pathSuffix, Paths.get(tempDirectory.toString(), pathSuffix));
+            }
         } catch (IOException e) {
-            throw new ImplerException("Could not write to " + jarFile);
+            throw new ImplerException("Could not read compiled class: " + e.getMessage(), e);
         }
+        return writer.write(jarFile);
     }
 
     /**
      * Function used to create a <code>.java</code> file implementing methods in given class or interface.
      * to implement {@code token} class in location specified by {@code root}.
+     * If a cache is {@link #setCache(ImplementorCache) set}, a file generated earlier is copied instead.
      * @param token type token to create implementation for.
      * @param root target future <tt>.jar</tt> file.
      * @throws ImplerException if {@link Path} is incorrect, could not create parent directories for a path
@@ -320,222 +809,420 @@ public class Implementor implements Impler, JarImpler {
         } catch (IOException e) {
             e.printStackTrace();
         }
-        if (token.isPrimitive() || token.isArray() ||
-                Modifier.isFinal(token.getModifiers()) || token == Enum.class) {
-            throw new ImplerException("Unsupported token given");
+        Path target = place;
+        outputs.run(List.of("java", token, place.toAbsolutePath().normalize()), place,
+                () -> writeSource(token, target));
+    }
+
+    /**
+     * Writes <code>.java</code> file implementing given class or interface, or restores it from cache.
+     * Called holding lock of {@code place}.
+     * @param token type token to create implementation for.
+     * @param place target <code>.java</code> file.
+     * @throws ImplerException if {@code token} can not be implemented or file could not be written.
+     */
+    private void writeSource(Class<?> token, Path place) throws ImplerException {
+        String fingerprint = null;
+        if (cache != null) {
+            ImplementorMonitor.Measurement lookup = monitor.start(ImplementorPhase.CACHE, token);
+            fingerprint = cache.fingerprint(List.of(token), "java");
+            boolean hit = fingerprint != null && cache.restore(fingerprint, ".java", place);
+            lookup.end(0, 0);
+            monitor.cacheLookup(List.of(token), hit);
+            if (hit) {
+                return;
+            }
         }
-        String extendsOrImplements = token.isInterface() ? "implements" : "extends";
-        try (BufferedWriter bufferedWriter = Files.newBufferedWriter(place)) {
-            bufferedWriter.write(elementsLineSeparated(emptyOrPrefix(token.getPackageName())
-                    , elementsSpaced(getClassModifiers(token),
-                            "class", getClassName(token), extendsOrImplements,
-                            token.getCanonicalName(), BLOCK_BEGIN)));
-            allWork(token, bufferedWriter);
-            bufferedWriter.write(BLOCK_END);
-        } catch (IOException e) {
-            throw new ImplerException("Error with writing class code");
+        CodeWriter code = generateSource(token);
+        checkInterrupted();
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.WRITE, token);
+        measurement.end(0, writeCode(code, place));
+        if (fingerprint != null) {
+            cache.store(fingerprint, ".java", place);
         }
     }
 
     /**
-     *  Returns default value for a given class.
-     * @param clazz default value for which should be returned
-     * @return {@link String} containing default value for a given {@link Class}
+     * Writes <code>.java</code> file implementing given class or interface to a private workspace of
+     * <code>.jar</code> build. Unlike {@link #implement(Class, Path)}, cache is not used, as the whole
+     * <code>.jar</code> file is cached, and no lock is taken, as the workspace is not shared.
+     * @param token type token to create implementation for.
+     * @param directory workspace acquired from {@link WorkspacePool}.
+     * @throws ImplerException if {@code token} can not be implemented or file could not be written.
      */
-    private String getDefaultValue(Class<?> clazz) {
-        if (!clazz.isPrimitive()) {
-            return "null";
-        } else if (clazz.equals(void.class)) {
-            return "";
-        } else if (clazz.equals(boolean.class)) {
-            return "false";
-        } else {
-            return "0";
-        }
+    private void writeWorkspaceSource(Class<?> token, Path directory) throws ImplerException {
+        Path place = directory.resolve(getImplementationPath(token) + "Impl.java");
+        ImplementorFileUtils.createDirectoriesTo(place);
+        CodeWriter code = generateSource(token);
+        checkInterrupted();
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.WRITE, token);
+        measurement.end(0, writeCode(code, place));
     }
 
     /**
-     * Writes methods which override parent's ones.
-     * @param methodsHashed {@link Set} to check whether this method was worked with before
-     * @param methods of given class
-     * @param modifier1 modifier for a {@link Class}
-     * @param modifier2 modifier for a {@link Class}
-     * @param bufferedWriter for writing methods body in generated class
+     * Creates a <code>.java</code> file implementing a class or interface read from class files, without loading
+     * or initializing it. Supertypes are read from the same {@code input} as they are needed, platform ones from
+     * the running JDK, see {@link ClassFileImplementor}. Generated code is the same as
+     * {@link #implement(Class, Path)} writes. Cache is not used.
+     * @param input directory or <code>.jar</code> file containing class files.
+     * @param className binary name of a class or interface to implement.
+     * @param root root directory of generated sources.
+     * @throws ImplerException if {@code input} could not be read, the class could not be implemented
+     * or the file could not be written.
      */
-    private void methodWalker(Set<Integer> methodsHashed, Method[] methods, int modifier1, int modifier2,
-                              BufferedWriter bufferedWriter) {
-        Arrays.stream(methods).forEach(method -> {
-            StringBuilder hashing = new StringBuilder();
-            hashing.append(method.getReturnType().toString());
-            for (Class<?> m : method.getParameterTypes()) {
-                hashing.append(m.getCanonicalName());
-            }
-            int hash = hashing.hashCode();
-            if (methodsHashed.add(hash)) {
-                if ((method.getModifiers() & modifier1) != 0
-                        && (method.getModifiers() & modifier2) != 0) {
-                    methodWalk(method, bufferedWriter);
-                }
+    public void implement(Path input, String className, Path root) throws ImplerException {
+        outputs.coalesce(List.of("class-file", input.toAbsolutePath().normalize(), className,
+                root.toAbsolutePath().normalize()), root, () -> {
+            try (ClassFileImplementor reader = new ClassFileImplementor(input)) {
+                implement(reader, className, root);
             }
         });
     }
 
     /**
-     * Class for creating constructors parameters. It contains one {@link Integer} field which can be
-     * incremented.
+     * Creates a <code>.java</code> file implementing a class or interface read by given reader.
+     * @param reader {@link ClassFileImplementor} reading input.
+     * @param className binary name of a class or interface to implement.
+     * @param root root directory of generated sources.
+     * @throws ImplerException if the class could not be read or implemented or the file could not be written.
      */
-    private class Indices {
-        int index = 1;
-
-        /**Increments {@code index} value by one and its previous value.
-         * @return {@code index} value.
-         */
-        Integer add() {
-            return index++;
+    void implement(ClassFileImplementor reader, String className, Path root) throws ImplerException {
+        CodeWriter code = generateSource(reader, className);
+        Path place;
+        try {
+            place = root.resolve(ClassFileImplementor.getImplementationName(reader.getClass(className))
+                    .replace('.', File.separatorChar) + ".java");
+        } catch (InvalidPathException e) {
+            throw new ImplerException("Wrong path");
         }
+        ImplementorFileUtils.createDirectoriesTo(place);
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.WRITE, className);
+        OutputCoordinator.locked(place, () -> measurement.end(0, writeCode(code, place)));
     }
 
     /**
-     * Writes to generated file implementations of methods and constructors.
-     * @param token {@link Class} implementation of which is needed.
-     * @param bufferedWriter for writing methods body in generated class
-     * @throws ImplerException if there are no non-private constructors for a given class.
+     * Writes generated code to a temporary file and renames it over the target.
+     * @param code {@link CodeWriter} holding generated code.
+     * @param place target <code>.java</code> file.
+     * @return size of written file in bytes.
+     * @throws ImplerException if file could not be written.
      */
-    private void allWork(Class<?> token, BufferedWriter bufferedWriter) throws ImplerException {
-        if (!token.isInterface()) {
-            List<Constructor<?>> constructors = Arrays.stream(token.getDeclaredConstructors())
-                    .filter(c -> !Modifier.isPrivate(c.getModifiers()))
-                    .collect(Collectors.toList());
-            if (constructors.isEmpty()) {
-                throw new ImplerException("Class with no non-private constructors can not be extended");
-            }
-            Arrays.stream(token.getDeclaredConstructors()).forEach(constructor -> {
-                try {
-                    bufferedWriter.write(getMethodBody(constructor, token));
-                } catch (IOException e) {
-                    System.out.println("Error happened while writing constructors code");
+    private static long writeCode(CodeWriter code, Path place) throws ImplerException {
+        try {
+            return ImplementorFileUtils.writeAtomically(place, temporary -> {
+                try (BufferedWriter bufferedWriter = Files.newBufferedWriter(temporary)) {
+                    code.writeTo(bufferedWriter);
                 }
+                return Files.size(temporary);
             });
+        } catch (IOException e) {
+            throw new ImplerException("Error with writing class code");
         }
+    }
 
-        Set<Integer> methodsHashed = new HashSet<>();
-        methodWalker(methodsHashed, token.getMethods(), ~Modifier.STATIC, Modifier.ABSTRACT, bufferedWriter);
-        Class cur = token;
-        while (cur != null) {
-            if (Modifier.isPrivate(cur.getModifiers())) {
-                throw new ImplerException("Private class in hierarchy");
+    /**
+     * Creates one compiled <code>.jar</code> file implementing every given class or interface read from class
+     * files, as {@link #implement(Path, String, Path)} does. Sources are compiled by {@link InMemoryCompiler}
+     * against {@code input} only, regardless of configured backend. Cache, explicit classpath and class data
+     * archives are not used, as they need loaded classes.
+     * @param input directory or <code>.jar</code> file containing class files.
+     * @param classNames binary names of classes or interfaces to implement.
+     * @param jarFile target future <tt>.jar</tt> file.
+     * @throws ImplerException if no classes are given, two implementations share a name, {@code input} could not
+     * be read or any of the phases fails.
+     */
+    public void implementJar(Path input, Collection<String> classNames, Path jarFile) throws ImplerException {
+        Set<String> unique = new LinkedHashSet<>(classNames);
+        if (unique.isEmpty()) {
+            throw new ImplerException("No classes to implement given");
+        }
+        ImplementorFileUtils.createDirectoriesTo(jarFile.normalize());
+        outputs.run(List.of("class-file-jar", input.toAbsolutePath().normalize(), List.copyOf(unique),
+                jarFile.toAbsolutePath().normalize()), jarFile, () -> {
+            try (ClassFileImplementor reader = new ClassFileImplementor(input)) {
+                Map<String, byte[]> classes = compile(reader, unique);
+                ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.BUILD_JAR,
+                        unique.size() == 1 ? unique.iterator().next() : unique.size() + " classes");
+                measurement.end(0, writeJar(jarFile, classes));
+            }
+        });
+    }
+
+    /**
+     * Compiles implementations of classes or interfaces read by given reader in memory.
+     * @param reader {@link ClassFileImplementor} reading input.
+     * @param classNames distinct binary names of classes or interfaces to implement.
+     * @return class bytes by paths of class files inside <code>.jar</code> file.
+     * @throws ImplerException if two implementations share a name, some class could not be read or implemented,
+     * or compilation fails.
+     */
+    Map<String, byte[]> compile(ClassFileImplementor reader, Collection<String> classNames) throws ImplerException {
+        Map<String, CharSequence> sources = new LinkedHashMap<>();
+        for (String className : classNames) {
+            CodeWriter code = generateSource(reader, className);
+            String name = ClassFileImplementor.getImplementationName(reader.getClass(className));
+            if (sources.put(name, code.getCode()) != null) {
+                throw new ImplerException("Implementation name clash for " + className);
             }
-            methodWalker(methodsHashed, cur.getDeclaredMethods(),
-                    Modifier.ABSTRACT, Modifier.PROTECTED, bufferedWriter);
-            cur = cur.getSuperclass();
         }
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.COMPILE,
+                classNames.size() == 1 ? classNames.iterator().next() : classNames.size() + " classes");
+        Map<String, byte[]> classes = InMemoryCompiler.compile(sources, List.of(reader.getInput().toString()));
+        measurement.end(0, 0);
+        return classes;
     }
 
     /**
-     *  Writes implementation for a given method. Uses {@link #getMethodBody(Method)} to write implementation,
-     * if {@link IOException} happens, message is printed.
-     * @param method for which implementation is written
-     * @param bufferedWriter used to write implementation to <code>.jar</code> or <code>.java</code> file.
-     * @return {@link String} containing implementation for a {@link Method} in generated class.
+     * Generates source code implementing a class or interface read from class files.
+     * @param reader {@link ClassFileImplementor} reading input.
+     * @param className binary name of a class or interface to implement.
+     * @return {@link CodeWriter} holding generated code.
+     * @throws ImplerException if class could not be read or implemented.
      */
-    private void methodWalk(Method method, BufferedWriter bufferedWriter) {
-        try {
-            bufferedWriter.write(getMethodBody(method));
-        } catch (IOException e) {
-            System.out.println("Error happened while writing methods code");
+    private CodeWriter generateSource(ClassFileImplementor reader, String className) throws ImplerException {
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.SCAN, className);
+        ClassFileModel token = reader.getClass(className);
+        reader.checkToken(token);
+        List<ClassFileModel.MethodModel> constructors = reader.getConstructors(token);
+        List<ClassFileModel.MethodModel> methods = reader.getAbstractMethods(token);
+        measurement.end(methods.size(), 0);
+        measurement = monitor.start(ImplementorPhase.GENERATE, className);
+        CodeWriter code = reader.generateSource(token, constructors, methods);
+        measurement.end(methods.size(), code.getCode().length());
+        return code;
+    }
+
+    /**
+     * Generates source code implementing given class or interface.
+     * @param token type token to create implementation for.
+     * @return {@link CodeWriter} holding generated code.
+     * @throws ImplerException if {@code token} can not be implemented.
+     */
+    CodeWriter generateSource(Class<?> token) throws ImplerException {
+        checkToken(token);
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.SCAN, token);
+        List<Constructor<?>> constructors = getConstructors(token);
+        List<Method> methods = getAbstractMethods(token);
+        measurement.end(methods.size(), 0);
+        measurement = monitor.start(ImplementorPhase.GENERATE, token);
+        CodeWriter code = new CodeWriter();
+        code.packageDeclaration(token.getPackageName()).endLine()
+                .visibility(token.getModifiers() & Modifier.PUBLIC)
+                .word("class").word(getClassName(token))
+                .word(token.isInterface() ? "implements" : "extends").append(token.getCanonicalName())
+                .beginBlock();
+        allWork(token, constructors, methods, code);
+        code.endBlock();
+        measurement.end(methods.size(), code.getCode().length());
+        return code;
+    }
+
+    /**
+     * Generates source code of a class implementing given interface by delegating every method to
+     * a target passed to its constructor. Methods are declared with their types as members of {@code token},
+     * see {@link MethodIndex.MemberType}; type variables of {@code token} itself are erased, so unchecked
+     * warnings are suppressed. If {@code profile} is set, constructor also takes two arrays of
+     * {@link LongAdder}s indexed as {@code methods}: every call increments its counter in the first one and adds
+     * its time in nanoseconds to the second one, whether the target returns or throws.
+     * @param token interface to implement.
+     * @param className binary name of generated class.
+     * @param methods methods found by {@link #getDelegatedMethods(Class)}.
+     * @param profile whether calls should be counted and timed.
+     * @return {@link CodeWriter} holding generated code.
+     */
+    CodeWriter generateDelegate(Class<?> token, String className, List<Method> methods, boolean profile) {
+        ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.GENERATE, token);
+        int dot = className.lastIndexOf('.');
+        String simpleName = className.substring(dot + 1);
+        String type = token.getCanonicalName();
+        CodeWriter code = new CodeWriter();
+        code.packageDeclaration(className.substring(0, Math.max(dot, 0))).endLine()
+                .line().append("@java.lang.SuppressWarnings(\"unchecked\")").endLine()
+                .word("public").word("final").word("class").word(simpleName).word("implements").append(type)
+                .beginBlock().endLine()
+                .line().word("private").word("final").word(type).append("target").statementEnd().endLine();
+        if (profile) {
+            code.line().word("private").word("final").word(COUNTERS).append("calls").statementEnd().endLine()
+                    .line().word("private").word("final").word(COUNTERS).append("nanos").statementEnd().endLine();
+        }
+        code.endLine().line().word("public").append(simpleName)
+                .parameters(profile ? List.of(type, COUNTERS, COUNTERS) : List.of(type)).beginBlock()
+                .line().append("target = _1").statementEnd().endLine();
+        if (profile) {
+            code.line().append("calls = _2").statementEnd().endLine()
+                    .line().append("nanos = _3").statementEnd().endLine();
         }
+        code.endBlock();
+        Map<TypeVariable<?>, Type> arguments = MethodIndex.getTypeArguments(token);
+        for (int i = 0; i < methods.size(); i++) {
+            writeDelegatingMethod(MethodIndex.MemberType.of(methods.get(i), arguments), i, profile, code);
+        }
+        code.endBlock();
+        measurement.end(methods.size(), code.getCode().length());
+        return code;
     }
 
     /**
-     * Writes implementation for a given method.
-     * @param method for which implementation is written
-     * @return {@link String} containing implementation for a {@link Method} in generated class.
+     * Finds methods a delegating class should implement using {@link MethodIndex}. Methods of generic
+     * supertypes with the same signature as members of {@code token} are delegated once.
+     * @param token interface to implement.
+     * @return {@link List} of methods to be delegated, one per signature.
+     * @throws ImplerException if {@code token} is not an interface or is private.
      */
-    private String getMethodBody(Method method) {
-        return elementsSpaced(elementsLineSeparated(Tabs(1),
-                Tabs(1) + getMethodModifiers(method),
-                method.getReturnType().getCanonicalName(), method.getName(),
-                elementsInBrackets(getParameters(method.getParameterTypes())),
-                getThrowable(method.getExceptionTypes()),
-                BLOCK_BEGIN, Tabs(2) + "return",
-                getDefaultValue(method.getReturnType()) +
-                        OPER_SEP, Tabs(1) + BLOCK_END));
+    List<Method> getDelegatedMethods(Class<?> token) throws ImplerException {
+        if (!token.isInterface() || Modifier.isPrivate(token.getModifiers())) {
+            throw new ImplerException("Only non-private interfaces can be delegated");
+        }
+        Map<TypeVariable<?>, Type> arguments = MethodIndex.getTypeArguments(token);
+        Set<MethodIndex.Signature> signatures = new HashSet<>();
+        List<Method> methods = new ArrayList<>();
+        for (Method method : MethodIndex.getInterfaceMethods(token)) {
+            if (signatures.add(MethodIndex.MemberType.of(method, arguments).getSignature())) {
+                methods.add(method);
+            }
+        }
+        return methods;
     }
 
     /**
-     * Writes implementation for a given constructor.
-     * @param constructor for which implementation is written
-     * @return {@link String} containing implementation for a {@link Constructor} in generated class.
+     * Checks whether given token could be implemented.
+     * @param token type token to create implementation for.
+     * @throws ImplerException if {@code token} is primitive, array, final or {@link Enum}.
      */
-    private String getMethodBody(Constructor constructor, Class<?> token) {
-        return elementsSpaced(elementsLineSeparated(Tabs(1) + getClassName(token) +
-                        elementsInBrackets(getParameters(constructor.getParameterTypes())),
-                getThrowable(constructor.getExceptionTypes()) +
-                        BLOCK_BEGIN, Tabs(2) + "super" +
-                        elementsInBrackets(getParametersNumbers(constructor.getParameterTypes()))
-                        + OPER_SEP, BLOCK_END));
+    private void checkToken(Class<?> token) throws ImplerException {
+        if (token.isPrimitive() || token.isArray() ||
+                Modifier.isFinal(token.getModifiers()) || token == Enum.class) {
+            throw new ImplerException("Unsupported token given");
+        }
     }
 
     /**
-     * Writes a string with collection of exceptions. Prepends with "throws" if at least one {@link Exception}
-     * could be thrown.
-     * @param exceptionTypes possible exception types of a given method
-     * @return {@link String} containing collection of {@link Exception}s, separated by {@link #COLLECTION_SEPARATOR}
+     *  Returns default value for a given class.
+     * @param clazz default value for which should be returned
+     * @return {@link String} containing default value for a given {@link Class}
      */
-    private String getThrowable(Class[] exceptionTypes) {
-        return exceptionTypes.length == 0 ? "" : "throws " +
-                elementsToString(COLLECTION_SEPARATOR, exceptionTypes, Class::getName);
+    private String getDefaultValue(Class<?> clazz) {
+        if (!clazz.isPrimitive()) {
+            return "null";
+        } else if (clazz.equals(void.class)) {
+            return "";
+        } else if (clazz.equals(boolean.class)) {
+            return "false";
+        } else {
+            return "0";
+        }
+    }
+
+    /**
+     * Writes to generated file implementations of methods and constructors.
+     * @param token {@link Class} implementation of which is needed.
+     * @param constructors constructors found by {@link #getConstructors(Class)}.
+     * @param methods methods found by {@link #getAbstractMethods(Class)}.
+     * @param code {@link CodeWriter} for writing methods body in generated class
+     */
+    private void allWork(Class<?> token, List<Constructor<?>> constructors, List<Method> methods, CodeWriter code) {
+        for (Constructor<?> constructor : constructors) {
+            writeConstructor(constructor, token, code);
+        }
+        for (Method method : methods) {
+            writeMethod(method, code);
+        }
+    }
+
+    /**
+     * Finds constructors generated class should declare.
+     * @param token {@link Class} implementation of which is needed.
+     * @return {@link List} of non-private constructors of a class, empty {@link List} for an interface.
+     * @throws ImplerException if there are no non-private constructors for a given class.
+     */
+    List<Constructor<?>> getConstructors(Class<?> token) throws ImplerException {
+        if (token.isInterface()) {
+            return List.of();
+        }
+        List<Constructor<?>> constructors = Arrays.stream(token.getDeclaredConstructors())
+                .filter(c -> !Modifier.isPrivate(c.getModifiers()))
+                .collect(Collectors.toList());
+        if (constructors.isEmpty()) {
+            throw new ImplerException("Class with no non-private constructors can not be extended");
+        }
+        return constructors;
     }
 
     /**
-     * Produces a {@link String} of method parameters. Uses {@link Indices} to get different identifier to
-     * the instance of each parameter
-     * @param parameterTypes parameters of method implementation of which is needed
-     * @return {@link String} containing collection of pairs consisting of parameter type, {{@link #SPACE},}
-     * unique identifier, separated by {@link #COLLECTION_SEPARATOR}
+     * Finds abstract methods generated class should implement using {@link MethodIndex}.
+     * @param token {@link Class} implementation of which is needed.
+     * @return {@link List} of methods to be implemented, one per signature.
+     * @throws ImplerException if there is a private class in hierarchy.
      */
-    private String getParameters(Class[] parameterTypes) {
-        Indices indices = new Indices();
-        return parameterTypes.length == 0 ? "" :
-                elementsInCollectionToString(parameterTypes,
-                        parameter -> elementsSpaced(parameter.getCanonicalName(), "_" + indices.add()));
+    List<Method> getAbstractMethods(Class<?> token) throws ImplerException {
+        for (Class<?> cur = token; cur != null; cur = cur.getSuperclass()) {
+            if (Modifier.isPrivate(cur.getModifiers())) {
+                throw new ImplerException("Private class in hierarchy");
+            }
+        }
+        return MethodIndex.getAbstractMethods(token);
     }
 
     /**
-     * Produces a {@link String} of method parameters identifiers. Uses {@link Indices} to get different identifier to
-     * the instance of each parameter
-     * @param parameterTypes parameters of method implementation of which is needed
-     * @return {@link String} containing collection of  separated by {@link #SPACE}
+     * Writes implementation for a given method returning default value.
+     * @param method for which implementation is written
+     * @param code {@link CodeWriter} for writing method in generated class
      */
-    private String getParametersNumbers(Class[] parameterTypes) {
-        Indices indices = new Indices();
-        return parameterTypes.length == 0 ? "" :
-                elementsInCollectionToString(parameterTypes, parameter -> elementsSpaced("_" + indices.add()));
+    private void writeMethod(Method method, CodeWriter code) {
+        Class<?> returnType = method.getReturnType();
+        code.endLine().line().visibility(method.getModifiers())
+                .word(returnType.getCanonicalName()).append(method.getName())
+                .parameters(method.getParameterTypes()).throwsClause(method.getExceptionTypes())
+                .beginBlock().line().append("return");
+        if (returnType != void.class) {
+            code.append(" ").append(getDefaultValue(returnType));
+        }
+        code.statementEnd().endLine().endBlock();
     }
 
     /**
-     * Writes class modifiers. Gets {@link Modifier} of {@link Class} and writes a string containing all of them
-     * excluding {@code Modifier.ABSTRACT}, {@code Modifier.INTERFACE}, {@code Modifier.STATIC}
-     * and {@code Modifier.PROTECTED}
-     * @param token {@link Class} modifiers of which are expected in return.
-     * @return {@link String} containing modifiers of a given method excluding {@code Modifier.ABSTRACT},
-     * {@code Modifier.INTERFACE}, {@code Modifier.STATIC} and {@code Modifier.PROTECTED}
+     * Writes implementation for a given method calling the same method of <code>target</code>, wrapped into
+     * updates of <code>calls</code> and <code>nanos</code> counters if {@code profile} is set. Delegated
+     * methods are public, as methods of interfaces and overridable methods of {@link Object} are.
+     * @param method type of a method as a member of implemented interface
+     * @param index index of counters of {@code method}.
+     * @param profile whether call should be counted and timed.
+     * @param code {@link CodeWriter} for writing method in generated class
      */
-    private String getClassModifiers(Class<?> token) {
-        return Modifier.toString(token.getModifiers() & ~Modifier.ABSTRACT &
-                ~Modifier.INTERFACE & ~Modifier.STATIC & ~Modifier.PROTECTED);
+    private void writeDelegatingMethod(MethodIndex.MemberType method, int index, boolean profile,
+                                       CodeWriter code) {
+        Class<?> returnType = method.getReturnType();
+        code.endLine().line().visibility(Modifier.PUBLIC)
+                .word(returnType.getCanonicalName()).append(method.getName())
+                .parameters(method.getParameterTypes()).throwsClause(method.getExceptionTypes())
+                .beginBlock();
+        if (profile) {
+            code.line().append("long start = java.lang.System.nanoTime()").statementEnd().endLine()
+                    .line().append("try").beginBlock();
+        }
+        code.line().append(returnType == void.class ? "target." : "return target.").append(method.getName())
+                .arguments(method.getParameterTypes().length).statementEnd().endLine();
+        if (profile) {
+            code.continueBlock("finally")
+                    .line().append("calls[" + index + "].increment()").statementEnd().endLine()
+                    .line().append("nanos[" + index + "].add(java.lang.System.nanoTime() - start)")
+                    .statementEnd().endLine()
+                    .endBlock();
+        }
+        code.endBlock();
     }
 
     /**
-     * Writes method modifiers. Gets {@link Modifier} of {@link Method} and writes a string containing all of them
-     * excluding {@code Modifier.ABSTRACT} and {@code Modifier.TRANSIENT}
-     * @param m methods modifiers of which are expected in return.
-     * @return {@link String} containing modifiers of a given method excluding {@code Modifier.ABSTRACT} and
-     * {@code Modifier.TRANSIENT}
+     * Writes implementation for a given constructor passing all arguments to <code>super</code>.
+     * @param constructor for which implementation is written
+     * @param token {@link Class} implementation of which is generated
+     * @param code {@link CodeWriter} for writing constructor in generated class
      */
-    private String getMethodModifiers(Method m) {
-        return Modifier.toString(m.getModifiers() & ~Modifier.ABSTRACT & ~Modifier.TRANSIENT);
+    private void writeConstructor(Constructor<?> constructor, Class<?> token, CodeWriter code) {
+        code.endLine().line().visibility(constructor.getModifiers()).append(getClassName(token))
+                .parameters(constructor.getParameterTypes()).throwsClause(constructor.getExceptionTypes())
+                .beginBlock().line().append("super").arguments(constructor.getParameterCount())
+                .statementEnd().endLine().endBlock();
     }
 
 }
-
@@ -0,0 +1,64 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+/**
+ * Backends {@link Implementor} can use to turn generated sources into compiled classes.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public enum ImplementorBackend {
+    /**
+     * Sources are written to a temporary directory, compiled there and copied into the <code>.jar</code> file.
+     */
+    FILE_SYSTEM("file-system"),
+
+    /**
+     * Sources are compiled from memory and class bytes are streamed straight into the <code>.jar</code> file.
+     */
+    IN_MEMORY("in-memory"),
+
+    /**
+     * Class files are emitted directly by {@link BytecodeGenerator}, no compiler is involved.
+     */
+    BYTECODE("bytecode");
+
+    /**
+     * Name of the backend used in command line.
+     */
+    private final String name;
+
+    /**
+     * Constructor from command line name.
+     *
+     * @param name {@link String} used to select this backend in command line.
+     */
+    ImplementorBackend(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Finds backend by its command line name.
+     *
+     * @param name command line name of a backend.
+     * @return {@link ImplementorBackend} with given name.
+     * @throws IllegalArgumentException if there is no backend with such name.
+     */
+    public static ImplementorBackend forName(String name) {
+        for (ImplementorBackend backend : values()) {
+            if (backend.name.equals(name)) {
+                return backend;
+            }
+        }
+        throw new IllegalArgumentException("Unknown backend " + name);
+    }
+
+    /**
+     * Getter for command line name.
+     *
+     * @return {@link String} used to select this backend in command line.
+     */
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,221 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * On-disk cache of generated <code>.java</code> and <code>.jar</code> files. Entries are addressed by
+ * a fingerprint of class files of implemented tokens and all their supertypes, the kind of output and
+ * {@link #VERSION}, so an entry is reused only if nothing that affects the output has changed.
+ * Classes of the Java platform are fingerprinted by the runtime version instead of their bytes.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ImplementorCache {
+
+    /**
+     * Version of generated output. Should be changed whenever generated code changes.
+     */
+    static final String VERSION = "3";
+
+    /**
+     * Algorithm of fingerprints.
+     */
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * Memoized digests of class files by classes; <code>null</code> bytes if class file could not be read.
+     */
+    private static final ClassValue<byte[]> CLASS_DIGESTS = new ClassValue<>() {
+        @Override
+        protected byte[] computeValue(Class<?> type) {
+            return digestClass(type);
+        }
+    };
+
+    /**
+     * Root directory of cache entries.
+     */
+    private final Path directory;
+
+    /**
+     * Creates cache storing entries in given directory.
+     *
+     * @param directory root directory of cache, created if missing.
+     * @throws ImplerException if directory could not be created.
+     */
+    public ImplementorCache(Path directory) throws ImplerException {
+        this.directory = directory.toAbsolutePath();
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            throw new ImplerException("Unable to create cache directory: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Computes fingerprint of output for given tokens.
+     *
+     * @param tokens implemented classes; order does not matter.
+     * @param kind kind of output, for example <code>java</code> or <code>jar</code> with backend name.
+     * @return hexadecimal fingerprint, <code>null</code> if some class file could not be read, so output
+     * should not be cached.
+     */
+    String fingerprint(Collection<Class<?>> tokens, String kind) {
+        MessageDigest digest = newDigest();
+        digest.update((VERSION + '\n' + kind + '\n').getBytes(StandardCharsets.UTF_8));
+        List<Class<?>> sorted = tokens.stream()
+                .sorted(Comparator.comparing(Class::getName))
+                .collect(Collectors.toList());
+        for (Class<?> token : sorted) {
+            digest.update((token.getName() + '\n').getBytes(StandardCharsets.UTF_8));
+            for (Class<?> type : hierarchy(token)) {
+                byte[] classDigest = CLASS_DIGESTS.get(type);
+                if (classDigest == null) {
+                    return null;
+                }
+                digest.update(classDigest);
+            }
+        }
+        StringBuilder result = new StringBuilder();
+        for (byte b : digest.digest()) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Copies cached entry to target location if it is present. Entry is copied next to the target and moved
+     * in place, so readers of the target never see a partial copy.
+     *
+     * @param fingerprint fingerprint of an entry.
+     * @param extension file extension of an entry.
+     * @param target {@link Path} to copy entry to.
+     * @return <code>true</code> if entry was found and copied.
+     */
+    boolean restore(String fingerprint, String extension, Path target) {
+        Path entry = entry(fingerprint, extension);
+        if (!Files.isRegularFile(entry)) {
+            return false;
+        }
+        try {
+            return ImplementorFileUtils.writeAtomically(target, temporary ->
+                    Files.copy(entry, temporary, StandardCopyOption.REPLACE_EXISTING) != null);
+        } catch (IOException | ImplerException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stores produced file as cache entry. File is copied next to the entry first and then moved in place
+     * atomically, so concurrent readers never see partial entries. Failures are ignored, as cache is optional.
+     *
+     * @param fingerprint fingerprint of an entry.
+     * @param extension file extension of an entry.
+     * @param source produced file.
+     */
+    void store(String fingerprint, String extension, Path source) {
+        Path entry = entry(fingerprint, extension);
+        try {
+            Files.createDirectories(entry.getParent());
+            Path temporary = Files.createTempFile(entry.getParent(), fingerprint, ".tmp");
+            try {
+                Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException ignored) {
+            // cache is best effort
+        }
+    }
+
+    /**
+     * Gets location of an entry. Entries are spread over subdirectories by first two characters of fingerprint.
+     *
+     * @param fingerprint fingerprint of an entry.
+     * @param extension file extension of an entry.
+     * @return {@link Path} of an entry.
+     */
+    private Path entry(String fingerprint, String extension) {
+        return directory.resolve(fingerprint.substring(0, 2)).resolve(fingerprint + extension);
+    }
+
+    /**
+     * Collects a class with all its superclasses and superinterfaces.
+     *
+     * @param token {@link Class} to start from.
+     * @return {@link Set} of types in hierarchy of {@code token}, including it.
+     */
+    private static Set<Class<?>> hierarchy(Class<?> token) {
+        Set<Class<?>> result = new HashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>();
+        queue.add(token);
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            if (result.add(type)) {
+                if (type.getSuperclass() != null) {
+                    queue.add(type.getSuperclass());
+                }
+                queue.addAll(List.of(type.getInterfaces()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes digest of a class file. Platform classes are represented by runtime version.
+     *
+     * @param type {@link Class} to compute digest of.
+     * @return digest bytes, <code>null</code> if class file could not be read.
+     */
+    private static byte[] digestClass(Class<?> type) {
+        MessageDigest digest = newDigest();
+        digest.update((type.getName() + '\n').getBytes(StandardCharsets.UTF_8));
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null || loader == ClassLoader.getPlatformClassLoader()) {
+            digest.update(Runtime.version().toString().getBytes(StandardCharsets.UTF_8));
+            return digest.digest();
+        }
+        String resource = "/" + type.getName().replace('.', '/') + ".class";
+        try (InputStream stream = type.getResourceAsStream(resource)) {
+            if (stream == null) {
+                return null;
+            }
+            digest.update(stream.readAllBytes());
+            return digest.digest();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates new {@link MessageDigest} for {@link #ALGORITHM}.
+     *
+     * @return new {@link MessageDigest}.
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(ALGORITHM + " is required to be supported", e);
+        }
+    }
+}
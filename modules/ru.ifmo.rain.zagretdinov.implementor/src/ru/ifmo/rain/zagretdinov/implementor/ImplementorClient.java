@@ -0,0 +1,109 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Thin client of {@link ImplementorDaemon}. Forwards command line arguments, in the subset of the form of
+ * {@link Implementor#main(String[])} accepted by {@link ImplementorDaemon}, together with the current working
+ * directory and prints the reply, so a request costs a start of a small JVM instead of loading the compiler.
+ * Requests carry secret of a daemon read from {@link ImplementorDaemon#getSecretFile(int)}, so only the user
+ * running the daemon can use it.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ImplementorClient {
+
+    /**
+     * Port of a daemon.
+     */
+    private final int port;
+
+    /**
+     * Creates client of a daemon on a loopback port.
+     *
+     * @param port port of a daemon.
+     */
+    public ImplementorClient(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Command line entry point. Arguments are <code>[--port n] [--backend name] [-jar] className... outputPath</code>,
+     * everything after the port is sent to a daemon as is. Exits with non-zero status if request fails.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args == null || Stream.of(args).anyMatch(arg -> arg == null)) {
+            System.err.println("All arguments should be not null");
+            return;
+        }
+        int port = ImplementorDaemon.DEFAULT_PORT;
+        if (args.length > 1 && args[0].equals("--port")) {
+            try {
+                port = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid port: " + args[1]);
+                return;
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        try {
+            new ImplementorClient(port).send(Path.of("").toAbsolutePath(), List.of(args));
+        } catch (ImplerException e) {
+            System.err.println(e.getMessage());
+            System.exit(ImplementorDaemon.FAILED);
+        }
+    }
+
+    /**
+     * Sends a request to a daemon and waits for a reply.
+     *
+     * @param directory working directory to resolve output path against.
+     * @param args arguments in the form accepted by {@link ImplementorDaemon}.
+     * @throws ImplerException if secret of a daemon could not be read, daemon is unavailable, busy
+     * or request failed.
+     */
+    public void send(Path directory, List<String> args) throws ImplerException {
+        Path secretFile = ImplementorDaemon.getSecretFile(port);
+        String secret;
+        try {
+            secret = Files.readString(secretFile, StandardCharsets.US_ASCII).trim();
+        } catch (IOException e) {
+            throw new ImplerException("Can not read secret of daemon on port " + port + " from " + secretFile
+                    + ": " + e.getMessage(), e);
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.writeUTF(secret);
+            output.writeUTF(directory.toString());
+            output.writeInt(args.size());
+            for (String arg : args) {
+                output.writeUTF(arg);
+            }
+            output.flush();
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            int status = input.readInt();
+            String message = input.readUTF();
+            if (status != ImplementorDaemon.OK) {
+                throw new ImplerException(message);
+            }
+        } catch (IOException e) {
+            throw new ImplerException("Can not reach daemon on port " + port + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,477 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Long-running server implementing classes on request of {@link ImplementorClient}, so the JVM, loaded classes
+ * and the compiler stay warm between requests. Listens on a loopback TCP port; a request is a working directory
+ * and arguments <code>[--backend name] [-jar] className... outputPath</code>, a subset of the form accepted by
+ * {@link Implementor#main(String[])}. Cache is configured for the whole daemon; other options of
+ * {@link Implementor#main(String[])} change how a single request is built and are rejected with an error, as
+ * all requests share implementors. Requests are serviced in parallel by a fixed number of threads with a bounded
+ * queue; when the queue is full, a request is rejected with {@link #BUSY} status instead of waiting.
+ * <p>
+ * Loopback port is open to every local user, while requests write files as the owner of the daemon. So every
+ * daemon generates a random secret and writes it to {@link #getSecretFile(int)}, a file in the home directory
+ * readable by its owner only; requests not starting with the secret are {@link #UNAUTHORIZED rejected}.
+ * <p>
+ * Protocol: client writes secret, working directory, number of arguments and arguments with
+ * {@link DataOutputStream#writeUTF(String)} and {@link DataOutputStream#writeInt(int)}; server replies with
+ * an <code>int</code> status and a message. Request should be sent within {@link #READ_TIMEOUT}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ImplementorDaemon {
+
+    /**
+     * Default port of a daemon.
+     */
+    static final int DEFAULT_PORT = 28015;
+
+    /**
+     * Status of a request completed successfully.
+     */
+    static final int OK = 0;
+
+    /**
+     * Status of a request which failed.
+     */
+    static final int FAILED = 1;
+
+    /**
+     * Status of a request rejected because the queue is full.
+     */
+    static final int BUSY = 2;
+
+    /**
+     * Status of a request without valid secret.
+     */
+    static final int UNAUTHORIZED = 3;
+
+    /**
+     * Maximal number of arguments in a request.
+     */
+    private static final int MAX_ARGUMENTS = 1 << 16;
+
+    /**
+     * Time in milliseconds given to a rejected client to send its request before {@link #BUSY} reply.
+     * Request is read first, so the reply is not lost to a connection reset.
+     */
+    private static final int REJECT_TIMEOUT = 1000;
+
+    /**
+     * Time in milliseconds to wait before accepting again after {@link ServerSocket#accept()} fails,
+     * so a persistent error such as exhausted file descriptors does not spin the accepting thread.
+     */
+    private static final int ACCEPT_BACKOFF = 100;
+
+    /**
+     * Time in milliseconds given to a client to send its request, so idle connections do not hold threads.
+     */
+    private static final int READ_TIMEOUT = 10_000;
+
+    /**
+     * Number of random bytes in a secret.
+     */
+    private static final int SECRET_BYTES = 32;
+
+    /**
+     * Usage message printed on invalid arguments.
+     */
+    private static final String USAGE = "Expected [--port n] [--threads n] [--queue n] [--cache directory]";
+
+    /**
+     * Implementors by backends. All of them share one cache.
+     */
+    private final Map<ImplementorBackend, Implementor> implementors = new EnumMap<>(ImplementorBackend.class);
+
+    /**
+     * Executor servicing requests.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Executor answering connections rejected by {@link #workers} with {@link #BUSY}, so a slow client
+     * does not stall the accepting thread.
+     */
+    private final ExecutorService rejecter;
+
+    /**
+     * Socket accepting connections.
+     */
+    private final ServerSocket server;
+
+    /**
+     * Secret requests should start with.
+     */
+    private final String secret;
+
+    /**
+     * File holding {@link #secret}.
+     */
+    private final Path secretFile;
+
+    /**
+     * Creates daemon listening on a loopback port and writes its secret to {@link #getSecretFile(int)}.
+     *
+     * @param port port to listen on, <code>0</code> for any free port.
+     * @param threads number of requests serviced concurrently.
+     * @param queue number of accepted requests waiting for a free thread.
+     * @param cache {@link ImplementorCache} shared by all requests, <code>null</code> to disable caching.
+     * @throws IOException if socket could not be bound or secret could not be written.
+     */
+    public ImplementorDaemon(int port, int threads, int queue, ImplementorCache cache) throws IOException {
+        if (threads < 1 || queue < 1) {
+            throw new IllegalArgumentException("Number of threads and queue size should be positive");
+        }
+        for (ImplementorBackend backend : ImplementorBackend.values()) {
+            implementors.put(backend, new Implementor(backend).setCache(cache));
+        }
+        server = new ServerSocket(port, queue, InetAddress.getLoopbackAddress());
+        byte[] random = new byte[SECRET_BYTES];
+        new SecureRandom().nextBytes(random);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : random) {
+            hex.append(String.format("%02x", b));
+        }
+        secret = hex.toString();
+        secretFile = getSecretFile(server.getLocalPort());
+        try {
+            writeSecret(secretFile, secret);
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue));
+        rejecter = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue));
+    }
+
+    /**
+     * Gets file holding secret of a daemon listening on given port.
+     *
+     * @param port port of a daemon.
+     * @return {@link Path} of <code>.implementor/daemon-&lt;port&gt;</code> in the home directory.
+     */
+    static Path getSecretFile(int port) {
+        return Path.of(System.getProperty("user.home"), ".implementor", "daemon-" + port);
+    }
+
+    /**
+     * Writes secret to a new file readable by its owner only. On file systems without POSIX permissions
+     * the file inherits permissions of the home directory.
+     *
+     * @param file file to write, replaced if it exists.
+     * @param secret secret to write.
+     * @throws IOException if file could not be written.
+     */
+    private static void writeSecret(Path file, String secret) throws IOException {
+        boolean posix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+        Path directory = file.getParent();
+        if (!Files.isDirectory(directory)) {
+            if (posix) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(
+                        PosixFilePermissions.fromString("rwx------")));
+            } else {
+                Files.createDirectories(directory);
+            }
+        }
+        Files.deleteIfExists(file);
+        if (posix) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+        Files.writeString(file, secret, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Command line entry point. Arguments are <code>[--port n] [--threads n] [--queue n] [--cache directory]</code>;
+     * by default {@link #DEFAULT_PORT}, one thread per processor and a queue of four requests per thread are used.
+     * Runs until the process is stopped.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args == null || Stream.of(args).anyMatch(arg -> arg == null)) {
+            System.err.println("All arguments should be not null");
+            return;
+        }
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = -1;
+        Path cacheDirectory = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--queue":
+                        queue = Integer.parseInt(args[++i]);
+                        break;
+                    case "--cache":
+                        cacheDirectory = Path.of(args[++i]);
+                        break;
+                    default:
+                        System.err.println("Unknown option " + args[i] + ". " + USAGE);
+                        return;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println(USAGE);
+            return;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            return;
+        }
+        try {
+            ImplementorCache cache = cacheDirectory == null ? null : new ImplementorCache(cacheDirectory);
+            ImplementorDaemon daemon = new ImplementorDaemon(port, threads, queue < 0 ? 4 * threads : queue, cache);
+            System.out.println("Listening on " + daemon.getPort());
+            daemon.run();
+        } catch (ImplerException | IOException | IllegalArgumentException e) {
+            System.err.println("Can not start daemon: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets port this daemon listens on.
+     *
+     * @return local port of a server socket.
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until {@link #close()} is called. Every connection is handed to the executor;
+     * if its queue is full, connection is answered with {@link #BUSY} by a separate thread, waiting at most
+     * {@link #REJECT_TIMEOUT} for the request, or closed at once if that thread is busy as well.
+     * If accepting fails, next attempt is made after {@link #ACCEPT_BACKOFF}.
+     */
+    public void run() {
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                try {
+                    Thread.sleep(ACCEPT_BACKOFF);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            try {
+                workers.execute(() -> serve(socket));
+            } catch (RejectedExecutionException e) {
+                try {
+                    rejecter.execute(() -> reject(socket));
+                } catch (RejectedExecutionException again) {
+                    close(socket);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting connections, deletes secret file and waits for requests in progress.
+     */
+    public void close() {
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // already closed
+        }
+        try {
+            Files.deleteIfExists(secretFile);
+        } catch (IOException ignored) {
+            // replaced by the next daemon on this port
+        }
+        rejecter.shutdown();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+            rejecter.awaitTermination(REJECT_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads a request from a connection, checks its secret, executes it and replies. Client gets a reply
+     * whatever is thrown.
+     *
+     * @param socket accepted connection.
+     */
+    private void serve(Socket socket) {
+        try {
+            socket.setSoTimeout(READ_TIMEOUT);
+            List<String> request = readRequest(socket);
+            if (!MessageDigest.isEqual(secret.getBytes(StandardCharsets.US_ASCII),
+                    request.get(0).getBytes(StandardCharsets.US_ASCII))) {
+                reply(socket, UNAUTHORIZED, "Invalid secret, see " + secretFile);
+                return;
+            }
+            execute(Path.of(request.get(1)), request.subList(2, request.size()));
+            reply(socket, OK, "");
+        } catch (ImplerException e) {
+            reply(socket, FAILED, e.getMessage());
+        } catch (InvalidPathException e) {
+            reply(socket, FAILED, "Invalid path given: " + e.getMessage());
+        } catch (IOException e) {
+            reply(socket, FAILED, "Invalid request: " + e.getMessage());
+        } catch (RuntimeException | Error e) {
+            reply(socket, FAILED, "Unexpected error: " + e);
+        }
+    }
+
+    /**
+     * Answers a connection with {@link #BUSY}. Request is read first, so the reply is not lost to
+     * a connection reset.
+     *
+     * @param socket accepted connection.
+     */
+    private static void reject(Socket socket) {
+        try {
+            socket.setSoTimeout(REJECT_TIMEOUT);
+            readRequest(socket);
+        } catch (IOException ignored) {
+            // reply anyway
+        }
+        reply(socket, BUSY, "Daemon is busy, try again later");
+    }
+
+    /**
+     * Closes a connection without reply.
+     *
+     * @param socket connection to close.
+     */
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // nothing to release
+        }
+    }
+
+    /**
+     * Reads a request.
+     *
+     * @param socket accepted connection.
+     * @return secret and working directory of a client followed by arguments.
+     * @throws IOException if request could not be read in time or is malformed.
+     */
+    private static List<String> readRequest(Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        List<String> request = new ArrayList<>();
+        request.add(input.readUTF());
+        request.add(input.readUTF());
+        int count = input.readInt();
+        if (count < 0 || count > MAX_ARGUMENTS) {
+            throw new IOException("Invalid number of arguments: " + count);
+        }
+        for (int i = 0; i < count; i++) {
+            request.add(input.readUTF());
+        }
+        return request;
+    }
+
+    /**
+     * Executes one request: <code>[--backend name] [-jar] className... outputPath</code>. Other options of
+     * {@link Implementor#main(String[])} are rejected, as class names never start with <code>-</code>.
+     *
+     * @param directory working directory of a client, output path is resolved against it.
+     * @param args request arguments.
+     * @throws ImplerException if arguments are invalid or implementation fails.
+     */
+    private void execute(Path directory, List<String> args) throws ImplerException {
+        ImplementorBackend backend = ImplementorBackend.FILE_SYSTEM;
+        if (args.size() > 1 && args.get(0).equals("--backend")) {
+            try {
+                backend = ImplementorBackend.forName(args.get(1));
+            } catch (IllegalArgumentException e) {
+                throw new ImplerException(e.getMessage());
+            }
+            args = args.subList(2, args.size());
+        }
+        if (args.size() < 2) {
+            throw new ImplerException("Invalid arguments number, expected [-jar] <class.name>... <output.path>");
+        }
+        for (String arg : args.subList(0, args.size() - 1)) {
+            if (arg.startsWith("-") && !arg.equals("-jar") && !arg.equals("--jar")) {
+                throw new ImplerException("Option " + arg + " is not supported by daemon, expected"
+                        + " [--backend name] [-jar] <class.name>... <output.path>");
+            }
+        }
+        Implementor implementor = implementors.get(backend);
+        Path output = directory.resolve(args.get(args.size() - 1));
+        try {
+            if (args.size() == 2) {
+                implementor.implement(Class.forName(args.get(0)), output);
+            } else if (args.get(0).equals("-jar") || args.get(0).equals("--jar")) {
+                List<Class<?>> tokens = new ArrayList<>();
+                for (String name : args.subList(1, args.size() - 1)) {
+                    tokens.add(Class.forName(name));
+                }
+                implementor.implementJar(tokens, output);
+            } else {
+                throw new ImplerException("expected -jar or --jar");
+            }
+        } catch (ClassNotFoundException e) {
+            throw new ImplerException("Invalid class name given: " + e.getMessage());
+        } catch (LinkageError e) {
+            throw new ImplerException("Can not load class: " + e, e);
+        }
+    }
+
+    /**
+     * Writes reply and closes connection. Errors are ignored, as client may have gone.
+     *
+     * @param socket connection to reply to.
+     * @param status status of a request.
+     * @param message error message, empty on success.
+     */
+    private static void reply(Socket socket, int status, String message) {
+        try (socket) {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeInt(status);
+            output.writeUTF(message == null ? "" : message);
+            output.flush();
+        } catch (IOException ignored) {
+            // client disconnected
+        }
+    }
+}
@@ -4,6 +4,8 @@ import info.kgeorgiy.java.advanced.implementor.ImplerException;
 import java.io.IOException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class providing directories management utilities for {@link Implementor}
@@ -14,10 +16,22 @@ import java.nio.file.attribute.BasicFileAttributes;
 public class ImplementorFileUtils {
 
     /**
-     * Temporary directory {@link Path} object where all temporary files created by the {@link Implementor}
-     * will be stored
+     * Producer of a file written by {@link #writeAtomically(Path, AtomicOutput)}
+     *
+     * @param <T> type of a result
      */
-    private Path tempDirectory;
+    @FunctionalInterface
+    interface AtomicOutput<T> {
+        /**
+         * Writes contents to a temporary file
+         *
+         * @param temporary {@link Path} of an empty temporary file next to the target
+         * @return result passed to the caller
+         * @throws IOException if an error occurs while writing
+         * @throws ImplerException if contents could not be produced
+         */
+        T write(Path temporary) throws IOException, ImplerException;
+    }
 
     /**
      * Deleter file visitor static class. Walks directory using {@link Files#walkFileTree(Path, FileVisitor)}
@@ -61,21 +75,9 @@ public class ImplementorFileUtils {
     }
 
     /**
-     * Constructor from {@link Path} object. Creates a new instance of {@link ImplementorFileUtils} with
-     * {@link #tempDirectory} created in given location
-     *
-     * @param root {@link Path} to location where to create {@link #tempDirectory}
-     * @throws ImplerException if an error occurs while creating temporary directory in given {@code root}
+     * Private constructor, as the class only has static methods
      */
-    ImplementorFileUtils(Path root) throws ImplerException {
-        if (root == null) {
-            throw new ImplerException("Invalid directory provided");
-        }
-        try {
-            tempDirectory = Files.createTempDirectory(root.toAbsolutePath(), "tempdir");
-        } catch (IOException e) {
-            throw new ImplerException(String.format("Unable to create temporary directory: %s", e.getMessage()));
-        }
+    private ImplementorFileUtils() {
     }
 
     /**
@@ -96,26 +98,100 @@ public class ImplementorFileUtils {
     }
 
     /**
-     * Getter for {@link #tempDirectory}
+     * Static method writing a file so that readers never see it partially written. Contents are written to
+     * a temporary sibling of {@code target}, which is then renamed over {@code target}, atomically if the file
+     * system supports it. Temporary file is deleted if writing fails. Written file gets permissions
+     * {@code target} had, or default ones of a new file if it did not exist
+     *
+     * @param target {@link Path} of a file to write, its parent directory should exist
+     * @param output {@link AtomicOutput} writing contents
+     * @param <T> type of a result
+     * @return result of {@code output}
+     * @throws IOException if an error occurs while writing or renaming
+     * @throws ImplerException if {@code output} fails to produce contents
+     */
+    static <T> T writeAtomically(Path target, AtomicOutput<T> output) throws IOException, ImplerException {
+        Path absolute = target.toAbsolutePath();
+        Path temporary = createSibling(absolute);
+        try {
+            T result = output.write(temporary);
+            copyPermissions(absolute, temporary);
+            try {
+                Files.move(temporary, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return result;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Static method creating an empty hidden file with a unique name next to a given one. Unlike
+     * {@link Files#createTempFile(Path, String, String, java.nio.file.attribute.FileAttribute[])}, which makes
+     * the file readable by owner only, the file gets default permissions of the file system
      *
-     * @return temporary directory {@link Path} stored in this instance of {@link ImplementorFileUtils}
+     * @param target {@link Path} of a file to create sibling of
+     * @return {@link Path} of a created file
+     * @throws IOException if an error occurs while creating the file
      */
-    public Path getTempDirectory() {
-        return tempDirectory;
+    private static Path createSibling(Path target) throws IOException {
+        while (true) {
+            Path sibling = target.resolveSibling("." + target.getFileName() + "."
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                Files.newOutputStream(sibling, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+                return sibling;
+            } catch (FileAlreadyExistsException e) {
+                // another name is tried
+            }
+        }
+    }
+
+    /**
+     * Static method giving a file POSIX permissions of another one, if both exist and the file system
+     * supports them
+     *
+     * @param source {@link Path} of a file to take permissions from
+     * @param target {@link Path} of a file to set permissions of
+     * @throws IOException if an error occurs while reading or setting permissions
+     */
+    private static void copyPermissions(Path source, Path target) throws IOException {
+        PosixFileAttributeView view = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        if (view != null && Files.exists(source)) {
+            try {
+                Files.setPosixFilePermissions(target, view.readAttributes().permissions());
+            } catch (NoSuchFileException e) {
+                // file was removed meanwhile, nothing to preserve
+            }
+        }
     }
 
     /**
-     * Recursively deletes {@link #tempDirectory} using {@link FileDeleter}
+     * Static method recursively deleting a file or a directory using {@link FileDeleter}
      * @see Files#walkFileTree(Path, FileVisitor)
      *
-     * @throws ImplerException if an error occurs during temporary directory deletion
+     * @param path {@link Path} of a file or a directory to delete
+     * @throws IOException if an error occurs during deletion
      */
-    public void cleanTempDirectory() throws ImplerException {
-        try {
-            Files.walkFileTree(tempDirectory, new FileDeleter());
-        } catch (IOException e) {
-            throw new ImplerException("Can not delete temporary directory");
+    static void delete(Path path) throws IOException {
+        Files.walkFileTree(path, new FileDeleter());
+    }
+
+    /**
+     * Static method recursively deleting contents of a directory using {@link FileDeleter}, keeping the directory
+     * itself
+     *
+     * @param directory {@link Path} of a directory to clear
+     * @throws IOException if an error occurs during deletion
+     */
+    static void deleteContents(Path directory) throws IOException {
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                delete(child);
+            }
         }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,31 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+/**
+ * Receives notifications about work of {@link Implementor}. Methods are called synchronously by threads doing
+ * the work, so implementations should be fast and thread-safe. Phases which failed are not reported.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public interface ImplementorListener {
+    /**
+     * Called when a phase is completed.
+     *
+     * @param phase completed {@link ImplementorPhase}.
+     * @param className name of implemented class, or number of classes for phases over many classes.
+     * @param methods number of implemented methods, <code>0</code> if not known in this phase.
+     * @param bytes number of bytes produced or restored, <code>0</code> if nothing was written.
+     * @param nanos duration of a phase in nanoseconds.
+     */
+    default void phaseCompleted(ImplementorPhase phase, String className, int methods, long bytes, long nanos) {
+    }
+
+    /**
+     * Called after output was looked up in {@link ImplementorCache}.
+     *
+     * @param className name of implemented class, or number of classes.
+     * @param hit <code>true</code> if cached output was used.
+     */
+    default void cacheLookup(String className, boolean hit) {
+    }
+}
@@ -0,0 +1,227 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.Collection;
+
+/**
+ * Instrumentation of {@link Implementor}. Every phase is recorded as a JDK Flight Recorder {@link PhaseEvent}
+ * and reported to {@link ImplementorStatistics} and an optional {@link ImplementorListener}. Flight Recorder events
+ * cost nearly nothing when recording is off, so instrumentation is always enabled.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class ImplementorMonitor {
+
+    /**
+     * Flight Recorder event of a completed phase.
+     */
+    @Name("ru.ifmo.rain.zagretdinov.implementor.Phase")
+    @Label("Implementor Phase")
+    @Category("Implementor")
+    @Description("Phase of generating an implementation")
+    static class PhaseEvent extends Event {
+        /**
+         * Name of a phase.
+         */
+        @Label("Phase")
+        String phase;
+
+        /**
+         * Name of implemented class, or number of classes.
+         */
+        @Label("Class")
+        String className;
+
+        /**
+         * Number of implemented methods.
+         */
+        @Label("Methods")
+        int methods;
+
+        /**
+         * Bytes produced.
+         */
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * Flight Recorder event of a cache lookup.
+     */
+    @Name("ru.ifmo.rain.zagretdinov.implementor.CacheLookup")
+    @Label("Implementor Cache Lookup")
+    @Category("Implementor")
+    static class CacheLookupEvent extends Event {
+        /**
+         * Name of implemented class, or number of classes.
+         */
+        @Label("Class")
+        String className;
+
+        /**
+         * Whether cached output was used.
+         */
+        @Label("Hit")
+        boolean hit;
+    }
+
+    /**
+     * Phase in progress.
+     */
+    class Measurement {
+        /**
+         * Measured phase.
+         */
+        private final ImplementorPhase phase;
+
+        /**
+         * Name of implemented class, or number of classes.
+         */
+        private final String className;
+
+        /**
+         * Flight Recorder event of this phase.
+         */
+        private final PhaseEvent event = new PhaseEvent();
+
+        /**
+         * Start time in nanoseconds.
+         */
+        private final long start = System.nanoTime();
+
+        /**
+         * Starts measurement.
+         *
+         * @param phase measured phase.
+         * @param className name of implemented class, or number of classes.
+         */
+        private Measurement(ImplementorPhase phase, String className) {
+            this.phase = phase;
+            this.className = className;
+            event.begin();
+        }
+
+        /**
+         * Completes phase and reports it.
+         *
+         * @param methods number of implemented methods, <code>0</code> if not known.
+         * @param bytes number of bytes produced.
+         */
+        void end(int methods, long bytes) {
+            long nanos = System.nanoTime() - start;
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.className = className;
+                event.methods = methods;
+                event.bytes = bytes;
+                event.commit();
+            }
+            statistics.phaseCompleted(phase, className, methods, bytes, nanos);
+            ImplementorListener current = listener;
+            if (current != null) {
+                current.phaseCompleted(phase, className, methods, bytes, nanos);
+            }
+        }
+    }
+
+    /**
+     * Aggregate counters.
+     */
+    private final ImplementorStatistics statistics = new ImplementorStatistics();
+
+    /**
+     * Listener set by user, <code>null</code> if there is none.
+     */
+    private volatile ImplementorListener listener;
+
+    /**
+     * Gets aggregate counters.
+     *
+     * @return {@link ImplementorStatistics} updated by this monitor.
+     */
+    ImplementorStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Sets listener.
+     *
+     * @param listener {@link ImplementorListener} to notify, <code>null</code> to remove.
+     */
+    void setListener(ImplementorListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts measuring a phase for one class.
+     *
+     * @param phase {@link ImplementorPhase} started.
+     * @param token implemented class.
+     * @return {@link Measurement} to be {@link Measurement#end(int, long) ended} when phase is completed.
+     */
+    Measurement start(ImplementorPhase phase, Class<?> token) {
+        return new Measurement(phase, token.getName());
+    }
+
+    /**
+     * Starts measuring a phase for a class given by name, for classes which are not loaded.
+     *
+     * @param phase {@link ImplementorPhase} started.
+     * @param className name of implemented class, or number of classes.
+     * @return {@link Measurement} to be {@link Measurement#end(int, long) ended} when phase is completed.
+     */
+    Measurement start(ImplementorPhase phase, String className) {
+        return new Measurement(phase, className);
+    }
+
+    /**
+     * Starts measuring a phase for many classes.
+     *
+     * @param phase {@link ImplementorPhase} started.
+     * @param tokens implemented classes.
+     * @return {@link Measurement} to be {@link Measurement#end(int, long) ended} when phase is completed.
+     */
+    Measurement start(ImplementorPhase phase, Collection<Class<?>> tokens) {
+        return new Measurement(phase, describe(tokens));
+    }
+
+    /**
+     * Reports cache lookup.
+     *
+     * @param tokens implemented classes.
+     * @param hit <code>true</code> if cached output was used.
+     */
+    void cacheLookup(Collection<Class<?>> tokens, boolean hit) {
+        String className = describe(tokens);
+        CacheLookupEvent event = new CacheLookupEvent();
+        if (event.shouldCommit()) {
+            event.className = className;
+            event.hit = hit;
+            event.commit();
+        }
+        statistics.cacheLookup(className, hit);
+        ImplementorListener current = listener;
+        if (current != null) {
+            current.cacheLookup(className, hit);
+        }
+    }
+
+    /**
+     * Describes implemented classes.
+     *
+     * @param tokens implemented classes.
+     * @return name of the only class, or number of classes.
+     */
+    private static String describe(Collection<Class<?>> tokens) {
+        return tokens.size() == 1 ? tokens.iterator().next().getName() : tokens.size() + " classes";
+    }
+}
@@ -0,0 +1,55 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+/**
+ * Phases of work of {@link Implementor} reported to {@link ImplementorListener} and to JDK Flight Recorder.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public enum ImplementorPhase {
+    /**
+     * Computing fingerprint of inputs and copying cached output if present.
+     */
+    CACHE,
+
+    /**
+     * Acquiring temporary directory from {@link WorkspacePool}.
+     */
+    TEMP_DIRECTORY,
+
+    /**
+     * Finding constructors and abstract methods through reflection.
+     */
+    SCAN,
+
+    /**
+     * Generating source code or class file in memory. Reports length of source code in characters or size
+     * of class file in bytes.
+     */
+    GENERATE,
+
+    /**
+     * Writing generated source file. Reports size of written file in bytes.
+     */
+    WRITE,
+
+    /**
+     * Compiling generated sources.
+     */
+    COMPILE,
+
+    /**
+     * Packing classes into a <code>.jar</code> file.
+     */
+    BUILD_JAR,
+
+    /**
+     * Dumping class data sharing archive of a <code>.jar</code> file.
+     */
+    ARCHIVE,
+
+    /**
+     * Releasing temporary directory to {@link WorkspacePool}, which clears it in background.
+     */
+    CLEANUP
+}
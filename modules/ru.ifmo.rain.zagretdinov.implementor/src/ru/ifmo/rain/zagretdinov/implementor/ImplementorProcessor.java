@@ -0,0 +1,376 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Annotation processor generating implementations of types marked with {@link GenerateImpl} during compilation.
+ * Works on {@link javax.lang.model} elements, so neither the annotated type nor its supertypes are loaded.
+ * Generated source is written by {@link CodeWriter} the same way {@link Implementor} writes it; abstract methods
+ * are found by the rules of {@link MethodIndex} applied to elements.
+ * <p>
+ * Unlike reflection, parameter types are taken as members of the annotated type before erasure, so methods of
+ * generic supertypes are implemented with their actual type arguments.
+ *
+ * @author sem
+ * @version 1.0
+ */
+@SupportedAnnotationTypes("ru.ifmo.rain.zagretdinov.implementor.GenerateImpl")
+public class ImplementorProcessor extends AbstractProcessor {
+
+    /**
+     * Creates processor. Public no-argument constructor is required by {@link java.util.ServiceLoader}, which
+     * compiler uses to find processors.
+     */
+    public ImplementorProcessor() {
+    }
+
+    /**
+     * Gets latest source version, as processor does not depend on language features.
+     *
+     * @return {@link SourceVersion#latestSupported()}.
+     */
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    /**
+     * Generates implementation of every annotated type. Types which can not be implemented are reported as errors.
+     *
+     * @param annotations annotation types requested to be processed.
+     * @param round environment of a current round.
+     * @return <code>true</code>, as {@link GenerateImpl} is claimed by this processor.
+     */
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (Element element : round.getElementsAnnotatedWith(GenerateImpl.class)) {
+            try {
+                if (element.getKind() != ElementKind.CLASS && element.getKind() != ElementKind.INTERFACE) {
+                    throw new ImplerException("Only classes and interfaces can be implemented");
+                }
+                TypeElement type = (TypeElement) element;
+                String name = getImplementationName(type);
+                CodeWriter code = generateSource(type);
+                try (Writer writer = processingEnv.getFiler().createSourceFile(name, type).openWriter()) {
+                    code.writeTo(writer);
+                } catch (IOException e) {
+                    throw new ImplerException("Can not write " + name + ": " + e.getMessage(), e);
+                }
+            } catch (ImplerException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), element);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets binary name of an implementation: package of a type and its simple name with <code>Impl</code> suffix.
+     *
+     * @param type implemented type.
+     * @return name of an implementation.
+     */
+    private String getImplementationName(TypeElement type) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        return (packageName.isEmpty() ? "" : packageName + ".") + type.getSimpleName() + "Impl";
+    }
+
+    /**
+     * Generates source code implementing given type.
+     *
+     * @param type implemented type.
+     * @return {@link CodeWriter} holding generated code.
+     * @throws ImplerException if type can not be implemented.
+     */
+    private CodeWriter generateSource(TypeElement type) throws ImplerException {
+        checkType(type);
+        Elements elements = processingEnv.getElementUtils();
+        DeclaredType declared = (DeclaredType) type.asType();
+        String className = type.getSimpleName() + "Impl";
+        CodeWriter code = new CodeWriter();
+        code.packageDeclaration(elements.getPackageOf(type).getQualifiedName().toString()).endLine()
+                .visibility(getModifiers(type) & java.lang.reflect.Modifier.PUBLIC)
+                .word("class").word(className)
+                .word(type.getKind() == ElementKind.INTERFACE ? "implements" : "extends")
+                .append(type.getQualifiedName().toString())
+                .beginBlock();
+        for (ExecutableElement constructor : getConstructors(type)) {
+            ExecutableType member = (ExecutableType) processingEnv.getTypeUtils().asMemberOf(declared, constructor);
+            code.endLine().line().visibility(getModifiers(constructor)).append(className)
+                    .parameters(erase(member.getParameterTypes())).throwsClause(erase(member.getThrownTypes()))
+                    .beginBlock().line().append("super").arguments(member.getParameterTypes().size())
+                    .statementEnd().endLine().endBlock();
+        }
+        for (Map.Entry<ExecutableElement, ExecutableType> method : getAbstractMethods(type).entrySet()) {
+            ExecutableType member = method.getValue();
+            TypeMirror returnType = member.getReturnType();
+            code.endLine().line().visibility(getModifiers(method.getKey()))
+                    .word(erase(returnType)).append(method.getKey().getSimpleName().toString())
+                    .parameters(erase(member.getParameterTypes())).throwsClause(erase(member.getThrownTypes()))
+                    .beginBlock().line().append("return");
+            if (returnType.getKind() != TypeKind.VOID) {
+                code.append(" ").append(getDefaultValue(returnType));
+            }
+            code.statementEnd().endLine().endBlock();
+        }
+        return code.endBlock();
+    }
+
+    /**
+     * Checks whether type could be implemented: it is not final, neither it nor enclosing types are private,
+     * and it is not an inner class.
+     *
+     * @param type type to check.
+     * @throws ImplerException if type can not be implemented.
+     */
+    private void checkType(TypeElement type) throws ImplerException {
+        if (type.getModifiers().contains(Modifier.FINAL)) {
+            throw new ImplerException("Final class can not be implemented");
+        }
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL && type.getNestingKind() != NestingKind.MEMBER) {
+            throw new ImplerException("Local and anonymous classes can not be implemented");
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && type.getKind() == ElementKind.CLASS
+                && !type.getModifiers().contains(Modifier.STATIC)) {
+            throw new ImplerException("Inner class can not be implemented");
+        }
+        for (Element current = type; current instanceof TypeElement; current = current.getEnclosingElement()) {
+            if (current.getModifiers().contains(Modifier.PRIVATE)) {
+                throw new ImplerException("Private class can not be implemented");
+            }
+        }
+    }
+
+    /**
+     * Finds constructors generated class should declare.
+     *
+     * @param type implemented type.
+     * @return {@link List} of non-private constructors, empty for an interface.
+     * @throws ImplerException if class has no non-private constructors.
+     */
+    private List<ExecutableElement> getConstructors(TypeElement type) throws ImplerException {
+        if (type.getKind() == ElementKind.INTERFACE) {
+            return List.of();
+        }
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements()).stream()
+                .filter(constructor -> !constructor.getModifiers().contains(Modifier.PRIVATE))
+                .collect(Collectors.toList());
+        if (constructors.isEmpty()) {
+            throw new ImplerException("Class with no non-private constructors can not be extended");
+        }
+        return constructors;
+    }
+
+    /**
+     * Finds abstract methods generated class should implement, one per signature, as
+     * {@link MethodIndex#getAbstractMethods(Class)} does.
+     *
+     * @param type implemented type.
+     * @return methods with their types as members of {@code type}.
+     */
+    private Map<ExecutableElement, ExecutableType> getAbstractMethods(TypeElement type) {
+        DeclaredType declared = (DeclaredType) type.asType();
+        Map<String, ExecutableElement> methods = new LinkedHashMap<>();
+        if (type.getKind() == ElementKind.INTERFACE) {
+            methods.putAll(index(processingEnv.getElementUtils().getTypeElement(Object.class.getName()), declared));
+        }
+        merge(methods, index(type, declared));
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        Map<ExecutableElement, ExecutableType> result = new LinkedHashMap<>();
+        for (ExecutableElement method : methods.values()) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (modifiers.contains(Modifier.ABSTRACT) && (modifiers.contains(Modifier.PUBLIC)
+                    || modifiers.contains(Modifier.PROTECTED) || processingEnv.getElementUtils()
+                    .getPackageOf(method).getQualifiedName().contentEquals(packageName))) {
+                result.put(method, memberType(declared, method));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes index of methods visible in a type: declared methods merged with indices of supertypes.
+     *
+     * @param type type to compute index of.
+     * @param origin implemented type, signatures are computed as its members.
+     * @return most specific methods by signatures.
+     */
+    private Map<String, ExecutableElement> index(TypeElement type, DeclaredType origin) {
+        Map<String, ExecutableElement> result = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (!modifiers.contains(Modifier.STATIC) && !modifiers.contains(Modifier.PRIVATE)) {
+                result.put(signature(method, origin), method);
+            }
+        }
+        if (type.getSuperclass().getKind() == TypeKind.DECLARED) {
+            merge(result, index(asElement(type.getSuperclass()), origin));
+        }
+        for (TypeMirror superInterface : type.getInterfaces()) {
+            merge(result, index(asElement(superInterface), origin));
+        }
+        return result;
+    }
+
+    /**
+     * Merges methods inherited from a supertype into methods of a subtype.
+     *
+     * @param target methods collected so far, updated in place.
+     * @param inherited methods of a supertype.
+     */
+    private void merge(Map<String, ExecutableElement> target, Map<String, ExecutableElement> inherited) {
+        inherited.forEach((signature, method) -> target.merge(signature, method, this::moreSpecific));
+    }
+
+    /**
+     * Chooses which of two methods with the same signature is inherited, by the rules of {@link MethodIndex}.
+     *
+     * @param current method found so far.
+     * @param candidate method of another supertype.
+     * @return method to keep.
+     */
+    private ExecutableElement moreSpecific(ExecutableElement current, ExecutableElement candidate) {
+        Types types = processingEnv.getTypeUtils();
+        TypeElement currentClass = (TypeElement) current.getEnclosingElement();
+        TypeElement candidateClass = (TypeElement) candidate.getEnclosingElement();
+        boolean currentInterface = currentClass.getKind() == ElementKind.INTERFACE;
+        boolean candidateInterface = candidateClass.getKind() == ElementKind.INTERFACE;
+        if (!currentInterface || !candidateInterface) {
+            if (currentInterface != candidateInterface) {
+                ExecutableElement classMethod = currentInterface ? candidate : current;
+                ExecutableElement interfaceMethod = currentInterface ? current : candidate;
+                return classMethod.getModifiers().contains(Modifier.PUBLIC) ? classMethod : interfaceMethod;
+            }
+            return current;
+        }
+        TypeMirror currentType = types.erasure(currentClass.asType());
+        TypeMirror candidateType = types.erasure(candidateClass.asType());
+        if (types.isSubtype(candidateType, currentType)) {
+            return candidate;
+        } else if (types.isSubtype(currentType, candidateType)) {
+            return current;
+        }
+        boolean currentAbstract = current.getModifiers().contains(Modifier.ABSTRACT);
+        if (currentAbstract != candidate.getModifiers().contains(Modifier.ABSTRACT)) {
+            return currentAbstract ? current : candidate;
+        }
+        return types.isAssignable(types.erasure(candidate.getReturnType()), types.erasure(current.getReturnType()))
+                ? candidate : current;
+    }
+
+    /**
+     * Computes signature of a method as a member of implemented type: name and erased parameter types.
+     *
+     * @param method method to get signature of.
+     * @param origin implemented type.
+     * @return signature of {@code method}.
+     */
+    private String signature(ExecutableElement method, DeclaredType origin) {
+        List<String> parameters = erase(memberType(origin, method).getParameterTypes());
+        return method.getSimpleName() + "(" + String.join(",", parameters) + ")";
+    }
+
+    /**
+     * Gets type of a method as a member of implemented type, with type arguments of supertypes substituted.
+     * Methods of {@link Object} are not members of interfaces, their declared types are used.
+     *
+     * @param origin implemented type.
+     * @param method method to get type of.
+     * @return {@link ExecutableType} of {@code method}.
+     */
+    private ExecutableType memberType(DeclaredType origin, ExecutableElement method) {
+        try {
+            return (ExecutableType) processingEnv.getTypeUtils().asMemberOf(origin, method);
+        } catch (IllegalArgumentException e) {
+            return (ExecutableType) method.asType();
+        }
+    }
+
+    /**
+     * Gets element of a declared type.
+     *
+     * @param type {@link TypeMirror} of a class or interface.
+     * @return {@link TypeElement} of {@code type}.
+     */
+    private TypeElement asElement(TypeMirror type) {
+        return (TypeElement) processingEnv.getTypeUtils().asElement(type);
+    }
+
+    /**
+     * Gets canonical name of an erased type.
+     *
+     * @param type type to erase.
+     * @return name of erasure of {@code type}.
+     */
+    private String erase(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    /**
+     * Gets canonical names of erased types.
+     *
+     * @param types types to erase.
+     * @return names of erasures of {@code types}.
+     */
+    private List<String> erase(List<? extends TypeMirror> types) {
+        List<String> result = new ArrayList<>(types.size());
+        for (TypeMirror type : types) {
+            result.add(erase(type));
+        }
+        return result;
+    }
+
+    /**
+     * Converts visibility modifiers of an element to {@link java.lang.reflect.Modifier} flags.
+     *
+     * @param element element to get modifiers of.
+     * @return {@link java.lang.reflect.Modifier#PUBLIC} or {@link java.lang.reflect.Modifier#PROTECTED} if present.
+     */
+    private static int getModifiers(Element element) {
+        Set<Modifier> modifiers = element.getModifiers();
+        return modifiers.contains(Modifier.PUBLIC) ? java.lang.reflect.Modifier.PUBLIC
+                : modifiers.contains(Modifier.PROTECTED) ? java.lang.reflect.Modifier.PROTECTED : 0;
+    }
+
+    /**
+     * Returns default value of a type.
+     *
+     * @param type type of a value.
+     * @return <code>null</code> for references, <code>false</code> or <code>0</code> for primitives.
+     */
+    private static String getDefaultValue(TypeMirror type) {
+        if (!type.getKind().isPrimitive()) {
+            return "null";
+        } else if (type.getKind() == TypeKind.BOOLEAN) {
+            return "false";
+        } else {
+            return "0";
+        }
+    }
+}
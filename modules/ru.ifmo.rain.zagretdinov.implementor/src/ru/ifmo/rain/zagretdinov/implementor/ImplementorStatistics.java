@@ -0,0 +1,173 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregate counters of work of {@link Implementor}: generated classes, cache hits and misses, and number,
+ * total duration and produced bytes of every {@link ImplementorPhase}. Counters are {@link LongAdder}s,
+ * so updating them from many threads is cheap; values read while work is in progress are not a consistent
+ * snapshot.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ImplementorStatistics implements ImplementorListener {
+
+    /**
+     * Number of generated classes.
+     */
+    private final LongAdder classes = new LongAdder();
+
+    /**
+     * Number of cache lookups which found output.
+     */
+    private final LongAdder cacheHits = new LongAdder();
+
+    /**
+     * Number of cache lookups which did not find output.
+     */
+    private final LongAdder cacheMisses = new LongAdder();
+
+    /**
+     * Number of completed phases.
+     */
+    private final Map<ImplementorPhase, LongAdder> counts = counters();
+
+    /**
+     * Total duration of phases in nanoseconds.
+     */
+    private final Map<ImplementorPhase, LongAdder> nanos = counters();
+
+    /**
+     * Total bytes produced by phases.
+     */
+    private final Map<ImplementorPhase, LongAdder> bytes = counters();
+
+    /**
+     * Creates statistics with all counters at zero.
+     */
+    public ImplementorStatistics() {
+    }
+
+    /**
+     * Creates counters for every phase. Map is not modified afterwards, so it may be read concurrently.
+     *
+     * @return {@link Map} with a zero counter for every {@link ImplementorPhase}.
+     */
+    private static Map<ImplementorPhase, LongAdder> counters() {
+        Map<ImplementorPhase, LongAdder> result = new EnumMap<>(ImplementorPhase.class);
+        for (ImplementorPhase phase : ImplementorPhase.values()) {
+            result.put(phase, new LongAdder());
+        }
+        return result;
+    }
+
+    /**
+     * Accounts completed phase. Every {@link ImplementorPhase#GENERATE} phase is one generated class.
+     *
+     * @param phase completed {@link ImplementorPhase}.
+     * @param className name of implemented class.
+     * @param methods number of implemented methods.
+     * @param bytes number of bytes produced.
+     * @param nanos duration of a phase in nanoseconds.
+     */
+    @Override
+    public void phaseCompleted(ImplementorPhase phase, String className, int methods, long bytes, long nanos) {
+        if (phase == ImplementorPhase.GENERATE) {
+            classes.increment();
+        }
+        this.counts.get(phase).increment();
+        this.nanos.get(phase).add(nanos);
+        this.bytes.get(phase).add(bytes);
+    }
+
+    /**
+     * Accounts cache lookup.
+     *
+     * @param className name of implemented class.
+     * @param hit <code>true</code> if cached output was used.
+     */
+    @Override
+    public void cacheLookup(String className, boolean hit) {
+        (hit ? cacheHits : cacheMisses).increment();
+    }
+
+    /**
+     * Gets number of generated classes, not counting ones restored from cache.
+     *
+     * @return number of classes.
+     */
+    public long getClassesImplemented() {
+        return classes.sum();
+    }
+
+    /**
+     * Gets number of cache lookups which found output.
+     *
+     * @return number of cache hits.
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Gets number of cache lookups which did not find output.
+     *
+     * @return number of cache misses.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * Gets number of completed phases.
+     *
+     * @param phase {@link ImplementorPhase} to get count of.
+     * @return number of times {@code phase} was completed.
+     */
+    public long getCount(ImplementorPhase phase) {
+        return counts.get(phase).sum();
+    }
+
+    /**
+     * Gets total duration of a phase.
+     *
+     * @param phase {@link ImplementorPhase} to get duration of.
+     * @return total duration in nanoseconds.
+     */
+    public long getTotalNanos(ImplementorPhase phase) {
+        return nanos.get(phase).sum();
+    }
+
+    /**
+     * Gets total bytes produced by a phase.
+     *
+     * @param phase {@link ImplementorPhase} to get size of output of.
+     * @return total number of bytes.
+     */
+    public long getBytes(ImplementorPhase phase) {
+        return bytes.get(phase).sum();
+    }
+
+    /**
+     * Formats counters, one phase per line.
+     *
+     * @return human-readable summary.
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(String.format("classes implemented: %d, cache hits: %d, misses: %d",
+                getClassesImplemented(), getCacheHits(), getCacheMisses()));
+        for (ImplementorPhase phase : ImplementorPhase.values()) {
+            long count = getCount(phase);
+            if (count > 0) {
+                result.append(System.lineSeparator()).append(String.format("%-14s %8d times %10d ms %12d bytes",
+                        phase, count, TimeUnit.NANOSECONDS.toMillis(getTotalNanos(phase)), getBytes(phase)));
+            }
+        }
+        return result.toString();
+    }
+}
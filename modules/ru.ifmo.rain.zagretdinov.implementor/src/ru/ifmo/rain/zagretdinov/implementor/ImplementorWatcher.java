@@ -0,0 +1,388 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Regenerates implementations whenever class files they depend on change. A directory of compiled classes is
+ * watched with {@link WatchService}; bursts of events, as a build writes many class files, are collected until
+ * the directory is quiet for a debounce interval. Then only tokens whose hierarchy contains a changed class are
+ * regenerated. Classes are read by {@link ClassFileImplementor}, so changed versions are seen without reloading.
+ * <p>
+ * Output is either a root of <code>.java</code> files, or a <code>.jar</code> file. For a <code>.jar</code> file
+ * compiled implementations are kept in memory, only changed ones are recompiled, and the file is rewritten.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ImplementorWatcher implements AutoCloseable {
+
+    /**
+     * Default time without events after which changes are processed, in milliseconds.
+     */
+    public static final long DEFAULT_DEBOUNCE = 200;
+
+    /**
+     * Usage message printed on invalid arguments.
+     */
+    private static final String USAGE =
+            "Expected [--debounce millis] <classes.directory> <output.path> <class.name>...";
+
+    /**
+     * Suffix of class file names.
+     */
+    private static final String CLASS_SUFFIX = ".class";
+
+    /**
+     * {@link Implementor} generating implementations.
+     */
+    private final Implementor implementor;
+
+    /**
+     * Watched directory of compiled classes.
+     */
+    private final Path input;
+
+    /**
+     * Root of generated sources or <code>.jar</code> file.
+     */
+    private final Path output;
+
+    /**
+     * Whether {@link #output} is a <code>.jar</code> file.
+     */
+    private final boolean jar;
+
+    /**
+     * Binary names of implemented classes.
+     */
+    private final Set<String> tokens;
+
+    /**
+     * Time without events after which changes are processed, in milliseconds.
+     */
+    private final long debounce;
+
+    /**
+     * Service watching {@link #input} and its subdirectories.
+     */
+    private final WatchService watchService;
+
+    /**
+     * Binary names of classes in hierarchy of every token as of its last generation.
+     */
+    private final Map<String, Set<String>> hierarchies = new HashMap<>();
+
+    /**
+     * Compiled implementations by paths inside {@link #output} <code>.jar</code> file.
+     */
+    private final Map<String, byte[]> classes = new TreeMap<>();
+
+    /**
+     * Creates watcher and registers input directory and its subdirectories. Nothing is generated until
+     * {@link #regenerate(Collection)} or {@link #run()} is called.
+     *
+     * @param implementor {@link Implementor} generating implementations.
+     * @param input directory of compiled classes.
+     * @param tokens binary names of classes and interfaces to implement.
+     * @param output root of generated sources, or <code>.jar</code> file.
+     * @param debounce time without events after which changes are processed, in milliseconds.
+     * @throws ImplerException if input is not a directory or could not be watched.
+     */
+    public ImplementorWatcher(Implementor implementor, Path input, Collection<String> tokens, Path output,
+                              long debounce) throws ImplerException {
+        if (!Files.isDirectory(input)) {
+            throw new ImplerException("Input " + input + " is not a directory");
+        }
+        this.implementor = implementor;
+        this.input = input.toAbsolutePath();
+        this.output = output;
+        this.jar = output.getFileName() != null && output.getFileName().toString().endsWith(".jar");
+        this.tokens = new LinkedHashSet<>(tokens);
+        this.debounce = debounce;
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            register(this.input);
+        } catch (IOException e) {
+            throw new ImplerException("Can not watch " + input + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Command line entry point. Arguments are <code>[--debounce millis] classesDirectory outputPath
+     * className...</code>; output path ending with <code>.jar</code> is a <code>.jar</code> file, root of
+     * sources otherwise. Generates every implementation and then watches until interrupted, printing
+     * regenerated classes and errors.
+     *
+     * @param args command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args == null || Stream.of(args).anyMatch(arg -> arg == null)) {
+            System.err.println("All arguments should be not null");
+            return;
+        }
+        long debounce = DEFAULT_DEBOUNCE;
+        try {
+            if (args.length > 1 && args[0].equals("--debounce")) {
+                debounce = Long.parseLong(args[1]);
+                args = Arrays.copyOfRange(args, 2, args.length);
+            }
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid debounce: " + args[1]);
+            return;
+        }
+        if (args.length < 3) {
+            System.err.println(USAGE);
+            return;
+        }
+        Implementor implementor = new Implementor(ImplementorBackend.IN_MEMORY);
+        try (ImplementorWatcher watcher = new ImplementorWatcher(implementor, Path.of(args[0]),
+                List.of(args).subList(2, args.length), Path.of(args[1]), debounce)) {
+            watcher.run();
+        } catch (InvalidPathException e) {
+            System.err.println("Invalid path given: " + e.getMessage());
+        } catch (ImplerException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /**
+     * Generates every implementation, then regenerates affected ones on every batch of changes until the watcher
+     * is {@link #close() closed} or the thread is interrupted. Errors of a batch are printed and do not stop
+     * watching, so a broken intermediate build is fixed by the next one.
+     */
+    public void run() {
+        report(tokens);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<String> changed = awaitChanges();
+                Set<String> affected = changed == null ? tokens : getAffected(changed);
+                if (!affected.isEmpty()) {
+                    report(affected);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Regenerates implementations and prints the result. Failed tokens are reported and regenerated on any
+     * following change, the others are regenerated only when their hierarchies change.
+     *
+     * @param affected binary names of tokens to regenerate.
+     */
+    private void report(Set<String> affected) {
+        long start = System.nanoTime();
+        try {
+            regenerate(affected);
+        } catch (ImplerException e) {
+            System.err.println("Regeneration failed: " + e.getMessage());
+        }
+        List<String> regenerated = affected.stream().filter(hierarchies::containsKey).collect(Collectors.toList());
+        if (!regenerated.isEmpty()) {
+            System.out.printf("Regenerated %d of %d classes in %d ms: %s%n", regenerated.size(), tokens.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), regenerated);
+        }
+    }
+
+    /**
+     * Regenerates implementations of given tokens and updates their hierarchies. Every batch reads classes
+     * with a new {@link ClassFileImplementor}, so class files are read once per batch. Tokens are regenerated
+     * independently: one that could not be read or implemented loses its hierarchy, so it is retried on any
+     * following change, and does not prevent the others from being written. For a <code>.jar</code> file
+     * the batch is compiled at once, and token by token only if that fails.
+     *
+     * @param affected binary names of tokens to regenerate.
+     * @throws ImplerException if some token could not be read or implemented, or output could not be written;
+     * errors of every failed token are suppressed in it.
+     */
+    public void regenerate(Collection<String> affected) throws ImplerException {
+        Map<String, ImplerException> failures = new LinkedHashMap<>();
+        try (ClassFileImplementor reader = new ClassFileImplementor(input)) {
+            List<String> readable = new ArrayList<>();
+            for (String token : affected) {
+                try {
+                    hierarchies.put(token, reader.getHierarchy(reader.getClass(token)));
+                    readable.add(token);
+                } catch (ImplerException e) {
+                    failures.put(token, e);
+                }
+            }
+            if (jar) {
+                compile(reader, readable, failures);
+                try {
+                    implementor.writeJar(output, classes);
+                } catch (ImplerException e) {
+                    readable.forEach(token -> failures.putIfAbsent(token, e));
+                }
+            } else {
+                for (String token : readable) {
+                    try {
+                        implementor.implement(reader, token, output);
+                    } catch (ImplerException e) {
+                        failures.put(token, e);
+                    }
+                }
+            }
+        } finally {
+            failures.keySet().forEach(hierarchies::remove);
+        }
+        if (!failures.isEmpty()) {
+            ImplerException error = new ImplerException(failures.entrySet().stream()
+                    .map(failure -> failure.getKey() + ": " + failure.getValue().getMessage())
+                    .collect(Collectors.joining("; ")));
+            new LinkedHashSet<>(failures.values()).forEach(error::addSuppressed);
+            throw error;
+        }
+    }
+
+    /**
+     * Compiles implementations of given tokens into {@link #classes}: all at once, or one by one if some
+     * of them fails.
+     *
+     * @param reader {@link ClassFileImplementor} reading input.
+     * @param affected binary names of tokens to compile.
+     * @param failures errors by binary names of failed tokens, updated in place.
+     */
+    private void compile(ClassFileImplementor reader, List<String> affected, Map<String, ImplerException> failures) {
+        try {
+            classes.putAll(implementor.compile(reader, affected));
+            return;
+        } catch (ImplerException e) {
+            if (affected.size() == 1) {
+                failures.put(affected.get(0), e);
+                return;
+            }
+        }
+        for (String token : affected) {
+            try {
+                classes.putAll(implementor.compile(reader, List.of(token)));
+            } catch (ImplerException e) {
+                failures.put(token, e);
+            }
+        }
+    }
+
+    /**
+     * Finds tokens which should be regenerated: changed ones and their subtypes.
+     *
+     * @param changed binary names of changed classes.
+     * @return binary names of affected tokens.
+     */
+    private Set<String> getAffected(Set<String> changed) {
+        return tokens.stream()
+                .filter(token -> {
+                    Set<String> hierarchy = hierarchies.get(token);
+                    return hierarchy == null || hierarchy.stream().anyMatch(changed::contains);
+                })
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Waits for changes and collects them until there are no events for {@link #debounce} milliseconds.
+     * Newly created directories are registered, and class files already written into them are counted as changed.
+     *
+     * @return binary names of changed classes, <code>null</code> if events were lost and everything
+     * should be regenerated.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private Set<String> awaitChanges() throws InterruptedException {
+        Set<String> changed = new LinkedHashSet<>();
+        boolean overflow = false;
+        WatchKey key = watchService.take();
+        while (key != null) {
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                    continue;
+                }
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                    try {
+                        register(path);
+                        try (Stream<Path> files = Files.walk(path)) {
+                            files.forEach(file -> addClassName(changed, file));
+                        }
+                    } catch (IOException e) {
+                        overflow = true;
+                    }
+                } else {
+                    addClassName(changed, path);
+                }
+            }
+            key.reset();
+            key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+        }
+        return overflow ? null : changed;
+    }
+
+    /**
+     * Adds binary name of a class if a path is a class file.
+     *
+     * @param changed binary names of changed classes, updated in place.
+     * @param path changed path inside {@link #input}.
+     */
+    private void addClassName(Set<String> changed, Path path) {
+        String name = input.relativize(path).toString();
+        if (name.endsWith(CLASS_SUFFIX)) {
+            changed.add(name.substring(0, name.length() - CLASS_SUFFIX.length())
+                    .replace(path.getFileSystem().getSeparator(), "."));
+        }
+    }
+
+    /**
+     * Registers directory and all its subdirectories in {@link #watchService}.
+     *
+     * @param directory directory to watch.
+     * @throws IOException if directory could not be registered.
+     */
+    private void register(Path directory) throws IOException {
+        List<Path> directories;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            directories = paths.filter(Files::isDirectory).collect(Collectors.toList());
+        }
+        for (Path path : directories) {
+            path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+    }
+
+    /**
+     * Stops watching. {@link #run()} returns once it notices.
+     *
+     * @throws ImplerException if watch service could not be closed.
+     */
+    @Override
+    public void close() throws ImplerException {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            throw new ImplerException("Can not stop watching: " + e.getMessage(), e);
+        }
+    }
+}
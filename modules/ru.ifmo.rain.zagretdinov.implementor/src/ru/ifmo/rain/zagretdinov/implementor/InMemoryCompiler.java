@@ -0,0 +1,156 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compiles generated sources without touching file system. Sources are passed to {@link JavaCompiler}
+ * as in-memory file objects and produced class files are captured by a {@link ClassCollector} over
+ * a file manager borrowed from {@link CompilerPool}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class InMemoryCompiler {
+
+    /**
+     * Source file object holding generated code.
+     */
+    private static class SourceFile extends SimpleJavaFileObject {
+        /**
+         * Generated source code.
+         */
+        private final CharSequence code;
+
+        /**
+         * Creates source file object for a class with given binary name.
+         *
+         * @param className binary name of a class declared in {@code code}.
+         * @param code generated source code.
+         */
+        SourceFile(String className, CharSequence code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        /**
+         * Returns generated code.
+         *
+         * @param ignoreEncodingErrors ignored, code is already decoded.
+         * @return generated source code.
+         */
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    /**
+     * Class file object storing bytes written by compiler into memory.
+     */
+    private static class ClassFile extends SimpleJavaFileObject {
+        /**
+         * Buffer receiving class bytes.
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        /**
+         * Creates class file object for a class with given binary name.
+         *
+         * @param className binary name of a compiled class.
+         */
+        ClassFile(String className) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        /**
+         * Gives compiler a stream to write class bytes into.
+         *
+         * @return {@link OutputStream} collecting class bytes.
+         */
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    /**
+     * File manager redirecting compiler output to {@link ClassFile}s.
+     */
+    private static class ClassCollector extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        /**
+         * Compiled classes by their binary names.
+         */
+        private final Map<String, ClassFile> classes = new TreeMap<>();
+
+        /**
+         * Creates collector over a standard file manager used to look up classpath.
+         *
+         * @param fileManager {@link StandardJavaFileManager} to delegate everything but output to.
+         */
+        ClassCollector(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        /**
+         * Creates in-memory output for compiled classes.
+         *
+         * @param location output location.
+         * @param className binary name of a compiled class.
+         * @param kind kind of a file.
+         * @param sibling source file this class was compiled from.
+         * @return {@link ClassFile} collecting class bytes.
+         * @throws IOException if delegate file manager fails for non-class output.
+         */
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) throws IOException {
+            if (kind != JavaFileObject.Kind.CLASS) {
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+            ClassFile file = new ClassFile(className);
+            classes.put(className, file);
+            return file;
+        }
+    }
+
+    /**
+     * Compiles given sources in a single compilation task. Collector is not closed, as it would close
+     * the pooled file manager.
+     *
+     * @param sources generated sources by binary names of classes declared in them.
+     * @param classpath classpath entries needed to compile sources.
+     * @return class bytes by paths of class files inside <code>.jar</code> file.
+     * @throws ImplerException if compiler is not available or compilation fails.
+     */
+    static Map<String, byte[]> compile(Map<String, CharSequence> sources,
+                                       Collection<String> classpath) throws ImplerException {
+        List<JavaFileObject> units = new ArrayList<>();
+        sources.forEach((name, code) -> units.add(new SourceFile(name, code)));
+        return CompilerPool.compile(classpath, (compiler, fileManager) -> {
+            ClassCollector collector = new ClassCollector(fileManager);
+            if (!compiler.getTask(null, collector, null, null, null, units).call()) {
+                throw new ImplerException("Implementation compilation failed");
+            }
+            Map<String, byte[]> result = new TreeMap<>();
+            collector.classes.forEach((name, file) ->
+                    result.put(name.replace('.', '/') + JavaFileObject.Kind.CLASS.extension, file.bytes.toByteArray()));
+            return result;
+        });
+    }
+}
@@ -0,0 +1,360 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds a <code>.jar</code> file of many implementations with overlapping stages. Tokens are split into chunks
+ * of {@link #CHUNK}; emitting threads scan and generate upcoming chunks while compiling threads compile earlier
+ * ones, and the calling thread appends compiled classes to a {@link JarWriter.Output} as soon as their chunk
+ * is next in order. Stages are connected by bounded queues, and at most {@link #window} chunks are in flight
+ * at once, so memory does not grow with the number of tokens.
+ * <p>
+ * Chunks are written in order of tokens, so for tokens sorted by names of their implementations the file
+ * is the same as {@link JarWriter#write(Path)} produces. The first failure of any stage stops the pipeline.
+ *
+ * @param <T> type of emitted item, for example source code.
+ * @author sem
+ * @version 1.0
+ */
+final class JarPipeline<T> {
+
+    /**
+     * Number of tokens compiled together.
+     */
+    static final int CHUNK = 64;
+
+    /**
+     * First stage producing an item for a token.
+     *
+     * @param <T> type of emitted item.
+     */
+    @FunctionalInterface
+    interface Emitter<T> {
+        /**
+         * Scans token and emits an item for it.
+         *
+         * @param token type token to create implementation for.
+         * @return emitted item.
+         * @throws ImplerException if {@code token} can not be implemented.
+         */
+        T emit(Class<?> token) throws ImplerException;
+    }
+
+    /**
+     * Second stage turning items of a chunk into class files.
+     *
+     * @param <T> type of emitted item.
+     */
+    @FunctionalInterface
+    interface Compiler<T> {
+        /**
+         * Compiles a chunk.
+         *
+         * @param tokens tokens of a chunk.
+         * @param items items emitted for {@code tokens}, in the same order.
+         * @return class bytes by paths of class files inside <code>.jar</code> file, in order to write them.
+         * @throws ImplerException if compilation fails.
+         */
+        Map<String, byte[]> compile(List<Class<?>> tokens, List<T> items) throws ImplerException;
+    }
+
+    /**
+     * Chunk of tokens passing through stages.
+     *
+     * @param <T> type of emitted item.
+     */
+    private static final class Chunk<T> {
+        /**
+         * Index of a chunk, chunks are written in order of indices.
+         */
+        private final int index;
+
+        /**
+         * Tokens of a chunk.
+         */
+        private final List<Class<?>> tokens;
+
+        /**
+         * Items emitted for {@link #tokens}, released once compiled.
+         */
+        private List<T> items;
+
+        /**
+         * Compiled classes.
+         */
+        private Map<String, byte[]> classes;
+
+        /**
+         * Failure of any stage, <code>null</code> if there is none.
+         */
+        private Throwable failure;
+
+        /**
+         * Creates chunk.
+         *
+         * @param index index of a chunk.
+         * @param tokens tokens of a chunk.
+         */
+        Chunk(int index, List<Class<?>> tokens) {
+            this.index = index;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Instrumentation of writing.
+     */
+    private final ImplementorMonitor monitor;
+
+    /**
+     * First stage.
+     */
+    private final Emitter<T> emitter;
+
+    /**
+     * Second stage.
+     */
+    private final Compiler<T> compiler;
+
+    /**
+     * Compression level of <code>.jar</code> entries.
+     */
+    private final int compression;
+
+    /**
+     * Number of emitting threads.
+     */
+    private final int emitters;
+
+    /**
+     * Number of compiling threads.
+     */
+    private final int compilers;
+
+    /**
+     * Maximal number of chunks emitted but not yet written.
+     */
+    private final int window;
+
+    /**
+     * Checks whether a batch is worth pipelining: it should have more than one chunk, and there should be more
+     * than one processor to overlap stages on, as otherwise chunks only add compiler runs.
+     *
+     * @param tokens number of tokens in a batch.
+     * @return <code>true</code> if batch should be built by a pipeline.
+     */
+    static boolean isWorthwhile(int tokens) {
+        return tokens > CHUNK && Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Creates pipeline with threads according to number of processors: a quarter of them emit, the rest
+     * compile, as compilation is much slower than generation.
+     *
+     * @param monitor {@link ImplementorMonitor} recording writing of chunks.
+     * @param emitter first stage.
+     * @param compiler second stage.
+     * @param compression compression level of <code>.jar</code> entries.
+     */
+    JarPipeline(ImplementorMonitor monitor, Emitter<T> emitter, Compiler<T> compiler, int compression) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.monitor = monitor;
+        this.emitter = emitter;
+        this.compiler = compiler;
+        this.compression = compression;
+        this.emitters = Math.max(1, processors / 4);
+        this.compilers = Math.max(1, processors - emitters);
+        this.window = 2 * (emitters + compilers);
+    }
+
+    /**
+     * Runs pipeline and atomically replaces target file with the result.
+     *
+     * @param tokens distinct tokens in order of their classes in <code>.jar</code> file.
+     * @param jarFile target <tt>.jar</tt> file.
+     * @return size of written file in bytes.
+     * @throws ImplerException if any stage fails, file could not be written or thread is interrupted.
+     */
+    long run(List<Class<?>> tokens, Path jarFile) throws ImplerException {
+        List<List<Class<?>>> chunks = new ArrayList<>();
+        for (int i = 0; i < tokens.size(); i += CHUNK) {
+            chunks.add(tokens.subList(i, Math.min(i + CHUNK, tokens.size())));
+        }
+        Semaphore permits = new Semaphore(window);
+        AtomicInteger next = new AtomicInteger();
+        BlockingQueue<Chunk<T>> emitted = new ArrayBlockingQueue<>(window);
+        BlockingQueue<Chunk<T>> compiled = new ArrayBlockingQueue<>(window);
+        ExecutorService workers = Executors.newFixedThreadPool(emitters + compilers);
+        try {
+            for (int i = 0; i < emitters; i++) {
+                workers.execute(() -> emit(chunks, next, permits, emitted));
+            }
+            for (int i = 0; i < compilers; i++) {
+                workers.execute(() -> compile(emitted, compiled));
+            }
+            return ImplementorFileUtils.writeAtomically(jarFile, temporary -> {
+                try (JarWriter.Output output = new JarWriter.Output(temporary, compression, jarFile)) {
+                    write(chunks.size(), permits, compiled, output);
+                    return output.finish();
+                }
+            });
+        } catch (IOException e) {
+            throw new ImplerException("Could not write to " + jarFile, e);
+        } finally {
+            stop(workers);
+        }
+    }
+
+    /**
+     * Emitting thread: takes chunks in order while there are free permits and emits items of their tokens.
+     *
+     * @param chunks all chunks.
+     * @param next index of the next chunk to take.
+     * @param permits permits of chunks in flight.
+     * @param emitted queue of emitted chunks.
+     */
+    private void emit(List<List<Class<?>>> chunks, AtomicInteger next, Semaphore permits,
+                      BlockingQueue<Chunk<T>> emitted) {
+        try {
+            while (true) {
+                permits.acquire();
+                int index = next.getAndIncrement();
+                if (index >= chunks.size()) {
+                    return;
+                }
+                Chunk<T> chunk = new Chunk<>(index, chunks.get(index));
+                chunk.items = new ArrayList<>(chunk.tokens.size());
+                try {
+                    for (Class<?> token : chunk.tokens) {
+                        chunk.items.add(emitter.emit(token));
+                    }
+                } catch (ImplerException | RuntimeException | Error e) {
+                    chunk.failure = e;
+                }
+                emitted.put(chunk);
+            }
+        } catch (InterruptedException ignored) {
+            // pipeline is stopped
+        }
+    }
+
+    /**
+     * Compiling thread: compiles emitted chunks until pipeline is stopped. Failed chunks are passed on.
+     *
+     * @param emitted queue of emitted chunks.
+     * @param compiled queue of compiled chunks.
+     */
+    private void compile(BlockingQueue<Chunk<T>> emitted, BlockingQueue<Chunk<T>> compiled) {
+        try {
+            while (true) {
+                Chunk<T> chunk = emitted.take();
+                if (chunk.failure == null) {
+                    try {
+                        chunk.classes = compiler.compile(chunk.tokens, chunk.items);
+                    } catch (ImplerException | RuntimeException | Error e) {
+                        chunk.failure = e;
+                    }
+                }
+                chunk.items = null;
+                compiled.put(chunk);
+            }
+        } catch (InterruptedException ignored) {
+            // pipeline is stopped
+        }
+    }
+
+    /**
+     * Writes compiled chunks in order of their indices, releasing a permit per written chunk.
+     *
+     * @param count number of chunks.
+     * @param permits permits of chunks in flight.
+     * @param compiled queue of compiled chunks.
+     * @param output {@link JarWriter.Output} to write to.
+     * @throws IOException if writing fails.
+     * @throws ImplerException if some chunk failed, there are too many entries or thread is interrupted.
+     */
+    private void write(int count, Semaphore permits, BlockingQueue<Chunk<T>> compiled, JarWriter.Output output)
+            throws IOException, ImplerException {
+        Map<Integer, Chunk<T>> pending = new HashMap<>();
+        try {
+            for (int index = 0; index < count; index++) {
+                Chunk<T> chunk = pending.remove(index);
+                while (chunk == null) {
+                    Chunk<T> received = compiled.take();
+                    if (received.failure != null) {
+                        throw rethrow(received.failure);
+                    }
+                    if (received.index == index) {
+                        chunk = received;
+                    } else {
+                        pending.put(received.index, received);
+                    }
+                }
+                ImplementorMonitor.Measurement measurement = monitor.start(ImplementorPhase.BUILD_JAR, chunk.tokens);
+                long bytes = 0;
+                for (Map.Entry<String, byte[]> entry : chunk.classes.entrySet()) {
+                    output.add(entry.getKey(), entry.getValue());
+                    bytes += entry.getValue().length;
+                }
+                measurement.end(0, bytes);
+                permits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImplerException("Interrupted");
+        }
+    }
+
+    /**
+     * Rethrows failure of a stage in the calling thread.
+     *
+     * @param failure {@link ImplerException}, {@link RuntimeException} or {@link Error} thrown by a stage.
+     * @return nothing, declared to be thrown by the caller.
+     * @throws ImplerException if {@code failure} is one.
+     */
+    private static ImplerException rethrow(Throwable failure) throws ImplerException {
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        throw (ImplerException) failure;
+    }
+
+    /**
+     * Interrupts workers and waits for them to stop, so nothing touches temporary files afterwards.
+     * Interrupt of the calling thread is kept.
+     *
+     * @param workers executor of stages.
+     */
+    private static void stop(ExecutorService workers) {
+        workers.shutdownNow();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
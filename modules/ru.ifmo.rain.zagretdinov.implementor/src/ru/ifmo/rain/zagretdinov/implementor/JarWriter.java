@@ -0,0 +1,608 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writer of <code>.jar</code> files with many entries. Entries are collected first, then compressed in parallel
+ * and appended to the file sequentially in order of their names, after the manifest. Entries are either
+ * {@link #STORED} uncompressed, which is faster to load, or deflated with a chosen level.
+ * Every entry has the same fixed modification time, so equal entries produce byte-identical files.
+ * <p>
+ * Zip format is written directly, as {@link java.util.zip.ZipOutputStream} can only compress entries itself,
+ * one at a time. ZIP64 is not supported, which limits a file to 65535 entries and 4 GB.
+ * <p>
+ * Batches too large to hold in memory are written through {@link Output}, which appends entries as they
+ * arrive and keeps only their headers.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class JarWriter {
+
+    /**
+     * Compression level of entries written uncompressed.
+     */
+    static final int STORED = -2;
+
+    /**
+     * Total uncompressed size of entries from which they are compressed in parallel.
+     */
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * Maximal number of entries and offset without ZIP64 extensions.
+     */
+    private static final long MAX_ENTRIES = 0xFFFF;
+
+    /**
+     * Maximal size and offset without ZIP64 extensions.
+     */
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+
+    /**
+     * Modification time of every entry in MS-DOS format: midnight.
+     */
+    private static final int DOS_TIME = 0;
+
+    /**
+     * Modification date of every entry in MS-DOS format: January 1, 1980, the earliest representable.
+     */
+    private static final int DOS_DATE = (1 << 5) | 1;
+
+    /**
+     * General purpose flag marking names encoded in UTF-8.
+     */
+    private static final int UTF8_FLAG = 0x800;
+
+    /**
+     * Compression method of stored entries.
+     */
+    private static final int METHOD_STORED = 0;
+
+    /**
+     * Compression method of deflated entries.
+     */
+    private static final int METHOD_DEFLATED = 8;
+
+    /**
+     * Version needed to extract entries, 2.0 for deflate.
+     */
+    private static final int VERSION = 20;
+
+    /**
+     * Compression level, {@link #STORED} or {@link Deflater} level.
+     */
+    private final int level;
+
+    /**
+     * Uncompressed entries by names.
+     */
+    private final Map<String, byte[]> entries = new TreeMap<>();
+
+    /**
+     * Entry compressed and ready to be written.
+     */
+    private static class Entry {
+        /**
+         * Name of an entry encoded in UTF-8.
+         */
+        private final byte[] name;
+
+        /**
+         * Compression method.
+         */
+        private final int method;
+
+        /**
+         * CRC-32 of uncompressed data.
+         */
+        private final long crc;
+
+        /**
+         * Uncompressed size.
+         */
+        private final long size;
+
+        /**
+         * Size of data as written to the file.
+         */
+        private final long compressedSize;
+
+        /**
+         * Data as written to the file, released by {@link Output} once written.
+         */
+        private byte[] data;
+
+        /**
+         * Offset of the local header in the file, set while writing.
+         */
+        private long offset;
+
+        /**
+         * Compresses entry.
+         *
+         * @param name name of an entry.
+         * @param bytes uncompressed data.
+         * @param level compression level, {@link #STORED} or {@link Deflater} level.
+         */
+        Entry(String name, byte[] bytes, int level) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes);
+            this.crc = checksum.getValue();
+            this.size = bytes.length;
+            if (level == STORED) {
+                this.method = METHOD_STORED;
+                this.data = bytes;
+            } else {
+                this.method = METHOD_DEFLATED;
+                this.data = deflate(bytes, level);
+            }
+            this.compressedSize = data.length;
+        }
+    }
+
+    /**
+     * Creates writer with given compression level.
+     *
+     * @param level {@link #STORED}, {@link Deflater#DEFAULT_COMPRESSION} or level from
+     *              {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+     * @throws IllegalArgumentException if level is invalid.
+     */
+    JarWriter(int level) {
+        this.level = checkLevel(level);
+        entries.put(JarFile.MANIFEST_NAME, getManifest());
+    }
+
+    /**
+     * Gets contents of a manifest with version only.
+     *
+     * @return manifest bytes.
+     */
+    private static byte[] getManifest() {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            manifest.write(bytes);
+        } catch (IOException e) {
+            throw new AssertionError("Writing to memory can not fail", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Checks compression level.
+     *
+     * @param level compression level to check.
+     * @return {@code level}.
+     * @throws IllegalArgumentException if level is neither {@link #STORED}, {@link Deflater#DEFAULT_COMPRESSION}
+     *                                  nor level from {@link Deflater#NO_COMPRESSION} to
+     *                                  {@link Deflater#BEST_COMPRESSION}.
+     */
+    static int checkLevel(int level) {
+        if (level != STORED && level != Deflater.DEFAULT_COMPRESSION
+                && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        return level;
+    }
+
+    /**
+     * Adds an entry. Entry with the same name is replaced.
+     *
+     * @param name path of an entry with <code>'/'</code> separators, for example a class file or
+     *             a <code>META-INF/services</code> file.
+     * @param bytes contents of an entry.
+     * @return this writer.
+     */
+    JarWriter add(String name, byte[] bytes) {
+        entries.put(name, bytes);
+        return this;
+    }
+
+    /**
+     * Adds all entries.
+     *
+     * @param entries contents of entries by their paths.
+     * @return this writer.
+     */
+    JarWriter addAll(Map<String, byte[]> entries) {
+        this.entries.putAll(entries);
+        return this;
+    }
+
+    /**
+     * Adds an entry with contents of a file.
+     *
+     * @param name path of an entry with <code>'/'</code> separators.
+     * @param file {@link Path} of a file to read.
+     * @return this writer.
+     * @throws IOException if file could not be read.
+     */
+    JarWriter add(String name, Path file) throws IOException {
+        return add(name, Files.readAllBytes(file));
+    }
+
+    /**
+     * Compresses entries and writes <code>.jar</code> file. Manifest goes first, other entries follow
+     * in order of their names.
+     *
+     * @param jarFile target <tt>.jar</tt> file.
+     * @return size of written file in bytes.
+     * @throws ImplerException if there are too many entries or file could not be written.
+     */
+    long write(Path jarFile) throws ImplerException {
+        if (entries.size() > MAX_ENTRIES) {
+            throw new ImplerException("Too many entries for " + jarFile + ": " + entries.size());
+        }
+        Stream<Map.Entry<String, byte[]>> stream = Stream.concat(
+                Stream.of(Map.entry(JarFile.MANIFEST_NAME, entries.get(JarFile.MANIFEST_NAME))),
+                entries.entrySet().stream().filter(entry -> !entry.getKey().equals(JarFile.MANIFEST_NAME)));
+        long total = entries.values().stream().mapToLong(bytes -> bytes.length).sum();
+        if (level != STORED && total >= PARALLEL_THRESHOLD) {
+            stream = stream.parallel();
+        }
+        List<Entry> compressed = stream
+                .map(entry -> new Entry(entry.getKey(), entry.getValue(), level))
+                .collect(Collectors.toList());
+        try {
+            return ImplementorFileUtils.writeAtomically(jarFile, temporary -> write(temporary, compressed, jarFile));
+        } catch (IOException e) {
+            throw new ImplerException("Could not write to " + jarFile, e);
+        }
+    }
+
+    /**
+     * Writes compressed entries followed by central directory.
+     *
+     * @param file file to write.
+     * @param compressed compressed entries, manifest first.
+     * @param jarFile target <tt>.jar</tt> file, for error messages.
+     * @return size of written file in bytes.
+     * @throws IOException if writing fails.
+     * @throws ImplerException if file is too large.
+     */
+    private static long write(Path file, List<Entry> compressed, Path jarFile) throws IOException, ImplerException {
+        try (CountingOutputStream out = new CountingOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (Entry entry : compressed) {
+                writeEntry(out, entry);
+            }
+            return writeDirectory(out, compressed, jarFile);
+        }
+    }
+
+    /**
+     * Writes local header of an entry followed by its data.
+     *
+     * @param out {@link CountingOutputStream} to write to.
+     * @param entry {@link Entry} to write, its offset is set.
+     * @throws IOException if writing fails.
+     */
+    private static void writeEntry(CountingOutputStream out, Entry entry) throws IOException {
+        entry.offset = out.count;
+        writeLocalHeader(out, entry);
+        out.write(entry.data);
+    }
+
+    /**
+     * Writes central directory of written entries and its end record.
+     *
+     * @param out {@link CountingOutputStream} to write to.
+     * @param written entries already written, in order.
+     * @param jarFile target <tt>.jar</tt> file, for error messages.
+     * @return size of written file in bytes.
+     * @throws IOException if writing fails.
+     * @throws ImplerException if file is too large.
+     */
+    private static long writeDirectory(CountingOutputStream out, List<Entry> written, Path jarFile)
+            throws IOException, ImplerException {
+        long directory = out.count;
+        for (Entry entry : written) {
+            writeCentralHeader(out, entry);
+        }
+        long directorySize = out.count - directory;
+        if (directory + directorySize > MAX_SIZE) {
+            throw new ImplerException("Too large output for " + jarFile);
+        }
+        writeInt(out, 0x06054b50);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, written.size());
+        writeShort(out, written.size());
+        writeInt(out, directorySize);
+        writeInt(out, directory);
+        writeShort(out, 0);
+        return out.count;
+    }
+
+    /**
+     * Writes local file header of an entry.
+     *
+     * @param out {@link OutputStream} to write to.
+     * @param entry {@link Entry} to write header of.
+     * @throws IOException if writing fails.
+     */
+    private static void writeLocalHeader(OutputStream out, Entry entry) throws IOException {
+        writeInt(out, 0x04034b50);
+        writeShort(out, VERSION);
+        writeCommonFields(out, entry);
+        writeShort(out, 0);
+        out.write(entry.name);
+    }
+
+    /**
+     * Writes central directory header of an entry.
+     *
+     * @param out {@link OutputStream} to write to.
+     * @param entry {@link Entry} to write header of.
+     * @throws IOException if writing fails.
+     */
+    private static void writeCentralHeader(OutputStream out, Entry entry) throws IOException {
+        writeInt(out, 0x02014b50);
+        writeShort(out, VERSION);
+        writeShort(out, VERSION);
+        writeCommonFields(out, entry);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeInt(out, 0);
+        writeInt(out, entry.offset);
+        out.write(entry.name);
+    }
+
+    /**
+     * Writes fields shared by local and central headers: flags, method, time, checksum, sizes and name length.
+     *
+     * @param out {@link OutputStream} to write to.
+     * @param entry {@link Entry} to write fields of.
+     * @throws IOException if writing fails.
+     */
+    private static void writeCommonFields(OutputStream out, Entry entry) throws IOException {
+        writeShort(out, UTF8_FLAG);
+        writeShort(out, entry.method);
+        writeShort(out, DOS_TIME);
+        writeShort(out, DOS_DATE);
+        writeInt(out, entry.crc);
+        writeInt(out, entry.compressedSize);
+        writeInt(out, entry.size);
+        writeShort(out, entry.name.length);
+    }
+
+    /**
+     * Deflates bytes without zlib wrapper, as zip files require.
+     *
+     * @param bytes uncompressed data.
+     * @param level {@link Deflater} compression level.
+     * @return compressed data.
+     */
+    private static byte[] deflate(byte[] bytes, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes little-endian 16-bit value.
+     *
+     * @param out {@link OutputStream} to write to.
+     * @param value value to write.
+     * @throws IOException if writing fails.
+     */
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+    }
+
+    /**
+     * Writes little-endian 32-bit value.
+     *
+     * @param out {@link OutputStream} to write to.
+     * @param value value to write, only lower 32 bits are used.
+     * @throws IOException if writing fails.
+     */
+    private static void writeInt(OutputStream out, long value) throws IOException {
+        writeShort(out, (int) value);
+        writeShort(out, (int) (value >>> 16));
+    }
+
+    /**
+     * Writer appending entries to a file as they are added. Manifest is written first; entries follow in order
+     * they are added, so adding them in order of names gives the same file as {@link JarWriter#write(Path)}.
+     * Data of an entry is released once written, only headers are kept until {@link #finish()}.
+     */
+    static final class Output implements Closeable {
+        /**
+         * Compression level, {@link #STORED} or {@link Deflater} level.
+         */
+        private final int level;
+
+        /**
+         * Target <tt>.jar</tt> file, for error messages.
+         */
+        private final Path jarFile;
+
+        /**
+         * Stream of a written file.
+         */
+        private final CountingOutputStream out;
+
+        /**
+         * Entries written so far, without data.
+         */
+        private final List<Entry> written = new ArrayList<>();
+
+        /**
+         * Opens file and writes manifest.
+         *
+         * @param file file to write, usually a temporary one.
+         * @param level {@link #STORED}, {@link Deflater#DEFAULT_COMPRESSION} or level from
+         *              {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+         * @param jarFile target <tt>.jar</tt> file, for error messages.
+         * @throws IOException if file could not be opened or written.
+         */
+        Output(Path file, int level, Path jarFile) throws IOException {
+            this.level = checkLevel(level);
+            this.jarFile = jarFile;
+            this.out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            try {
+                write(new Entry(JarFile.MANIFEST_NAME, getManifest(), level));
+            } catch (IOException e) {
+                out.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Compresses and appends an entry.
+         *
+         * @param name path of an entry with <code>'/'</code> separators.
+         * @param bytes contents of an entry.
+         * @throws IOException if writing fails.
+         * @throws ImplerException if there are too many entries.
+         */
+        void add(String name, byte[] bytes) throws IOException, ImplerException {
+            if (written.size() >= MAX_ENTRIES) {
+                throw new ImplerException("Too many entries for " + jarFile + ": " + (written.size() + 1));
+            }
+            write(new Entry(name, bytes, level));
+        }
+
+        /**
+         * Writes an entry and releases its data.
+         *
+         * @param entry {@link Entry} to write.
+         * @throws IOException if writing fails.
+         */
+        private void write(Entry entry) throws IOException {
+            writeEntry(out, entry);
+            entry.data = null;
+            written.add(entry);
+        }
+
+        /**
+         * Writes central directory. Nothing should be added afterwards.
+         *
+         * @return size of written file in bytes.
+         * @throws IOException if writing fails.
+         * @throws ImplerException if file is too large.
+         */
+        long finish() throws IOException, ImplerException {
+            long size = writeDirectory(out, written, jarFile);
+            out.flush();
+            return size;
+        }
+
+        /**
+         * Closes file, finished or not.
+         *
+         * @throws IOException if closing fails.
+         */
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Stream counting bytes written, used to find offsets of headers.
+     */
+    private static class CountingOutputStream extends OutputStream {
+        /**
+         * Underlying stream.
+         */
+        private final OutputStream out;
+
+        /**
+         * Number of bytes written so far.
+         */
+        private long count;
+
+        /**
+         * Creates counting stream.
+         *
+         * @param out underlying {@link OutputStream}.
+         */
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        /**
+         * Writes one byte.
+         *
+         * @param b byte to write.
+         * @throws IOException if underlying stream fails.
+         */
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        /**
+         * Writes bytes from an array.
+         *
+         * @param b array of bytes.
+         * @param off offset of the first byte.
+         * @param len number of bytes.
+         * @throws IOException if underlying stream fails.
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        /**
+         * Flushes underlying stream.
+         *
+         * @throws IOException if underlying stream fails.
+         */
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        /**
+         * Closes underlying stream.
+         *
+         * @throws IOException if underlying stream fails.
+         */
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.GenericSignatureFormatError;
+import java.lang.reflect.MalformedParameterizedTypeException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of instance methods visible in a class or interface by their signatures. For every signature, that is
+ * a name with erased parameter types, the most specific method is kept. Indices are computed in a single pass
+ * over declared methods of a type reusing indices of its supertypes, and are memoized per {@link Class}, so
+ * shared supertypes are resolved only once.
+ * <p>
+ * Bridge methods are indexed too, so a bridge a generic supertype got from compiler shadows the erased abstract
+ * method it implements, like <code>compareTo(Object)</code> of {@link Comparable}. A bridge never replaces
+ * a method of the same signature declared in the same type.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class MethodIndex {
+
+    /**
+     * Memoized indices by types.
+     */
+    private static final ClassValue<MethodIndex> INDICES = new ClassValue<>() {
+        @Override
+        protected MethodIndex computeValue(Class<?> type) {
+            return new MethodIndex(type);
+        }
+    };
+
+    /**
+     * Method signature: name and erased parameter types.
+     */
+    static final class Signature {
+        /**
+         * Name of a method.
+         */
+        private final String name;
+
+        /**
+         * Erased parameter types of a method.
+         */
+        private final Class<?>[] parameters;
+
+        /**
+         * Precomputed hash code.
+         */
+        private final int hash;
+
+        /**
+         * Creates signature of a method.
+         *
+         * @param method {@link Method} to get signature of.
+         */
+        Signature(Method method) {
+            this(method.getName(), method.getParameterTypes());
+        }
+
+        /**
+         * Creates signature from its parts.
+         *
+         * @param name name of a method.
+         * @param parameters erased parameter types of a method.
+         */
+        private Signature(String name, Class<?>[] parameters) {
+            this.name = name;
+            this.parameters = parameters;
+            this.hash = 31 * name.hashCode() + Arrays.hashCode(parameters);
+        }
+
+        /**
+         * Compares signatures by name and parameter types.
+         *
+         * @param o other object.
+         * @return <code>true</code> if {@code o} is the same signature.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            Signature other = (Signature) o;
+            return hash == other.hash && name.equals(other.name) && Arrays.equals(parameters, other.parameters);
+        }
+
+        /**
+         * Gets hash code of a signature.
+         *
+         * @return precomputed hash code.
+         */
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Erased types of a method as a member of some type: type variables of generic supertypes are replaced with
+     * type arguments the type passes to them, so <code>id(T)</code> of <code>Gen&lt;T&gt;</code> is
+     * <code>id(String)</code> in a type extending <code>Gen&lt;String&gt;</code>. Type variables left unbound
+     * are erased to their first bounds.
+     */
+    static final class MemberType {
+        /**
+         * Name of a method.
+         */
+        private final String name;
+
+        /**
+         * Erased return type.
+         */
+        private final Class<?> returnType;
+
+        /**
+         * Erased parameter types.
+         */
+        private final Class<?>[] parameterTypes;
+
+        /**
+         * Erased exception types.
+         */
+        private final Class<?>[] exceptionTypes;
+
+        /**
+         * Creates member type.
+         *
+         * @param name name of a method.
+         * @param returnType erased return type.
+         * @param parameterTypes erased parameter types.
+         * @param exceptionTypes erased exception types.
+         */
+        private MemberType(String name, Class<?> returnType, Class<?>[] parameterTypes, Class<?>[] exceptionTypes) {
+            this.name = name;
+            this.returnType = returnType;
+            this.parameterTypes = parameterTypes;
+            this.exceptionTypes = exceptionTypes;
+        }
+
+        /**
+         * Gets type of a method as a member of a type. Declared erased types are used if generic signature
+         * of a method is malformed.
+         *
+         * @param method method of a type or its supertype.
+         * @param arguments type arguments of a type found by {@link #getTypeArguments(Class)}.
+         * @return {@link MemberType} of {@code method}.
+         */
+        static MemberType of(Method method, Map<TypeVariable<?>, Type> arguments) {
+            try {
+                return new MemberType(method.getName(), erase(method.getGenericReturnType(), arguments),
+                        erase(method.getGenericParameterTypes(), arguments),
+                        erase(method.getGenericExceptionTypes(), arguments));
+            } catch (TypeNotPresentException | MalformedParameterizedTypeException | GenericSignatureFormatError e) {
+                return new MemberType(method.getName(), method.getReturnType(), method.getParameterTypes(),
+                        method.getExceptionTypes());
+            }
+        }
+
+        /**
+         * Gets signature of a method as a member, which an implementing method has to have.
+         *
+         * @return {@link Signature} of name and parameter types.
+         */
+        Signature getSignature() {
+            return new Signature(name, parameterTypes);
+        }
+
+        /**
+         * Gets name of a method.
+         *
+         * @return method name.
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Gets erased return type.
+         *
+         * @return return type.
+         */
+        Class<?> getReturnType() {
+            return returnType;
+        }
+
+        /**
+         * Gets erased parameter types.
+         *
+         * @return parameter types.
+         */
+        Class<?>[] getParameterTypes() {
+            return parameterTypes.clone();
+        }
+
+        /**
+         * Gets erased exception types.
+         *
+         * @return exception types.
+         */
+        Class<?>[] getExceptionTypes() {
+            return exceptionTypes.clone();
+        }
+    }
+
+    /**
+     * Most specific methods by their signatures.
+     */
+    private final Map<Signature, Method> methods;
+
+    /**
+     * Computes index of a type. Declared methods go first, bridges only for signatures no other declared method
+     * has, then methods of superclass and superinterfaces are merged in with {@link #merge(Map, Map)}.
+     *
+     * @param type {@link Class} to compute index for.
+     */
+    private MethodIndex(Class<?> type) {
+        Map<Signature, Method> result = new LinkedHashMap<>();
+        for (Method method : type.getDeclaredMethods()) {
+            int modifiers = method.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isPrivate(modifiers)) {
+                continue;
+            }
+            if (method.isBridge()) {
+                result.putIfAbsent(new Signature(method), method);
+            } else {
+                result.put(new Signature(method), method);
+            }
+        }
+        if (type.getSuperclass() != null) {
+            merge(result, of(type.getSuperclass()).methods);
+        }
+        for (Class<?> superInterface : type.getInterfaces()) {
+            merge(result, of(superInterface).methods);
+        }
+        this.methods = Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Gets memoized index of a type.
+     *
+     * @param type {@link Class} to get index for.
+     * @return {@link MethodIndex} of a {@code type}.
+     */
+    static MethodIndex of(Class<?> type) {
+        return INDICES.get(type);
+    }
+
+    /**
+     * Finds methods an implementation of given class or interface has to declare. Implementations of interfaces
+     * extend {@link Object}, so its methods are taken into account. Package-private methods are returned only
+     * if they are declared in the package of {@code token}, as others can not be overridden.
+     *
+     * @param token type token to create implementation for.
+     * @return {@link List} of abstract methods, one per signature.
+     */
+    static List<Method> getAbstractMethods(Class<?> token) {
+        Map<Signature, Method> methods = of(token).methods;
+        if (token.isInterface()) {
+            methods = new LinkedHashMap<>(of(Object.class).methods);
+            merge(methods, of(token).methods);
+        }
+        List<Method> result = new ArrayList<>();
+        for (Method method : methods.values()) {
+            int modifiers = method.getModifiers();
+            if (Modifier.isAbstract(modifiers) && (Modifier.isPublic(modifiers) || Modifier.isProtected(modifiers)
+                    || method.getDeclaringClass().getPackageName().equals(token.getPackageName()))) {
+                result.add(method);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds methods a delegating implementation of given interface has to declare: every instance method
+     * visible in the interface, default ones included, so a target overriding them receives the calls, and
+     * overridable public methods of {@link Object}, as {@link java.lang.reflect.Proxy} does. Bridges are left
+     * to compiler.
+     *
+     * @param token interface to implement.
+     * @return {@link List} of methods, one per signature.
+     */
+    static List<Method> getInterfaceMethods(Class<?> token) {
+        Map<Signature, Method> methods = new LinkedHashMap<>();
+        of(Object.class).methods.forEach((signature, method) -> {
+            if (Modifier.isPublic(method.getModifiers()) && !Modifier.isFinal(method.getModifiers())) {
+                methods.put(signature, method);
+            }
+        });
+        merge(methods, of(token).methods);
+        List<Method> result = new ArrayList<>();
+        for (Method method : methods.values()) {
+            if (!method.isBridge()) {
+                result.add(method);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds erased return types of every instance method declared in a type or its supertypes, {@link Object}
+     * included, by signatures. A method implementing a signature overrides all of them, so for every return type
+     * other than its own an implementation needs a bridge method, as compiler emits.
+     *
+     * @param token type token to create implementation for.
+     * @return {@link Map} of distinct return types by signatures.
+     */
+    static Map<Signature, Set<Class<?>>> getReturnTypes(Class<?> token) {
+        Map<Signature, Set<Class<?>>> result = new HashMap<>();
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>(List.of(token, Object.class));
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            if (!visited.add(type)) {
+                continue;
+            }
+            for (Method method : type.getDeclaredMethods()) {
+                int modifiers = method.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isPrivate(modifiers)) {
+                    result.computeIfAbsent(new Signature(method), signature -> new LinkedHashSet<>())
+                            .add(method.getReturnType());
+                }
+            }
+            if (type.getSuperclass() != null) {
+                queue.add(type.getSuperclass());
+            }
+            queue.addAll(Arrays.asList(type.getInterfaces()));
+        }
+        return result;
+    }
+
+    /**
+     * Finds type arguments a type passes to type variables of its generic supertypes, directly or through other
+     * supertypes. Arguments may refer to type variables of subtypes, which are bound in the same map, or to type
+     * variables of {@code token} itself, which are not.
+     *
+     * @param token type to find arguments of.
+     * @return {@link Map} of type arguments by type variables; partial if some generic signature is malformed.
+     */
+    static Map<TypeVariable<?>, Type> getTypeArguments(Class<?> token) {
+        Map<TypeVariable<?>, Type> result = new HashMap<>();
+        Set<Class<?>> visited = new HashSet<>();
+        Deque<Class<?>> queue = new ArrayDeque<>(List.of(token));
+        while (!queue.isEmpty()) {
+            Class<?> type = queue.poll();
+            if (!visited.add(type)) {
+                continue;
+            }
+            try {
+                List<Type> supertypes = new ArrayList<>(List.of(type.getGenericInterfaces()));
+                if (type.getGenericSuperclass() != null) {
+                    supertypes.add(type.getGenericSuperclass());
+                }
+                for (Type supertype : supertypes) {
+                    if (supertype instanceof ParameterizedType) {
+                        ParameterizedType parameterized = (ParameterizedType) supertype;
+                        TypeVariable<?>[] variables = ((Class<?>) parameterized.getRawType()).getTypeParameters();
+                        Type[] actual = parameterized.getActualTypeArguments();
+                        for (int i = 0; i < variables.length; i++) {
+                            result.putIfAbsent(variables[i], actual[i]);
+                        }
+                    }
+                }
+            } catch (TypeNotPresentException | MalformedParameterizedTypeException | GenericSignatureFormatError e) {
+                // variables of this supertype stay unbound and are erased to their bounds
+            }
+            if (type.getSuperclass() != null) {
+                queue.add(type.getSuperclass());
+            }
+            queue.addAll(Arrays.asList(type.getInterfaces()));
+        }
+        return result;
+    }
+
+    /**
+     * Erases types with type variables replaced by their arguments.
+     *
+     * @param types reflected types.
+     * @param arguments type arguments found by {@link #getTypeArguments(Class)}.
+     * @return erasures of {@code types}.
+     */
+    private static Class<?>[] erase(Type[] types, Map<TypeVariable<?>, Type> arguments) {
+        Class<?>[] result = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            result[i] = erase(types[i], arguments);
+        }
+        return result;
+    }
+
+    /**
+     * Erases a type with type variables replaced by their arguments. Unbound type variables and wildcards
+     * are erased to their first upper bounds.
+     *
+     * @param type reflected type.
+     * @param arguments type arguments found by {@link #getTypeArguments(Class)}.
+     * @return erasure of {@code type}.
+     */
+    private static Class<?> erase(Type type, Map<TypeVariable<?>, Type> arguments) {
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        } else if (type instanceof GenericArrayType) {
+            Class<?> component = erase(((GenericArrayType) type).getGenericComponentType(), arguments);
+            return Array.newInstance(component, 0).getClass();
+        } else if (type instanceof WildcardType) {
+            return erase(((WildcardType) type).getUpperBounds()[0], arguments);
+        } else if (type instanceof TypeVariable) {
+            Type argument = arguments.get(type);
+            return erase(argument != null ? argument : ((TypeVariable<?>) type).getBounds()[0], arguments);
+        }
+        return (Class<?>) type;
+    }
+
+    /**
+     * Merges methods inherited from a supertype into methods of a subtype.
+     *
+     * @param target methods collected so far, updated in place.
+     * @param inherited methods of a supertype.
+     */
+    private static void merge(Map<Signature, Method> target, Map<Signature, Method> inherited) {
+        for (Map.Entry<Signature, Method> entry : inherited.entrySet()) {
+            target.merge(entry.getKey(), entry.getValue(), MethodIndex::moreSpecific);
+        }
+    }
+
+    /**
+     * Chooses which of two methods with the same signature is inherited. Methods of classes win over
+     * methods of interfaces unless they have weaker access. Among interface methods the one from
+     * a subinterface wins; for unrelated interfaces abstract methods win, as they still need implementation,
+     * and then the one with narrower return type.
+     *
+     * @param current method found so far.
+     * @param candidate method of another supertype.
+     * @return method to keep.
+     */
+    private static Method moreSpecific(Method current, Method candidate) {
+        Class<?> currentClass = current.getDeclaringClass();
+        Class<?> candidateClass = candidate.getDeclaringClass();
+        if (!currentClass.isInterface() || !candidateClass.isInterface()) {
+            if (currentClass.isInterface() != candidateClass.isInterface()) {
+                Method classMethod = currentClass.isInterface() ? candidate : current;
+                Method interfaceMethod = currentClass.isInterface() ? current : candidate;
+                return Modifier.isPublic(classMethod.getModifiers()) ? classMethod : interfaceMethod;
+            }
+            return current;
+        }
+        if (currentClass.isAssignableFrom(candidateClass)) {
+            return candidate;
+        } else if (candidateClass.isAssignableFrom(currentClass)) {
+            return current;
+        }
+        boolean currentAbstract = Modifier.isAbstract(current.getModifiers());
+        if (currentAbstract != Modifier.isAbstract(candidate.getModifiers())) {
+            return currentAbstract ? current : candidate;
+        }
+        return current.getReturnType().isAssignableFrom(candidate.getReturnType()) ? candidate : current;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coordinates concurrent requests of an {@link Implementor}. Identical requests running at the same time are
+ * coalesced: the first one generates output, others wait for it and share its outcome. Requests writing the same
+ * output are serialized with a lock per output path, so a generated file, its cache entry and its class data
+ * archive always come from one request.
+ * <p>
+ * Locks are shared by every instance in a process, as different implementors may write to the same output;
+ * they are dropped once no request holds or waits for them. Requests are coalesced per instance only, as
+ * outputs of differently configured implementors differ.
+ *
+ * @author sem
+ * @version 1.0
+ */
+final class OutputCoordinator {
+
+    /**
+     * Action producing output.
+     */
+    @FunctionalInterface
+    interface Action {
+        /**
+         * Produces output.
+         *
+         * @throws ImplerException if output could not be produced.
+         */
+        void run() throws ImplerException;
+    }
+
+    /**
+     * Lock of an output path with number of requests holding or waiting for it.
+     */
+    private static final class OutputLock {
+        /**
+         * Lock itself.
+         */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * Number of requests holding or waiting for this lock, guarded by {@link #LOCKS}.
+         */
+        private int users;
+    }
+
+    /**
+     * Locks by normalized absolute output paths.
+     */
+    private static final Map<Path, OutputLock> LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * Outcomes of requests in progress by their keys.
+     */
+    private final Map<List<?>, CompletableFuture<Void>> running = new ConcurrentHashMap<>();
+
+    /**
+     * Runs action under lock of an output, unless an identical request is in progress; then waits for it instead.
+     *
+     * @param key key of a request, equal for requests producing identical output.
+     * @param output path of produced file.
+     * @param action action producing output.
+     * @throws ImplerException if action or identical request in progress fails.
+     */
+    void run(List<?> key, Path output, Action action) throws ImplerException {
+        coalesce(key, output, () -> locked(output, action));
+    }
+
+    /**
+     * Runs action unless an identical request is in progress; then waits for it instead. Action is expected to
+     * lock outputs itself, when their paths are known.
+     *
+     * @param key key of a request, equal for requests producing identical output.
+     * @param output path of produced file or its root, for error messages.
+     * @param action action producing output.
+     * @throws ImplerException if action or identical request in progress fails.
+     */
+    void coalesce(List<?> key, Path output, Action action) throws ImplerException {
+        CompletableFuture<Void> outcome = new CompletableFuture<>();
+        CompletableFuture<Void> current = running.putIfAbsent(key, outcome);
+        if (current != null) {
+            await(current, output);
+            return;
+        }
+        try {
+            action.run();
+            outcome.complete(null);
+        } catch (ImplerException | RuntimeException | Error e) {
+            outcome.completeExceptionally(e);
+            throw e;
+        } finally {
+            running.remove(key, outcome);
+        }
+    }
+
+    /**
+     * Runs action holding lock of an output.
+     *
+     * @param output path of produced file.
+     * @param action action producing output.
+     * @throws ImplerException if action fails or waiting for lock is interrupted.
+     */
+    static void locked(Path output, Action action) throws ImplerException {
+        Path path = output.toAbsolutePath().normalize();
+        OutputLock outputLock = LOCKS.compute(path, (key, current) -> {
+            OutputLock result = current == null ? new OutputLock() : current;
+            result.users++;
+            return result;
+        });
+        try {
+            outputLock.lock.lockInterruptibly();
+            try {
+                action.run();
+            } finally {
+                outputLock.lock.unlock();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImplerException("Interrupted while waiting for " + output, e);
+        } finally {
+            LOCKS.compute(path, (key, current) -> --current.users == 0 ? null : current);
+        }
+    }
+
+    /**
+     * Waits for identical request in progress.
+     *
+     * @param outcome outcome of a request.
+     * @param output path of produced file.
+     * @throws ImplerException if request failed or waiting was interrupted.
+     */
+    private static void await(CompletableFuture<Void> outcome, Path output) throws ImplerException {
+        try {
+            outcome.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImplerException("Interrupted while waiting for " + output, e);
+        } catch (ExecutionException e) {
+            throw new ImplerException("Concurrent generation of " + output + " failed: "
+                    + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delegating proxy created by {@link Implementor#profile(Class, Object)} together with its counters. For every
+ * delegated method the proxy counts calls and their total time in nanoseconds. Counters are {@link LongAdder}s,
+ * so the proxy may be called from many threads without contention on a shared counter.
+ *
+ * @param <T> type of a proxied interface.
+ * @author sem
+ * @version 1.0
+ */
+public class ProfilingProxy<T> {
+
+    /**
+     * Proxy counting calls.
+     */
+    private final T proxy;
+
+    /**
+     * Delegated methods in the order of counters.
+     */
+    private final List<Method> methods;
+
+    /**
+     * Numbers of calls by indices of methods.
+     */
+    private final LongAdder[] calls;
+
+    /**
+     * Total times of calls in nanoseconds by indices of methods.
+     */
+    private final LongAdder[] nanos;
+
+    /**
+     * Creates profiling proxy.
+     *
+     * @param proxy proxy updating {@code calls} and {@code nanos}.
+     * @param methods delegated methods in the order of counters.
+     * @param calls numbers of calls.
+     * @param nanos total times of calls in nanoseconds.
+     */
+    ProfilingProxy(T proxy, List<Method> methods, LongAdder[] calls, LongAdder[] nanos) {
+        this.proxy = proxy;
+        this.methods = methods;
+        this.calls = calls;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Gets proxy counting calls.
+     *
+     * @return proxy delegating to the target.
+     */
+    public T getProxy() {
+        return proxy;
+    }
+
+    /**
+     * Gets delegated methods.
+     *
+     * @return unmodifiable {@link List} of methods, one per signature.
+     */
+    public List<Method> getMethods() {
+        return methods;
+    }
+
+    /**
+     * Gets number of calls of a method.
+     *
+     * @param method one of {@link #getMethods()}.
+     * @return number of calls since creation or last {@link #reset()}.
+     * @throws IllegalArgumentException if {@code method} is not delegated by proxy.
+     */
+    public long getCalls(Method method) {
+        return calls[indexOf(method)].sum();
+    }
+
+    /**
+     * Gets total time of calls of a method.
+     *
+     * @param method one of {@link #getMethods()}.
+     * @return time in nanoseconds since creation or last {@link #reset()}.
+     * @throws IllegalArgumentException if {@code method} is not delegated by proxy.
+     */
+    public long getNanos(Method method) {
+        return nanos[indexOf(method)].sum();
+    }
+
+    /**
+     * Resets all counters. Calls in progress may be counted either before or after reset.
+     */
+    public void reset() {
+        for (int i = 0; i < calls.length; i++) {
+            calls[i].reset();
+            nanos[i].reset();
+        }
+    }
+
+    /**
+     * Finds index of counters of a method.
+     *
+     * @param method delegated method.
+     * @return index of {@code method}.
+     * @throws IllegalArgumentException if {@code method} is not delegated by proxy.
+     */
+    private int indexOf(Method method) {
+        int index = methods.indexOf(method);
+        if (index < 0) {
+            throw new IllegalArgumentException("Method is not delegated: " + method);
+        }
+        return index;
+    }
+
+    /**
+     * Gets summary of called methods: number of calls and average time of a call.
+     *
+     * @return one line per method called at least once.
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < methods.size(); i++) {
+            long count = calls[i].sum();
+            if (count > 0) {
+                result.append(String.format("%-40s %10d calls %12d ns/call%n",
+                        methods.get(i).getName(), count, nanos[i].sum() / count));
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,251 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Defines delegating proxies in the running JVM and creates their instances. Proxy classes are generated by
+ * {@link Implementor#generateDelegate(Class, String, List, boolean)}, compiled by {@link InMemoryCompiler}
+ * and cached per token, one for plain delegates and one for profiling ones.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class ProxyImplementor {
+
+    /**
+     * {@link Implementor} generating sources.
+     */
+    private static final Implementor IMPLEMENTOR = new Implementor(ImplementorBackend.IN_MEMORY);
+
+    /**
+     * Sequence number making names of proxy classes unique.
+     */
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    /**
+     * Cached factories of plain delegates by implemented tokens.
+     */
+    private static final ClassValue<Factory> DELEGATES = new ClassValue<>() {
+        @Override
+        protected Factory computeValue(Class<?> token) {
+            return Factory.of(token, false);
+        }
+    };
+
+    /**
+     * Cached factories of profiling delegates by implemented tokens.
+     */
+    private static final ClassValue<Factory> PROFILERS = new ClassValue<>() {
+        @Override
+        protected Factory computeValue(Class<?> token) {
+            return Factory.of(token, true);
+        }
+    };
+
+    /**
+     * Factory of instances of a defined proxy class. Holds either a constructor of a proxy
+     * or an error happened while defining it.
+     */
+    private static class Factory {
+        /**
+         * Constructor of type <code>(Object)Object</code>, or <code>(Object, LongAdder[], LongAdder[])Object</code>
+         * for profiling proxies.
+         */
+        private final MethodHandle constructor;
+
+        /**
+         * Delegated methods in the order of counters.
+         */
+        private final List<Method> methods;
+
+        /**
+         * Error happened while defining proxy.
+         */
+        private final ImplerException error;
+
+        /**
+         * Creates factory.
+         *
+         * @param constructor constructor of a proxy, <code>null</code> if proxy could not be defined.
+         * @param methods delegated methods, <code>null</code> if proxy could not be defined.
+         * @param error error happened while defining proxy, <code>null</code> if there was none.
+         */
+        private Factory(MethodHandle constructor, List<Method> methods, ImplerException error) {
+            this.constructor = constructor;
+            this.methods = methods;
+            this.error = error;
+        }
+
+        /**
+         * Defines proxy class and creates its factory.
+         *
+         * @param token interface to implement.
+         * @param profile whether proxy counts calls.
+         * @return factory of proxies, or holding an error if proxy could not be defined.
+         */
+        static Factory of(Class<?> token, boolean profile) {
+            try {
+                List<Method> methods = Collections.unmodifiableList(IMPLEMENTOR.getDelegatedMethods(token));
+                return new Factory(defineProxy(token, methods, profile), methods, null);
+            } catch (ImplerException e) {
+                return new Factory(null, null, e);
+            }
+        }
+
+        /**
+         * Checks that proxy class was defined.
+         *
+         * @return this factory.
+         * @throws ImplerException if proxy could not be defined.
+         */
+        Factory check() throws ImplerException {
+            if (error != null) {
+                throw new ImplerException(error.getMessage(), error);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Creates new delegating proxy.
+     *
+     * @param token interface to implement.
+     * @param target instance receiving calls.
+     * @param <T> type of a token.
+     * @return new proxy.
+     * @throws ImplerException if {@code target} is not an instance of {@code token} or proxy could not be defined.
+     */
+    static <T> T delegate(Class<T> token, T target) throws ImplerException {
+        checkTarget(token, target);
+        Factory factory = DELEGATES.get(token).check();
+        try {
+            return token.cast((Object) factory.constructor.invokeExact((Object) target));
+        } catch (Throwable e) {
+            throw new ImplerException("Constructor of proxy failed: " + e, e);
+        }
+    }
+
+    /**
+     * Creates new profiling proxy with fresh counters.
+     *
+     * @param token interface to implement.
+     * @param target instance receiving calls.
+     * @param <T> type of a token.
+     * @return {@link ProfilingProxy} holding new proxy and its counters.
+     * @throws ImplerException if {@code target} is not an instance of {@code token} or proxy could not be defined.
+     */
+    static <T> ProfilingProxy<T> profile(Class<T> token, T target) throws ImplerException {
+        checkTarget(token, target);
+        Factory factory = PROFILERS.get(token).check();
+        LongAdder[] calls = newCounters(factory.methods.size());
+        LongAdder[] nanos = newCounters(factory.methods.size());
+        try {
+            T proxy = token.cast((Object) factory.constructor.invokeExact((Object) target, calls, nanos));
+            return new ProfilingProxy<>(proxy, factory.methods, calls, nanos);
+        } catch (Throwable e) {
+            throw new ImplerException("Constructor of proxy failed: " + e, e);
+        }
+    }
+
+    /**
+     * Checks that target implements proxied interface. Checked at runtime as tokens may be raw.
+     *
+     * @param token interface to implement.
+     * @param target instance receiving calls.
+     * @throws ImplerException if {@code target} is <code>null</code> or is not an instance of {@code token}.
+     */
+    private static void checkTarget(Class<?> token, Object target) throws ImplerException {
+        if (!token.isInstance(target)) {
+            throw new ImplerException("Target should be an instance of " + token.getName());
+        }
+    }
+
+    /**
+     * Creates array of zero counters.
+     *
+     * @param size number of counters.
+     * @return array of new {@link LongAdder}s.
+     */
+    private static LongAdder[] newCounters(int size) {
+        LongAdder[] counters = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    /**
+     * Generates, compiles and defines proxy class. Class is defined in the package of a token through
+     * {@link MethodHandles#privateLookupIn(Class, MethodHandles.Lookup)} if the package is open to this module,
+     * so package-private interfaces are supported; in a new {@link RuntimeImplementor.DefiningClassLoader}
+     * otherwise.
+     *
+     * @param token interface to implement.
+     * @param methods methods to delegate.
+     * @param profile whether proxy counts calls.
+     * @return constructor of a proxy adapted to the generic type of {@link Factory#constructor}.
+     * @throws ImplerException if proxy could not be compiled or defined.
+     */
+    private static MethodHandle defineProxy(Class<?> token, List<Method> methods,
+                                            boolean profile) throws ImplerException {
+        String simpleName = token.getSimpleName() + (profile ? "$Profiler" : "$Delegate")
+                + SEQUENCE.incrementAndGet();
+        String packageName = token.getPackageName();
+        MethodHandles.Lookup lookup;
+        try {
+            ProxyImplementor.class.getModule().addReads(token.getModule());
+            lookup = MethodHandles.privateLookupIn(token, MethodHandles.lookup());
+        } catch (IllegalAccessException | SecurityException e) {
+            lookup = null;
+            if (packageName.startsWith("java.")) {
+                packageName = "proxy." + packageName;
+            }
+        }
+        String name = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        CodeWriter code = IMPLEMENTOR.generateDelegate(token, name, methods, profile);
+        byte[] bytes = InMemoryCompiler.compile(Map.of(name, code.getCode()), getClasspath(token))
+                .get(name.replace('.', '/') + ".class");
+        try {
+            Class<?> proxy;
+            if (lookup != null) {
+                proxy = lookup.defineClass(bytes);
+            } else {
+                proxy = new RuntimeImplementor.DefiningClassLoader(token.getClassLoader()).define(name, bytes);
+                ProxyImplementor.class.getModule().addReads(proxy.getModule());
+                lookup = MethodHandles.lookup();
+            }
+            MethodType type = profile
+                    ? MethodType.methodType(void.class, token, LongAdder[].class, LongAdder[].class)
+                    : MethodType.methodType(void.class, token);
+            return lookup.findConstructor(proxy, type)
+                    .asType(type.changeReturnType(Object.class).changeParameterType(0, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ImplerException("Can not access constructor of proxy: " + e.getMessage(), e);
+        } catch (LinkageError | SecurityException e) {
+            throw new ImplerException("Can not define proxy: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Collects classpath needed to compile proxy: locations of an interface, its supertypes and types
+     * in signatures of their methods, found by {@link ClasspathIndex}.
+     *
+     * @param token interface to implement.
+     * @return classpath entries.
+     * @throws ImplerException if location of some type could not be converted to a path.
+     */
+    private static Set<String> getClasspath(Class<?> token) throws ImplerException {
+        return ClasspathIndex.EMPTY.getClasspath(List.of(token));
+    }
+}
@@ -0,0 +1,350 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Defines implementations in the running JVM and creates their instances. Class files are emitted by
+ * {@link BytecodeGenerator}, so neither files nor compiler are involved. Defined classes are cached per token.
+ * <p>
+ * Functional interfaces accessible to this module take a faster path: {@link LambdaMetafactory} spins
+ * the implementation, as for a lambda expression, so neither scanning for constructors nor bytecode generation
+ * is needed. Its method is one of shared <code>constant</code> methods returning captured default value.
+ *
+ * @author sem
+ * @version 1.0
+ */
+class RuntimeImplementor {
+
+    /**
+     * Suffix appended to implementation name so defined classes do not clash with generated <code>.jar</code>s.
+     */
+    private static final String SUFFIX = "$Runtime";
+
+    /**
+     * Sequence number making names of defined classes unique, so threads racing to define an implementation
+     * of the same token do not clash; {@link ClassValue} keeps one of them.
+     */
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    /**
+     * {@link Implementor} emitting class files.
+     */
+    private static final Implementor IMPLEMENTOR = new Implementor(ImplementorBackend.BYTECODE);
+
+    /**
+     * Largest number of parameters of a functional interface method implemented by {@link LambdaMetafactory},
+     * there is a <code>constant</code> method for every number up to it.
+     */
+    private static final int MAX_FUNCTIONAL_PARAMETERS = 5;
+
+    /**
+     * Cached factories by implemented tokens.
+     */
+    private static final ClassValue<Factory> FACTORIES = new ClassValue<>() {
+        @Override
+        protected Factory computeValue(Class<?> token) {
+            try {
+                MethodHandle functional = getFunctionalFactory(token);
+                return new Factory(functional != null ? functional : defineImplementation(token), null);
+            } catch (ImplerException e) {
+                return new Factory(null, e);
+            }
+        }
+    };
+
+    /**
+     * Factory of instances of a defined implementation. Holds either a constructor of an implementation
+     * or an error happened while defining it.
+     */
+    private static class Factory {
+        /**
+         * Constructor with default arguments bound, of type <code>()Object</code>.
+         */
+        private final MethodHandle constructor;
+
+        /**
+         * Error happened while defining implementation.
+         */
+        private final ImplerException error;
+
+        /**
+         * Creates factory.
+         *
+         * @param constructor bound constructor, <code>null</code> if implementation could not be defined.
+         * @param error error happened while defining implementation, <code>null</code> if there was none.
+         */
+        Factory(MethodHandle constructor, ImplerException error) {
+            this.constructor = constructor;
+            this.error = error;
+        }
+
+        /**
+         * Creates new instance of an implementation.
+         *
+         * @return new instance.
+         * @throws ImplerException if implementation could not be defined or its constructor failed.
+         */
+        Object newInstance() throws ImplerException {
+            if (error != null) {
+                throw new ImplerException(error.getMessage(), error);
+            }
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (Throwable e) {
+                throw new ImplerException("Constructor of implementation failed: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Class loader used to define implementation when package of a token is not open to this module.
+     */
+    static class DefiningClassLoader extends ClassLoader {
+        /**
+         * Creates loader delegating to a loader of implemented token.
+         *
+         * @param parent {@link ClassLoader} of implemented token.
+         */
+        DefiningClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        /**
+         * Defines class from bytes.
+         *
+         * @param name binary name of a class.
+         * @param bytes class file.
+         * @return defined {@link Class}.
+         */
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Creates new instance of an implementation of given class or interface. Implementation is defined on
+     * the first call for a token and reused afterwards.
+     *
+     * @param token type token to create implementation for.
+     * @param <T> type of a token.
+     * @return new instance of implementation.
+     * @throws ImplerException if implementation could not be defined or instantiated.
+     */
+    static <T> T instantiate(Class<T> token) throws ImplerException {
+        return token.cast(FACTORIES.get(token).newInstance());
+    }
+
+    /**
+     * Creates factory of functional interface instances with {@link LambdaMetafactory}. Interface should have
+     * exactly one abstract method with at most {@link #MAX_FUNCTIONAL_PARAMETERS} parameters and be public
+     * and exported to this module, as the implementation is defined here. Methods of supertypes the method
+     * overrides with a narrower return type get bridges, as {@link BytecodeGenerator} emits them.
+     *
+     * @param token type token to create implementation for.
+     * @return factory of type <code>()Object</code>, <code>null</code> if fast path is not applicable.
+     */
+    private static MethodHandle getFunctionalFactory(Class<?> token) {
+        Module module = RuntimeImplementor.class.getModule();
+        if (!token.isInterface() || token.isAnnotation() || !Modifier.isPublic(token.getModifiers())
+                || !token.getModule().isExported(token.getPackageName(), module)) {
+            return null;
+        }
+        List<Method> methods = MethodIndex.getAbstractMethods(token);
+        if (methods.size() != 1 || methods.get(0).getParameterCount() > MAX_FUNCTIONAL_PARAMETERS) {
+            return null;
+        }
+        Method method = methods.get(0);
+        try {
+            module.addReads(token.getModule());
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle constant = lookup.findStatic(RuntimeImplementor.class, "constant",
+                    MethodType.genericMethodType(method.getParameterCount() + 1));
+            MethodType type = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+            List<Object> arguments = new ArrayList<>(List.of(type, constant, type, LambdaMetafactory.FLAG_BRIDGES));
+            List<MethodType> bridges = getBridges(token, method);
+            arguments.add(bridges.size());
+            arguments.addAll(bridges);
+            CallSite site = LambdaMetafactory.altMetafactory(lookup, method.getName(),
+                    MethodType.methodType(token, Object.class), arguments.toArray());
+            return MethodHandles.insertArguments(site.getTarget(), 0, getDefaultValue(method.getReturnType()))
+                    .asType(MethodType.methodType(Object.class));
+        } catch (LambdaConversionException | ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds bridges an implementation of a functional interface method needs: one for every wider return type
+     * of methods with its signature in supertypes, see {@link MethodIndex#getReturnTypes(Class)}.
+     *
+     * @param token implemented interface.
+     * @param method its only abstract method.
+     * @return types of bridge methods.
+     */
+    private static List<MethodType> getBridges(Class<?> token, Method method) {
+        List<MethodType> bridges = new ArrayList<>();
+        for (Class<?> returnType : MethodIndex.getReturnTypes(token).get(new MethodIndex.Signature(method))) {
+            if (returnType != method.getReturnType() && returnType.isAssignableFrom(method.getReturnType())) {
+                bridges.add(MethodType.methodType(returnType, method.getParameterTypes()));
+            }
+        }
+        return bridges;
+    }
+
+    /**
+     * Implementation of functional interface methods without parameters.
+     *
+     * @param value captured default value.
+     * @return {@code value}.
+     */
+    private static Object constant(Object value) {
+        return value;
+    }
+
+    /**
+     * Implementation of functional interface methods with one parameter.
+     *
+     * @param value captured default value.
+     * @param a ignored argument.
+     * @return {@code value}.
+     */
+    private static Object constant(Object value, Object a) {
+        return value;
+    }
+
+    /**
+     * Implementation of functional interface methods with two parameters.
+     *
+     * @param value captured default value.
+     * @param a ignored argument.
+     * @param b ignored argument.
+     * @return {@code value}.
+     */
+    private static Object constant(Object value, Object a, Object b) {
+        return value;
+    }
+
+    /**
+     * Implementation of functional interface methods with three parameters.
+     *
+     * @param value captured default value.
+     * @param a ignored argument.
+     * @param b ignored argument.
+     * @param c ignored argument.
+     * @return {@code value}.
+     */
+    private static Object constant(Object value, Object a, Object b, Object c) {
+        return value;
+    }
+
+    /**
+     * Implementation of functional interface methods with four parameters.
+     *
+     * @param value captured default value.
+     * @param a ignored argument.
+     * @param b ignored argument.
+     * @param c ignored argument.
+     * @param d ignored argument.
+     * @return {@code value}.
+     */
+    private static Object constant(Object value, Object a, Object b, Object c, Object d) {
+        return value;
+    }
+
+    /**
+     * Implementation of functional interface methods with five parameters.
+     *
+     * @param value captured default value.
+     * @param a ignored argument.
+     * @param b ignored argument.
+     * @param c ignored argument.
+     * @param d ignored argument.
+     * @param e ignored argument.
+     * @return {@code value}.
+     */
+    private static Object constant(Object value, Object a, Object b, Object c, Object d, Object e) {
+        return value;
+    }
+
+    /**
+     * Defines implementation of a token and finds its constructor with the least number of parameters.
+     *
+     * @param token type token to create implementation for.
+     * @return constructor of type <code>()Object</code> passing default values as arguments.
+     * @throws ImplerException if implementation could not be generated or defined.
+     */
+    private static MethodHandle defineImplementation(Class<?> token) throws ImplerException {
+        Class<?> implementation = defineClass(token);
+        Constructor<?> constructor = Arrays.stream(implementation.getDeclaredConstructors())
+                .min(Comparator.comparingInt(Constructor::getParameterCount))
+                .orElseThrow(() -> new ImplerException("Implementation has no constructors"));
+        Object[] arguments = Arrays.stream(constructor.getParameterTypes())
+                .map(RuntimeImplementor::getDefaultValue)
+                .toArray();
+        try {
+            constructor.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectConstructor(constructor);
+            return MethodHandles.insertArguments(handle, 0, arguments)
+                    .asType(MethodType.methodType(Object.class));
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new ImplerException("Can not access constructor of implementation: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Defines implementation class under a unique name. Class is defined in the package of a token through
+     * {@link MethodHandles#privateLookupIn(Class, MethodHandles.Lookup)} if the package is open to this module,
+     * in a new {@link DefiningClassLoader} otherwise.
+     *
+     * @param token type token to create implementation for.
+     * @return defined implementation.
+     * @throws ImplerException if implementation could not be generated or defined.
+     */
+    private static Class<?> defineClass(Class<?> token) throws ImplerException {
+        String simpleName = token.getSimpleName() + "Impl" + SUFFIX + SEQUENCE.incrementAndGet();
+        String name = token.getPackageName().isEmpty() ? simpleName : token.getPackageName() + "." + simpleName;
+        try {
+            RuntimeImplementor.class.getModule().addReads(token.getModule());
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(token, MethodHandles.lookup());
+            return lookup.defineClass(IMPLEMENTOR.generateBytecode(token, name));
+        } catch (IllegalAccessException e) {
+            if (name.startsWith("java.")) {
+                name = "runtime." + name;
+            }
+            try {
+                return new DefiningClassLoader(token.getClassLoader())
+                        .define(name, IMPLEMENTOR.generateBytecode(token, name));
+            } catch (LinkageError | SecurityException ex) {
+                throw new ImplerException("Can not define implementation: " + ex.getMessage(), ex);
+            }
+        } catch (LinkageError | SecurityException e) {
+            throw new ImplerException("Can not define implementation: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets default value of given type.
+     *
+     * @param type {@link Class} of a value.
+     * @return <code>null</code> for references and <code>void</code>, zero or <code>false</code> for primitives.
+     */
+    private static Object getDefaultValue(Class<?> type) {
+        return type.isPrimitive() && type != void.class ? Array.get(Array.newInstance(type, 1), 0) : null;
+    }
+}
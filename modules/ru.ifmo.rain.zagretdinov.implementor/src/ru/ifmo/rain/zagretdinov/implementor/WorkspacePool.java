@@ -0,0 +1,234 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of temporary directories under a scratch root, used by {@link Implementor} to compile generated
+ * sources. A released workspace is cleared by a background thread and handed out again, so callers neither
+ * create nor delete directories; up to a number of processors of cleared workspaces are kept, others are deleted.
+ * Scratch root may be any directory, for example <code>/dev/shm</code> to keep sources and classes in memory.
+ * <p>
+ * Workspaces are named <code>implementor-&lt;pid&gt;-&lt;n&gt;</code> by the owning process. Idle ones are
+ * deleted at exit; the first use of a root in a process sweeps workspaces left by processes which are gone,
+ * for example crashed ones. Only workspaces not modified for {@link #ORPHAN_AGE} are swept, as a process of
+ * another pid namespace sharing the root may look dead while it still works.
+ *
+ * @author sem
+ * @version 1.0
+ */
+final class WorkspacePool {
+
+    /**
+     * Scratch root used unless another one is configured: the system temporary directory.
+     */
+    static final Path DEFAULT_ROOT = Path.of(System.getProperty("java.io.tmpdir"));
+
+    /**
+     * Prefix of workspace names.
+     */
+    private static final String PREFIX = "implementor-";
+
+    /**
+     * Time after which a workspace of a process which is gone is swept.
+     */
+    private static final Duration ORPHAN_AGE = Duration.ofMinutes(10);
+
+    /**
+     * Number of cleared workspaces kept per root.
+     */
+    private static final int MAX_IDLE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Pid of this process.
+     */
+    private static final long PID = ProcessHandle.current().pid();
+
+    /**
+     * Number of the last created workspace.
+     */
+    private static final AtomicLong COUNTER = new AtomicLong();
+
+    /**
+     * Pools by normalized absolute scratch roots.
+     */
+    private static final Map<Path, WorkspacePool> POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * Background thread clearing released workspaces and sweeping orphans.
+     */
+    private static final ExecutorService CLEANER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "implementor-workspace-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> POOLS.values().forEach(WorkspacePool::deleteIdle)));
+    }
+
+    /**
+     * Scratch root of this pool.
+     */
+    private final Path root;
+
+    /**
+     * Cleared workspaces ready to be handed out.
+     */
+    private final BlockingQueue<Path> idle = new ArrayBlockingQueue<>(MAX_IDLE);
+
+    /**
+     * Creates pool and schedules sweep of orphaned workspaces.
+     *
+     * @param root normalized absolute scratch root.
+     */
+    private WorkspacePool(Path root) {
+        this.root = root;
+        CLEANER.execute(this::sweep);
+    }
+
+    /**
+     * Gets pool of a scratch root, creating the root if needed.
+     *
+     * @param root scratch root.
+     * @return {@link WorkspacePool} shared by every implementor of this process using {@code root}.
+     * @throws ImplerException if scratch root could not be created.
+     */
+    static WorkspacePool get(Path root) throws ImplerException {
+        Path absolute = root.toAbsolutePath().normalize();
+        WorkspacePool pool = POOLS.get(absolute);
+        if (pool != null) {
+            return pool;
+        }
+        try {
+            Files.createDirectories(absolute);
+        } catch (IOException e) {
+            throw new ImplerException("Unable to create scratch root " + root + ": " + e.getMessage(), e);
+        }
+        return POOLS.computeIfAbsent(absolute, WorkspacePool::new);
+    }
+
+    /**
+     * Hands out an empty workspace: a cleared one if there is any, a new one otherwise.
+     *
+     * @return {@link Path} of an empty directory owned by the caller until {@link #release(Path) released}.
+     * @throws ImplerException if workspace could not be created.
+     */
+    Path acquire() throws ImplerException {
+        Path workspace = idle.poll();
+        while (workspace != null && !Files.isDirectory(workspace)) {
+            workspace = idle.poll();
+        }
+        if (workspace != null) {
+            return workspace;
+        }
+        try {
+            while (true) {
+                try {
+                    return Files.createDirectory(root.resolve(PREFIX + PID + "-" + COUNTER.incrementAndGet()));
+                } catch (FileAlreadyExistsException ignored) {
+                    // left by an earlier process with the same pid
+                }
+            }
+        } catch (IOException e) {
+            throw new ImplerException("Unable to create temporary directory: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns workspace to the pool. It is cleared in background, the caller should not touch it afterwards.
+     *
+     * @param workspace {@link Path} returned by {@link #acquire()}.
+     */
+    void release(Path workspace) {
+        CLEANER.execute(() -> recycle(workspace));
+    }
+
+    /**
+     * Clears workspace and makes it idle, or deletes it if there are enough idle ones or clearing fails.
+     *
+     * @param workspace released workspace.
+     */
+    private void recycle(Path workspace) {
+        try {
+            ImplementorFileUtils.deleteContents(workspace);
+            if (!idle.offer(workspace)) {
+                Files.delete(workspace);
+            }
+        } catch (IOException e) {
+            try {
+                ImplementorFileUtils.delete(workspace);
+            } catch (IOException ignored) {
+                // swept by a later process
+            }
+        }
+    }
+
+    /**
+     * Deletes workspaces of processes which are gone, if they are not modified for {@link #ORPHAN_AGE}.
+     */
+    private void sweep() {
+        FileTime threshold = FileTime.from(Instant.now().minus(ORPHAN_AGE));
+        try (DirectoryStream<Path> workspaces = Files.newDirectoryStream(root, PREFIX + "*")) {
+            for (Path workspace : workspaces) {
+                long owner = getOwner(workspace);
+                if (owner < 0 || owner == PID || ProcessHandle.of(owner).map(ProcessHandle::isAlive).orElse(false)) {
+                    continue;
+                }
+                try {
+                    if (Files.getLastModifiedTime(workspace).compareTo(threshold) < 0) {
+                        ImplementorFileUtils.delete(workspace);
+                    }
+                } catch (IOException ignored) {
+                    // deleted concurrently or not ours to delete
+                }
+            }
+        } catch (IOException ignored) {
+            // root is not readable, nothing to sweep
+        }
+    }
+
+    /**
+     * Gets pid of a process which created a workspace.
+     *
+     * @param workspace {@link Path} of a workspace.
+     * @return pid from its name, <code>-1</code> if name is not a workspace name.
+     */
+    private static long getOwner(Path workspace) {
+        String name = workspace.getFileName().toString();
+        int end = name.indexOf('-', PREFIX.length());
+        try {
+            return end < 0 ? -1 : Long.parseLong(name.substring(PREFIX.length(), end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Deletes idle workspaces, called at exit. Workspaces being cleared at the moment are left to be swept.
+     */
+    private void deleteIdle() {
+        for (Path workspace = idle.poll(); workspace != null; workspace = idle.poll()) {
+            try {
+                Files.deleteIfExists(workspace);
+            } catch (IOException ignored) {
+                // swept by a later process
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests of {@link AsyncImplementor}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class AsyncImplementorTest {
+
+    /**
+     * Time in seconds to wait for a request.
+     */
+    private static final int TIMEOUT = 30;
+
+    /**
+     * Output directory.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that a request failing with an {@link Error} completes its future and releases its permit,
+     * so the next request is serviced.
+     *
+     * @throws Exception if a request fails unexpectedly.
+     */
+    @Test
+    public void testError() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Implementor implementor = new Implementor().setListener(new ImplementorListener() {
+            @Override
+            public void phaseCompleted(ImplementorPhase phase, String className, int methods, long bytes,
+                                       long nanos) {
+                if (className.equals(Runnable.class.getName())) {
+                    throw new StackOverflowError();
+                }
+            }
+        });
+        try (AsyncImplementor async = new AsyncImplementor(implementor, 1, 0, AsyncImplementor.Overflow.REJECT)) {
+            try {
+                async.implementAsync(Runnable.class, root).get(TIMEOUT, TimeUnit.SECONDS);
+                Assert.fail("Request should fail");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof StackOverflowError);
+            }
+            async.implementAsync(Comparable.class, root).get(TIMEOUT, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests of {@link BytecodeGenerator}: emitted classes should have the members compiler produces from sources.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class BytecodeGeneratorTest {
+
+    /**
+     * Interface with a method returning {@link Object}.
+     */
+    public interface ObjectSupplier {
+        /**
+         * Method overridden with narrower return type.
+         *
+         * @return anything.
+         */
+        Object get();
+    }
+
+    /**
+     * Interface with a method of the same signature returning {@link String}.
+     */
+    public interface StringSupplier {
+        /**
+         * Method with narrower return type.
+         *
+         * @return a string.
+         */
+        String get();
+    }
+
+    /**
+     * Interface inheriting both methods, implementation needs a bridge.
+     */
+    public interface BothSuppliers extends ObjectSupplier, StringSupplier {
+    }
+
+    /**
+     * Abstract class inheriting both methods, implementation needs a bridge.
+     */
+    public abstract static class AbstractSuppliers implements ObjectSupplier, StringSupplier {
+    }
+
+    /**
+     * Directory for generated <code>.jar</code> files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that a method overriding methods with different return types is reachable through every
+     * supertype, and that the emitted class has the same methods compiled one has.
+     *
+     * @throws Exception if implementation could not be built or instantiated.
+     */
+    @Test
+    public void testCovariantReturnBridges() throws Exception {
+        for (Class<?> token : new Class<?>[]{BothSuppliers.class, AbstractSuppliers.class}) {
+            Class<?> emitted = ImplementorTestUtils.load(ImplementorBackend.BYTECODE, token, folder.getRoot().toPath());
+            Class<?> compiled = ImplementorTestUtils.load(ImplementorBackend.IN_MEMORY, token,
+                    folder.getRoot().toPath());
+            Assert.assertEquals(token.getSimpleName(), ImplementorTestUtils.describeMethods(compiled),
+                    ImplementorTestUtils.describeMethods(emitted));
+            Object instance = emitted.getConstructor().newInstance();
+            Assert.assertNull(((ObjectSupplier) instance).get());
+            Assert.assertNull(((StringSupplier) instance).get());
+        }
+    }
+}
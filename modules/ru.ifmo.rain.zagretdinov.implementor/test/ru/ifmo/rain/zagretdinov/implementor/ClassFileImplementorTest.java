@@ -0,0 +1,133 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import ru.ifmo.rain.zagretdinov.implementor.MethodIndexTest.ComparableClass;
+import ru.ifmo.rain.zagretdinov.implementor.MethodIndexTest.ComparableInterface;
+import ru.ifmo.rain.zagretdinov.implementor.MethodIndexTest.ComparedClass;
+
+/**
+ * Tests of {@link Implementor#implement(Path, String, Path)} and
+ * {@link Implementor#implementJar(Path, java.util.Collection, Path)} reading class files.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ClassFileImplementorTest {
+
+    /**
+     * Annotation interface, which can not be implemented.
+     */
+    public @interface Marker {
+    }
+
+    /**
+     * Input and output directories.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that methods of generic supertypes implemented through bridges are implemented once,
+     * with their own types, as {@link MethodIndexTest#testComparable()} checks for loaded classes.
+     *
+     * @throws Exception if implementation could not be built or instantiated.
+     */
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void testComparable() throws Exception {
+        Path jarFile = folder.getRoot().toPath().resolve("comparable.jar");
+        List<Class<?>> tokens = List.of(ComparableInterface.class, ComparableClass.class, ComparedClass.class);
+        new Implementor().implementJar(getClasses(),
+                tokens.stream().map(Class::getName).collect(Collectors.toList()), jarFile);
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{jarFile.toUri().toURL()},
+                getClass().getClassLoader())) {
+            for (Class<?> token : tokens) {
+                Comparable instance = (Comparable) loader.loadClass(token.getPackageName() + "."
+                        + token.getSimpleName() + "Impl").getConstructor().newInstance();
+                int expected = token == ComparedClass.class ? ComparedClass.RESULT : 0;
+                Assert.assertEquals(token.getSimpleName(), expected, instance.compareTo(instance));
+            }
+        }
+    }
+
+    /**
+     * Checks that annotations, synthetic classes, <code>package-info</code> and <code>module-info</code>
+     * are rejected.
+     *
+     * @throws Exception if class files could not be written.
+     */
+    @Test
+    public void testUnsupported() throws Exception {
+        Path input = folder.newFolder("input").toPath();
+        Path output = folder.newFolder("output").toPath();
+        ImplementorTestUtils.writeClassFile(input, "pkg/Synthetic",
+                Modifier.PUBLIC | Modifier.ABSTRACT | ClassFileModel.SYNTHETIC);
+        ImplementorTestUtils.writeClassFile(input, "pkg/package-info", ClassFileModel.INTERFACE | Modifier.ABSTRACT);
+        ImplementorTestUtils.writeClassFile(input, "module-info", ClassFileModel.MODULE);
+        assertRejected(getClasses(), Marker.class.getName(), output);
+        for (String className : List.of("pkg.Synthetic", "pkg.package-info", "module-info")) {
+            assertRejected(input, className, output);
+        }
+    }
+
+    /**
+     * Checks that options needing loaded classes are rejected with <code>--input</code> instead of being
+     * ignored, so nothing is written.
+     *
+     * @throws Exception if input could not be located.
+     */
+    @Test
+    public void testLoadedOnlyOptions() throws Exception {
+        Path jarFile = folder.getRoot().toPath().resolve("options.jar");
+        String input = getClasses().toString();
+        String token = ComparableInterface.class.getName();
+        for (List<String> options : List.of(List.of("--cds"), List.of("--cache", folder.getRoot().toString()),
+                List.of("--classpath", input))) {
+            List<String> args = new ArrayList<>(options);
+            args.addAll(List.of("--input", input, "-jar", token, jarFile.toString()));
+            Implementor.main(args.toArray(String[]::new));
+            Assert.assertFalse(options.get(0), Files.exists(jarFile));
+        }
+    }
+
+    /**
+     * Gets directory of compiled tests.
+     *
+     * @return location of this class.
+     * @throws URISyntaxException if location is not a valid {@link java.net.URI}.
+     */
+    private Path getClasses() throws URISyntaxException {
+        return Path.of(getClass().getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    /**
+     * Checks that a class read from class files is not implemented.
+     *
+     * @param input directory of class files.
+     * @param className binary name of a class.
+     * @param output root directory of generated sources.
+     */
+    private static void assertRejected(Path input, String className, Path output) {
+        try {
+            new Implementor().implement(input, className, output);
+            Assert.fail(className + " should be rejected");
+        } catch (ImplerException e) {
+            // expected
+        }
+    }
+}
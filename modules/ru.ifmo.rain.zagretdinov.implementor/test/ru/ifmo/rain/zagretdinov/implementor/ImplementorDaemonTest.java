@@ -0,0 +1,160 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+/**
+ * Tests of {@link ImplementorDaemon} and {@link ImplementorClient}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ImplementorDaemonTest {
+
+    /**
+     * Time in milliseconds to wait for a reply, longer than read timeout of a daemon.
+     */
+    private static final int REPLY_TIMEOUT = 30_000;
+
+    /**
+     * Home and output directories.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Home directory before the test.
+     */
+    private String home;
+
+    /**
+     * Daemon under test, with one thread.
+     */
+    private ImplementorDaemon daemon;
+
+    /**
+     * Starts daemon with home directory in a temporary folder.
+     *
+     * @throws IOException if daemon could not be started.
+     */
+    @Before
+    public void setUp() throws IOException {
+        home = System.getProperty("user.home");
+        System.setProperty("user.home", folder.newFolder("home").toString());
+        daemon = new ImplementorDaemon(0, 1, 1, null);
+        Thread thread = new Thread(daemon::run);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops daemon and restores home directory.
+     */
+    @After
+    public void tearDown() {
+        daemon.close();
+        System.setProperty("user.home", home);
+    }
+
+    /**
+     * Checks that secret is readable by owner only and a client knowing it is served.
+     *
+     * @throws Exception if request fails.
+     */
+    @Test
+    public void testAuthorized() throws Exception {
+        Path secretFile = ImplementorDaemon.getSecretFile(daemon.getPort());
+        Assert.assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(secretFile)));
+        Path output = folder.newFolder("output").toPath();
+        new ImplementorClient(daemon.getPort()).send(output, List.of(Runnable.class.getName(), "."));
+        Assert.assertTrue(Files.isRegularFile(output.resolve("java/lang/RunnableImpl.java")));
+    }
+
+    /**
+     * Checks that a request with wrong secret is rejected before anything is written.
+     *
+     * @throws Exception if daemon could not be reached.
+     */
+    @Test
+    public void testUnauthorized() throws Exception {
+        Path output = folder.newFolder("output").toPath();
+        Assert.assertEquals(ImplementorDaemon.UNAUTHORIZED,
+                send("wrong", output.toString(), Runnable.class.getName(), "."));
+        Assert.assertFalse(Files.exists(output.resolve("java")));
+    }
+
+    /**
+     * Checks that options of {@link Implementor#main(String[])} not supported by a daemon are rejected
+     * instead of being taken for class names.
+     *
+     * @throws Exception if daemon could not be reached.
+     */
+    @Test
+    public void testUnsupportedOptions() throws Exception {
+        String secret = Files.readString(ImplementorDaemon.getSecretFile(daemon.getPort()));
+        Path output = folder.newFolder("output").toPath();
+        for (String option : List.of("--compression", "--cache", "--input", "--scratch", "--classpath")) {
+            Assert.assertEquals(option, ImplementorDaemon.FAILED,
+                    send(secret, output.toString(), option, "value", Runnable.class.getName(), "."));
+        }
+        Assert.assertEquals(ImplementorDaemon.FAILED,
+                send(secret, output.toString(), "--cds", "-jar", Runnable.class.getName(), "runnable.jar"));
+        Assert.assertFalse(Files.exists(output.resolve("java")));
+        Assert.assertFalse(Files.exists(output.resolve("runnable.jar")));
+    }
+
+    /**
+     * Checks that an idle connection does not hold the only thread of a daemon forever: the next request
+     * is served once the idle one times out.
+     *
+     * @throws Exception if request fails.
+     */
+    @Test
+    public void testIdleConnection() throws Exception {
+        String secret = Files.readString(ImplementorDaemon.getSecretFile(daemon.getPort()));
+        Path output = folder.newFolder("output").toPath();
+        try (Socket idle = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            Thread.sleep(100);
+            Assert.assertEquals(ImplementorDaemon.OK, send(secret, output.toString(), Runnable.class.getName(), "."));
+            Assert.assertTrue(idle.isConnected());
+        }
+    }
+
+    /**
+     * Sends raw request.
+     *
+     * @param secret secret to send.
+     * @param directory working directory.
+     * @param args request arguments.
+     * @return status of a reply.
+     * @throws IOException if daemon could not be reached or did not reply in {@link #REPLY_TIMEOUT}.
+     */
+    private int send(String secret, String directory, String... args) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+            socket.setSoTimeout(REPLY_TIMEOUT);
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeUTF(secret);
+            output.writeUTF(directory);
+            output.writeInt(args.length);
+            for (String arg : args) {
+                output.writeUTF(arg);
+            }
+            output.flush();
+            return new DataInputStream(socket.getInputStream()).readInt();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Tests of {@link ImplementorFileUtils#writeAtomically(Path, ImplementorFileUtils.AtomicOutput)}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ImplementorFileUtilsTest {
+
+    /**
+     * Directory of written files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that a new file gets the same permissions as a file created directly.
+     *
+     * @throws Exception if file could not be written.
+     */
+    @Test
+    public void testNewFilePermissions() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Path expected = Files.createFile(directory.resolve("expected"));
+        Path target = directory.resolve("target");
+        write(target);
+        Assert.assertEquals(Files.getPosixFilePermissions(expected), Files.getPosixFilePermissions(target));
+    }
+
+    /**
+     * Checks that an overwritten file keeps its permissions.
+     *
+     * @throws Exception if file could not be written.
+     */
+    @Test
+    public void testExistingFilePermissions() throws Exception {
+        Path target = folder.getRoot().toPath().resolve("target");
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rwxr-x---");
+        Files.createFile(target);
+        Files.setPosixFilePermissions(target, permissions);
+        write(target);
+        Assert.assertEquals(permissions, Files.getPosixFilePermissions(target));
+        Assert.assertEquals("contents", Files.readString(target));
+    }
+
+    /**
+     * Writes a short text atomically and checks that no temporary file is left.
+     *
+     * @param target file to write.
+     * @throws Exception if file could not be written.
+     */
+    private static void write(Path target) throws Exception {
+        ImplementorFileUtils.writeAtomically(target, temporary -> {
+            Files.writeString(temporary, "contents");
+            return null;
+        });
+        try (Stream<Path> files = Files.list(target.getParent())) {
+            Assert.assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Tests of {@link ImplementorStatistics}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ImplementorStatisticsTest {
+
+    /**
+     * Interface with a method named with non-ASCII letters, so its source takes more bytes than characters.
+     */
+    public interface Greeting {
+        /**
+         * Method named with Cyrillic letters, escaped so the source does not depend on its encoding.
+         */
+        void \u043f\u0440\u0438\u0432\u0435\u0442();
+    }
+
+    /**
+     * Output directory.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that {@link ImplementorPhase#WRITE} reports size of written file in bytes.
+     *
+     * @throws Exception if implementation fails.
+     */
+    @Test
+    public void testWrittenBytes() throws Exception {
+        Implementor implementor = new Implementor();
+        Path root = folder.getRoot().toPath();
+        implementor.implement(Greeting.class, root);
+        Path file = root.resolve(Greeting.class.getPackageName().replace('.', '/')).resolve("GreetingImpl.java");
+        Assert.assertEquals(Files.size(file), implementor.getStatistics().getBytes(ImplementorPhase.WRITE));
+    }
+
+    /**
+     * Checks that <code>.jar</code> builds look up cache once per <code>.jar</code> file, and not once more
+     * for every source written to their workspace.
+     *
+     * @throws Exception if implementation fails.
+     */
+    @Test
+    public void testCacheLookups() throws Exception {
+        Implementor implementor = new Implementor()
+                .setCache(new ImplementorCache(folder.newFolder("cache").toPath()));
+        for (int i = 0; i < 2; i++) {
+            Path output = folder.newFolder("output" + i).toPath();
+            implementor.implement(MethodIndexTest.ComparableInterface.class, output);
+            implementor.implementJar(MethodIndexTest.ComparableInterface.class, output.resolve("comparable.jar"));
+        }
+        Assert.assertEquals(2, implementor.getStatistics().getCacheHits());
+        Assert.assertEquals(2, implementor.getStatistics().getCacheMisses());
+    }
+}
@@ -0,0 +1,108 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Helpers shared by tests: building implementations with a backend, loading them back and writing class files.
+ *
+ * @author sem
+ * @version 1.0
+ */
+final class ImplementorTestUtils {
+
+    /**
+     * Utility class, not instantiated.
+     */
+    private ImplementorTestUtils() {
+    }
+
+    /**
+     * Implements given class or interface into a <code>.jar</code> file and loads implementation from it.
+     *
+     * @param backend {@link ImplementorBackend} building the <code>.jar</code> file.
+     * @param token type token to create implementation for.
+     * @param directory directory to write <code>.jar</code> file to.
+     * @return loaded implementation.
+     * @throws ImplerException if implementation could not be built.
+     * @throws IOException if implementation could not be loaded.
+     */
+    static Class<?> load(ImplementorBackend backend, Class<?> token, Path directory)
+            throws ImplerException, IOException {
+        Path jarFile = directory.resolve(backend + "-" + token.getSimpleName() + ".jar");
+        new Implementor(backend).implementJar(token, jarFile);
+        try {
+            URLClassLoader loader = new URLClassLoader(new URL[]{jarFile.toUri().toURL()}, token.getClassLoader());
+            String name = token.getPackageName() + "." + token.getSimpleName() + "Impl";
+            return loader.loadClass(name);
+        } catch (MalformedURLException | ClassNotFoundException e) {
+            throw new IOException("Can not load implementation of " + token.getName(), e);
+        }
+    }
+
+    /**
+     * Gets declared instance methods of a class as names with descriptors, bridges marked.
+     *
+     * @param type {@link Class} to describe.
+     * @return sorted descriptions of methods.
+     */
+    static Set<String> describeMethods(Class<?> type) {
+        Set<String> result = new TreeSet<>();
+        for (Method method : type.getDeclaredMethods()) {
+            if (!Modifier.isStatic(method.getModifiers())) {
+                result.add((method.isBridge() ? "bridge " : "") + method.getName()
+                        + BytecodeGenerator.descriptor(method.getParameterTypes(), method.getReturnType()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes minimal class file: a class without members extending {@link Object}, or nothing for modules.
+     *
+     * @param root directory of class files.
+     * @param name internal name of a class.
+     * @param access access flags of a class.
+     * @throws IOException if file could not be written.
+     */
+    static void writeClassFile(Path root, String name, int access) throws IOException {
+        boolean module = (access & ClassFileModel.MODULE) != 0;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(0xCAFEBABE);
+        output.writeShort(0);
+        output.writeShort(55);
+        output.writeShort(5);
+        output.writeByte(1);
+        output.writeUTF(name);
+        output.writeByte(7);
+        output.writeShort(1);
+        output.writeByte(1);
+        output.writeUTF("java/lang/Object");
+        output.writeByte(7);
+        output.writeShort(3);
+        output.writeShort(access);
+        output.writeShort(2);
+        output.writeShort(module ? 0 : 4);
+        output.writeShort(0);
+        output.writeShort(0);
+        output.writeShort(0);
+        output.writeShort(0);
+        output.flush();
+        Path file = root.resolve(name + ".class");
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes.toByteArray());
+    }
+}
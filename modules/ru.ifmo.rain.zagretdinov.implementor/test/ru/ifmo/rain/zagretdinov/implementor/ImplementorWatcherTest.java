@@ -0,0 +1,84 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarFile;
+
+/**
+ * Tests of {@link ImplementorWatcher}: a token which could not be implemented should not prevent others
+ * from being regenerated.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ImplementorWatcherTest {
+
+    /**
+     * Tokens in the order of regeneration: a broken class file first.
+     */
+    private static final List<String> TOKENS = List.of("pkg.Broken", "pkg.Good");
+
+    /**
+     * Input and output directories.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that a source of a valid token is written despite a broken one.
+     *
+     * @throws Exception if input could not be prepared.
+     */
+    @Test
+    public void testSources() throws Exception {
+        Path output = folder.newFolder("output").toPath();
+        regenerate(output);
+        Assert.assertTrue(Files.isRegularFile(output.resolve("pkg/GoodImpl.java")));
+        Assert.assertFalse(Files.exists(output.resolve("pkg/BrokenImpl.java")));
+    }
+
+    /**
+     * Checks that a <code>.jar</code> file with the implementation of a valid token is written despite
+     * a broken one.
+     *
+     * @throws Exception if input could not be prepared or output could not be read.
+     */
+    @Test
+    public void testJar() throws Exception {
+        Path output = folder.getRoot().toPath().resolve("output.jar");
+        regenerate(output);
+        try (JarFile jarFile = new JarFile(output.toFile())) {
+            Assert.assertNotNull(jarFile.getEntry("pkg/GoodImpl.class"));
+            Assert.assertNull(jarFile.getEntry("pkg/BrokenImpl.class"));
+        }
+    }
+
+    /**
+     * Writes a valid interface and a malformed class file and regenerates both, expecting failure
+     * of the broken one only.
+     *
+     * @param output root of generated sources or <code>.jar</code> file.
+     * @throws Exception if input could not be prepared.
+     */
+    private void regenerate(Path output) throws Exception {
+        Path input = folder.newFolder("input").toPath();
+        ImplementorTestUtils.writeClassFile(input, "pkg/Good",
+                Modifier.PUBLIC | Modifier.ABSTRACT | ClassFileModel.INTERFACE);
+        Files.write(input.resolve("pkg/Broken.class"), new byte[]{1, 2, 3});
+        try (ImplementorWatcher watcher = new ImplementorWatcher(new Implementor(), input, TOKENS, output,
+                ImplementorWatcher.DEFAULT_DEBOUNCE)) {
+            watcher.regenerate(TOKENS);
+            Assert.fail("Broken class file should not be implemented");
+        } catch (ImplerException e) {
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("pkg.Broken: "));
+        }
+    }
+}
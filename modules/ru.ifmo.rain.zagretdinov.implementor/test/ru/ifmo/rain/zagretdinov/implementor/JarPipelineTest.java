@@ -0,0 +1,162 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Tests of {@link JarPipeline}: its output should not differ from {@link JarWriter#write(Path)}, and a failure
+ * of any chunk should leave the target intact.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class JarPipelineTest {
+
+    /**
+     * Number of tokens, enough for three chunks.
+     */
+    private static final int TOKENS = 2 * JarPipeline.CHUNK + 1;
+
+    /**
+     * Contents of a target before a failed run.
+     */
+    private static final byte[] PREVIOUS = "previous".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Output directory.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that pipeline writes the same file as {@link JarWriter} for tokens sorted by names of their entries.
+     *
+     * @throws Exception if <code>.jar</code> file could not be written.
+     */
+    @Test
+    public void testSameAsWriter() throws Exception {
+        List<Class<?>> tokens = getTokens();
+        for (int level : List.of(JarWriter.STORED, Deflater.DEFAULT_COMPRESSION)) {
+            Path piped = folder.getRoot().toPath().resolve("piped" + level + ".jar");
+            long size = new JarPipeline<>(new ImplementorMonitor(), JarPipelineTest::emit,
+                    JarPipelineTest::compile, level).run(tokens, piped);
+            Assert.assertEquals(Files.size(piped), size);
+
+            JarWriter writer = new JarWriter(level);
+            for (Class<?> token : tokens) {
+                writer.addAll(compile(List.of(token), List.of(emit(token))));
+            }
+            Path written = folder.getRoot().toPath().resolve("written" + level + ".jar");
+            writer.write(written);
+            Assert.assertArrayEquals(Files.readAllBytes(written), Files.readAllBytes(piped));
+        }
+    }
+
+    /**
+     * Checks that a failure of emitting or compiling a chunk other than the first one is rethrown and the target
+     * keeps its contents.
+     *
+     * @throws Exception if target could not be written or read.
+     */
+    @Test
+    public void testFailure() throws Exception {
+        List<Class<?>> tokens = getTokens();
+        Class<?> failing = tokens.get(JarPipeline.CHUNK + 1);
+        Path jarFile = folder.getRoot().toPath().resolve("failed.jar");
+        Files.write(jarFile, PREVIOUS);
+
+        JarPipeline<String> emitting = new JarPipeline<>(new ImplementorMonitor(), token -> {
+            if (token == failing) {
+                throw new ImplerException("Emitting failed");
+            }
+            return emit(token);
+        }, JarPipelineTest::compile, Deflater.DEFAULT_COMPRESSION);
+        assertFails(emitting, tokens, jarFile, ImplerException.class, "Emitting failed");
+
+        JarPipeline<String> compiling = new JarPipeline<>(new ImplementorMonitor(), JarPipelineTest::emit,
+                (chunk, items) -> {
+                    if (chunk.contains(failing)) {
+                        throw new IllegalStateException("Compiling failed");
+                    }
+                    return compile(chunk, items);
+                }, Deflater.DEFAULT_COMPRESSION);
+        assertFails(compiling, tokens, jarFile, IllegalStateException.class, "Compiling failed");
+    }
+
+    /**
+     * Checks that a run fails with given exception, leaves the target intact and deletes temporary files.
+     *
+     * @param pipeline {@link JarPipeline} to run.
+     * @param tokens tokens to run it on.
+     * @param jarFile target <tt>.jar</tt> file holding {@link #PREVIOUS}, the only file in its directory.
+     * @param type expected type of a rethrown exception.
+     * @param message expected message of a rethrown exception.
+     * @throws Exception if target could not be read.
+     */
+    private static void assertFails(JarPipeline<String> pipeline, List<Class<?>> tokens, Path jarFile,
+                                    Class<? extends Exception> type, String message) throws Exception {
+        try {
+            pipeline.run(tokens, jarFile);
+            Assert.fail(message + " should be rethrown");
+        } catch (ImplerException | RuntimeException e) {
+            Assert.assertEquals(type, e.getClass());
+            Assert.assertEquals(message, e.getMessage());
+        }
+        Assert.assertArrayEquals(PREVIOUS, Files.readAllBytes(jarFile));
+        try (Stream<Path> files = Files.list(jarFile.getParent())) {
+            Assert.assertEquals("Temporary files should be deleted", 1, files.count());
+        }
+    }
+
+    /**
+     * Gets distinct tokens sorted by names of their entries: arrays of {@link Object} of growing dimension.
+     *
+     * @return {@link #TOKENS} tokens.
+     */
+    private static List<Class<?>> getTokens() {
+        List<Class<?>> tokens = new ArrayList<>();
+        for (int dimensions = 1; dimensions <= TOKENS; dimensions++) {
+            tokens.add(Array.newInstance(Object.class, new int[dimensions]).getClass());
+        }
+        return tokens;
+    }
+
+    /**
+     * Emits entry name of a token.
+     *
+     * @param token array token.
+     * @return name of an entry, ordered as dimensions of {@code token}.
+     */
+    private static String emit(Class<?> token) {
+        return String.format("entries/E%03d.class", token.getName().lastIndexOf('[') + 1);
+    }
+
+    /**
+     * Compiles a chunk into entries named by emitted items, holding names of tokens.
+     *
+     * @param chunk tokens of a chunk.
+     * @param items emitted names of entries.
+     * @return entries in order of {@code chunk}.
+     */
+    private static Map<String, byte[]> compile(List<Class<?>> chunk, List<String> items) {
+        Map<String, byte[]> classes = new LinkedHashMap<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            classes.put(items.get(i), chunk.get(i).getName().getBytes(StandardCharsets.US_ASCII));
+        }
+        return classes;
+    }
+}
@@ -0,0 +1,114 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Tests of {@link JarWriter}: files written directly in zip format should be read back by {@link JarFile}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class JarWriterTest {
+
+    /**
+     * Output directory.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that entries added out of order are read back after the manifest, in order of their names and with
+     * their contents, both stored and deflated.
+     *
+     * @throws Exception if <code>.jar</code> file could not be written or read.
+     */
+    @Test
+    public void testReadBack() throws Exception {
+        Map<String, byte[]> entries = getEntries();
+        for (int level : List.of(JarWriter.STORED, Deflater.NO_COMPRESSION, Deflater.DEFAULT_COMPRESSION,
+                Deflater.BEST_COMPRESSION)) {
+            Path jarFile = folder.getRoot().toPath().resolve("level" + level + ".jar");
+            JarWriter writer = new JarWriter(level);
+            List<String> names = new ArrayList<>(entries.keySet());
+            Collections.reverse(names);
+            for (String name : names) {
+                writer.add(name, entries.get(name));
+            }
+            long size = writer.write(jarFile);
+            Assert.assertEquals(Files.size(jarFile), size);
+            int method = level == JarWriter.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED;
+            try (JarFile jar = new JarFile(jarFile.toFile())) {
+                List<JarEntry> read = Collections.list(jar.entries());
+                Assert.assertEquals(JarFile.MANIFEST_NAME, read.get(0).getName());
+                Assert.assertEquals("1.0", jar.getManifest().getMainAttributes()
+                        .getValue(Attributes.Name.MANIFEST_VERSION));
+                List<String> readNames = new ArrayList<>();
+                for (JarEntry entry : read.subList(1, read.size())) {
+                    readNames.add(entry.getName());
+                    Assert.assertEquals(entry.getName(), method, entry.getMethod());
+                    try (InputStream input = jar.getInputStream(entry)) {
+                        Assert.assertArrayEquals(entry.getName(), entries.get(entry.getName()), input.readAllBytes());
+                    }
+                }
+                Assert.assertEquals(new ArrayList<>(entries.keySet()), readNames);
+            }
+            try (JarInputStream input = new JarInputStream(Files.newInputStream(jarFile))) {
+                Assert.assertNotNull("Manifest should be found by a stream", input.getManifest());
+            }
+        }
+    }
+
+    /**
+     * Checks that equal entries give byte-identical files, whatever the order they are added in.
+     *
+     * @throws Exception if <code>.jar</code> file could not be written.
+     */
+    @Test
+    public void testReproducible() throws Exception {
+        Map<String, byte[]> entries = getEntries();
+        Path first = folder.getRoot().toPath().resolve("first.jar");
+        new JarWriter(Deflater.DEFAULT_COMPRESSION).addAll(entries).write(first);
+        Path second = folder.getRoot().toPath().resolve("second.jar");
+        JarWriter writer = new JarWriter(Deflater.DEFAULT_COMPRESSION);
+        List<String> names = new ArrayList<>(entries.keySet());
+        Collections.reverse(names);
+        for (String name : names) {
+            writer.add(name, entries.get(name));
+        }
+        writer.write(second);
+        Assert.assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+    }
+
+    /**
+     * Gets entries to write, one of them large and compressible.
+     *
+     * @return contents of entries by names, in order of names.
+     */
+    private static Map<String, byte[]> getEntries() {
+        Map<String, byte[]> entries = new TreeMap<>();
+        entries.put("a/A.class", new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+        entries.put("a/b/B.class", "b".repeat(100_000).getBytes(StandardCharsets.US_ASCII));
+        entries.put("META-INF/services/java.lang.Runnable", "a.A\n".getBytes(StandardCharsets.US_ASCII));
+        entries.put("z/Empty.class", new byte[0]);
+        return entries;
+    }
+}
@@ -0,0 +1,95 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+
+/**
+ * Tests of {@link MethodIndex}: methods of generic supertypes implemented through bridges should not be
+ * implemented again with erased types.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class MethodIndexTest {
+
+    /**
+     * Interface redeclaring {@link Comparable#compareTo(Object)} with its own type.
+     */
+    public interface ComparableInterface extends Comparable<ComparableInterface> {
+        @Override
+        int compareTo(ComparableInterface o);
+    }
+
+    /**
+     * Abstract class redeclaring {@link Comparable#compareTo(Object)} with its own type.
+     */
+    public abstract static class ComparableClass implements Comparable<ComparableClass> {
+        @Override
+        public abstract int compareTo(ComparableClass o);
+    }
+
+    /**
+     * Abstract class implementing {@link Comparable#compareTo(Object)}, implementation should keep it.
+     */
+    public abstract static class ComparedClass implements Comparable<ComparedClass> {
+        /**
+         * Value returned by {@link #compareTo(ComparedClass)}.
+         */
+        static final int RESULT = 42;
+
+        @Override
+        public int compareTo(ComparedClass o) {
+            return RESULT;
+        }
+
+        /**
+         * Method left for implementation.
+         */
+        public abstract void run();
+    }
+
+    /**
+     * Directory for generated <code>.jar</code> files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Checks that every backend implements the generic methods once, with their own types.
+     *
+     * @throws Exception if implementation could not be built or instantiated.
+     */
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void testComparable() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        for (ImplementorBackend backend : ImplementorBackend.values()) {
+            for (Class<?> token : new Class<?>[]{ComparableInterface.class, ComparableClass.class}) {
+                Comparable instance = (Comparable) ImplementorTestUtils.load(backend, token, directory)
+                        .getConstructor().newInstance();
+                Assert.assertEquals(backend + " " + token.getSimpleName(), 0, instance.compareTo(instance));
+            }
+            Comparable instance = (Comparable) ImplementorTestUtils.load(backend, ComparedClass.class, directory)
+                    .getConstructor().newInstance();
+            Assert.assertEquals(backend.toString(), ComparedClass.RESULT, instance.compareTo(instance));
+        }
+    }
+
+    /**
+     * Checks that bridges are neither implemented nor delegated.
+     */
+    @Test
+    public void testBridgesSkipped() {
+        Assert.assertEquals(1, MethodIndex.getAbstractMethods(ComparableInterface.class).size());
+        Assert.assertEquals(1, MethodIndex.getAbstractMethods(ComparableClass.class).size());
+        Assert.assertEquals(1, MethodIndex.getAbstractMethods(ComparedClass.class).size());
+        for (Method method : MethodIndex.getInterfaceMethods(ComparableInterface.class)) {
+            Assert.assertFalse(method.toString(), method.isBridge());
+        }
+    }
+}
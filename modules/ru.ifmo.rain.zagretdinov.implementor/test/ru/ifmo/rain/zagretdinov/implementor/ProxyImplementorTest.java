@@ -0,0 +1,58 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests of {@link Implementor#delegate(Class, Object)} and {@link Implementor#profile(Class, Object)}:
+ * methods of generic supertypes should be delegated with their types as members of a token.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class ProxyImplementorTest {
+
+    /**
+     * Generic interface.
+     *
+     * @param <T> type of a value.
+     */
+    public interface Gen<T> {
+        /**
+         * Method taking and returning a type variable.
+         *
+         * @param value a value.
+         * @return a value.
+         */
+        T id(T value);
+    }
+
+    /**
+     * Interface binding type variable of {@link Gen}.
+     */
+    public interface GS extends Gen<String> {
+    }
+
+    /**
+     * Interface passing itself to {@link Comparable}.
+     */
+    public interface P extends Comparable<P> {
+    }
+
+    /**
+     * Checks that both delegating and profiling proxies of interfaces with bound type variables are defined
+     * and pass calls to a target.
+     *
+     * @throws Exception if proxy could not be defined.
+     */
+    @Test
+    public void testBoundTypeVariables() throws Exception {
+        GS gs = value -> value + "!";
+        Assert.assertEquals("a!", Implementor.delegate(GS.class, gs).id("a"));
+        Assert.assertEquals("b!", Implementor.profile(GS.class, gs).getProxy().id("b"));
+
+        P p = other -> 42;
+        Assert.assertEquals(42, Implementor.delegate(P.class, p).compareTo(p));
+        Assert.assertEquals(42, Implementor.profile(P.class, p).getProxy().compareTo(p));
+    }
+}
@@ -0,0 +1,155 @@
+package ru.ifmo.rain.zagretdinov.implementor;
+
+import info.kgeorgiy.java.advanced.implementor.ImplerException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import ru.ifmo.rain.zagretdinov.implementor.BytecodeGeneratorTest.AbstractSuppliers;
+import ru.ifmo.rain.zagretdinov.implementor.BytecodeGeneratorTest.BothSuppliers;
+import ru.ifmo.rain.zagretdinov.implementor.BytecodeGeneratorTest.ObjectSupplier;
+import ru.ifmo.rain.zagretdinov.implementor.BytecodeGeneratorTest.StringSupplier;
+
+/**
+ * Tests of {@link Implementor#instantiate(Class)}.
+ *
+ * @author sem
+ * @version 1.0
+ */
+public class RuntimeImplementorTest {
+
+    /**
+     * Number of threads racing for a token.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Number of fresh tokens raced for.
+     */
+    private static final int ROUNDS = 50;
+
+    /**
+     * Source of an interface compiled anew for every round, so each round races for a token never implemented.
+     * It has two methods, so it is not functional and its implementation is defined from bytecode.
+     */
+    private static final String FRESH = "package fresh; public interface Fresh { void first(); void second(); }";
+
+    /**
+     * Loader defining a freshly compiled interface.
+     */
+    private static final class DefiningLoader extends ClassLoader {
+        /**
+         * Creates loader delegating to the loader of tests.
+         */
+        DefiningLoader() {
+            super(RuntimeImplementorTest.class.getClassLoader());
+        }
+
+        /**
+         * Compiles and defines a new copy of {@link #FRESH}.
+         *
+         * @return defined interface.
+         * @throws ImplerException if interface could not be compiled.
+         */
+        Class<?> defineFresh() throws ImplerException {
+            byte[] bytes = InMemoryCompiler.compile(Map.of("fresh.Fresh", FRESH), Set.of()).get("fresh/Fresh.class");
+            return defineClass("fresh.Fresh", bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Interface with a covariant override and another method, so it is not functional.
+     */
+    public interface ResettableSuppliers extends BothSuppliers {
+        /**
+         * Method making interface non-functional.
+         */
+        void reset();
+    }
+
+    /**
+     * Checks that functional interfaces with <code>void</code> methods take the {@link LambdaMetafactory} path,
+     * whose classes are synthetic, unlike ones emitted by {@link BytecodeGenerator}.
+     *
+     * @throws Exception if instance could not be created.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testVoidFunctional() throws Exception {
+        Runnable runnable = Implementor.instantiate(Runnable.class);
+        runnable.run();
+        Assert.assertTrue(runnable.getClass().isSynthetic());
+        Consumer<Object> consumer = Implementor.instantiate(Consumer.class);
+        consumer.accept(this);
+        Assert.assertTrue(consumer.getClass().isSynthetic());
+    }
+
+    /**
+     * Checks that a functional interface overriding a method with narrower return type takes
+     * the {@link LambdaMetafactory} path and works through every supertype.
+     *
+     * @throws Exception if instance could not be created.
+     */
+    @Test
+    public void testFunctionalBridges() throws Exception {
+        BothSuppliers instance = Implementor.instantiate(BothSuppliers.class);
+        Assert.assertTrue(instance.getClass().isSynthetic());
+        Assert.assertNull(((ObjectSupplier) instance).get());
+        Assert.assertNull(((StringSupplier) instance).get());
+    }
+
+    /**
+     * Checks that threads instantiating a token for the first time at once all succeed: losing the race
+     * to define an implementation should not fail the token.
+     *
+     * @throws Exception if instance could not be created.
+     */
+    @Test
+    public void testConcurrentFirstUse() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                Class<?> token = new DefiningLoader().defineFresh();
+                CyclicBarrier barrier = new CyclicBarrier(THREADS);
+                List<Future<Object>> instances = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    instances.add(executor.submit(() -> {
+                        barrier.await();
+                        return Implementor.instantiate(token);
+                    }));
+                }
+                for (Future<Object> instance : instances) {
+                    Assert.assertTrue(token.isInstance(instance.get()));
+                }
+                Assert.assertTrue(token.isInstance(Implementor.instantiate(token)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that instances of classes defined from emitted bytecode work through every supertype
+     * of a covariant override.
+     *
+     * @throws Exception if instance could not be created.
+     */
+    @Test
+    public void testCovariantReturns() throws Exception {
+        for (Class<?> token : new Class<?>[]{AbstractSuppliers.class, ResettableSuppliers.class}) {
+            Object instance = Implementor.instantiate(token);
+            Assert.assertNull(((ObjectSupplier) instance).get());
+            Assert.assertNull(((StringSupplier) instance).get());
+        }
+    }
+}